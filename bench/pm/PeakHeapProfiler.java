@@ -0,0 +1,59 @@
+package pm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.Collections;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * This JMH profiler measures how much heap each benchmark iteration
+ * needed at its peak. The heap is collected and the peak of every heap
+ * pool reset before each iteration, and the peaks are added up after it.
+ * That's an upper bound, since the pools may have peaked at different
+ * times, and it includes garbage not yet collected. The largest of the
+ * iterations is reported. Use it with -prof pm.PeakHeapProfiler.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class PeakHeapProfiler implements InternalProfiler {
+    
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    
+    @Override
+    public String getDescription() {
+        return "Peak heap use of each iteration";
+    }
+    
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        // START EACH ITERATION FROM AS SMALL A HEAP AS WE CAN
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+    
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return Collections.singletonList(new ScalarResult("peak.heap", peak / BYTES_PER_MB, "MB", AggregationPolicy.MAX));
+    }
+}
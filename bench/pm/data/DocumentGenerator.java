@@ -0,0 +1,96 @@
+package pm.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import pm.data.ShapeRecord.ShapeType;
+import saf.AppTemplate;
+import saf.components.AppComponentsBuilder;
+
+/**
+ * This class makes documents for the benchmarks to work on. The same
+ * seed always makes the same document, so runs can be compared. Shapes
+ * are scattered over a large canvas with sizes, colors and borders picked
+ * at random, from a small set of colors the way real documents use them.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class DocumentGenerator {
+    
+    // HOW THE SHAPES ARE SPLIT BETWEEN RECTANGLES AND ELLIPSES
+    public static enum ShapeMix {
+        RECTANGLE_HEAVY(0.9),
+        ELLIPSE_HEAVY(0.1),
+        MIXED(0.5);
+        
+        private final double rectangleShare;
+        
+        ShapeMix(double initRectangleShare) {
+            rectangleShare = initRectangleShare;
+        }
+    }
+    
+    public static final long DEFAULT_SEED = 0x5EED;
+    
+    // THE AREA THE SHAPES ARE PLACED IN
+    private static final double CANVAS_SIZE = 4096;
+    private static final double MAX_SHAPE_SIZE = 200;
+    private static final double MAX_BORDER_WIDTH = 10;
+    private static final int COLORS = 64;
+    
+    private DocumentGenerator() {}
+    
+    /**
+     * This function makes the shapes of a document.
+     *
+     * @param shapes How many shapes to make.
+     *
+     * @param mix How many of them are rectangles.
+     *
+     * @param seed Where to start the random numbers.
+     *
+     * @return The shapes in paint order.
+     */
+    public static List<ShapeRecord> generate(int shapes, ShapeMix mix, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] colors = new int[COLORS];
+        for (int i = 0; i < COLORS; i++) {
+            // MOSTLY OPAQUE, SOME SEE THROUGH
+            int alpha = random.nextInt(4) == 0 ? 0x80 : 0xFF;
+            colors[i] = (alpha << 24) | random.nextInt(0x1000000);
+        }
+        List<ShapeRecord> records = new ArrayList<>(shapes);
+        for (int i = 0; i < shapes; i++) {
+            ShapeType type = random.nextDouble() < mix.rectangleShare ? ShapeType.RECTANGLE : ShapeType.ELLIPSE;
+            records.add(new ShapeRecord(type,
+                    random.nextDouble() * CANVAS_SIZE,
+                    random.nextDouble() * CANVAS_SIZE,
+                    1 + random.nextDouble() * MAX_SHAPE_SIZE,
+                    1 + random.nextDouble() * MAX_SHAPE_SIZE,
+                    colors[random.nextInt(COLORS)],
+                    colors[random.nextInt(COLORS)],
+                    random.nextDouble() * MAX_BORDER_WIDTH));
+        }
+        return records;
+    }
+    
+    /**
+     * This function makes a data manager with no workspace, which is all
+     * saving and loading need.
+     *
+     * @return A data manager holding an empty document.
+     *
+     * @throws Exception Thrown should the data manager not be made.
+     */
+    public static DataManager newDataManager() throws Exception {
+        AppTemplate app = new AppTemplate() {
+            @Override
+            public AppComponentsBuilder makeAppBuilderHook() {
+                return null;
+            }
+        };
+        return new DataManager(app);
+    }
+}
@@ -0,0 +1,97 @@
+package pm.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pm.data.DataManager;
+import pm.data.DocumentGenerator;
+import pm.data.DocumentGenerator.ShapeMix;
+
+/**
+ * This class benchmarks saving and loading documents through
+ * FileManager.saveData and loadData, in both of our formats, for
+ * documents from a handful of shapes up to a million. Run it through the
+ * bench target of the build, which also measures the allocation rate and
+ * the peak heap, and keeps the results as JSON.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SaveLoadBenchmark {
+    
+    @Param({"10", "1000", "100000", "1000000"})
+    public int shapes;
+    
+    @Param({"RECTANGLE_HEAVY", "ELLIPSE_HEAVY", "MIXED"})
+    public ShapeMix mix;
+    
+    @Param({FileManager.JSON_FILE_EXT, FileManager.BINARY_FILE_EXT})
+    public String format;
+    
+    private FileManager fileManager;
+    private Path directory;
+    
+    // THE DOCUMENT BEING SAVED, AND WHERE IT GOES
+    private DataManager saved;
+    private String savePath;
+    
+    // THE DOCUMENT BEING LOADED INTO, AND WHERE IT COMES FROM
+    private DataManager loaded;
+    private String loadPath;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fileManager = new FileManager();
+        directory = Files.createTempDirectory("save_load_benchmark");
+        savePath = directory.resolve("saved" + format).toString();
+        loadPath = directory.resolve("loaded" + format).toString();
+        
+        saved = DocumentGenerator.newDataManager();
+        saved.addShapes(DocumentGenerator.generate(shapes, mix, DocumentGenerator.DEFAULT_SEED));
+        fileManager.saveData(saved, loadPath);
+        loaded = DocumentGenerator.newDataManager();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>)files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+    
+    @Benchmark
+    public void save() throws IOException {
+        fileManager.saveData(saved, savePath);
+    }
+    
+    @Benchmark
+    public int load() throws IOException {
+        fileManager.loadData(loaded, loadPath);
+        return loaded.getShapeStore().size();
+    }
+}
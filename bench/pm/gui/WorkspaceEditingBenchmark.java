@@ -0,0 +1,203 @@
+package pm.gui;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pm.data.DocumentGenerator;
+import pm.data.DocumentGenerator.ShapeMix;
+import pm.data.EditHistory;
+import pm.data.ShapeRecord;
+import pm.data.ShapeRecord.ShapeType;
+import pm.data.ShapeStore;
+
+/**
+ * This class benchmarks the edits the Workspace makes as the user works,
+ * at growing document sizes so that any edit whose cost grows with the
+ * document stands out. The shapes are set up by the same ShapeEditor the
+ * Workspace uses, so the store is followed by the edit history, the shape
+ * index, the shape nodes and the canvases, and each benchmark makes the
+ * same calls on them that the Workspace's controls and mouse handlers do.
+ * 
+ * Making the nodes and canvases starts JavaFX's renderer even though the
+ * draw space is never put in a window, so the forks are told to render
+ * in software on JavaFX's headless Monocle platform, which keeps them off
+ * the graphics card and any screen.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dprism.order=sw",
+        "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless"})
+public class WorkspaceEditingBenchmark {
+    
+    @Param({"100", "1000", "10000", "100000"})
+    public int shapes;
+    
+    // HOW MANY SHAPES TO CYCLE THROUGH, PICKED AHEAD OF TIME SO THAT
+    // PICKING ONE COSTS NEXT TO NOTHING
+    private static final int PICKS = 4096;
+    
+    // WHAT THE MOUSE DOES WHEN DRAWING A NEW SHAPE
+    private static final double PRESS_X = 100;
+    private static final double PRESS_Y = 100;
+    private static final double RELEASE_X = 180;
+    private static final double RELEASE_Y = 140;
+    
+    private ShapeStore shapeStore;
+    private EditHistory editHistory;
+    private ShapeEditor shapeEditor;
+    private ShapeIndex shapeIndex;
+    
+    // THE LIVE SHAPES, WHICH CHANGE AS SHAPES ARE REMOVED AND ADDED
+    private int[] ids;
+    private int[] picks;
+    private int next;
+    
+    // WHAT THE COLOR PICKERS HOLD, FOR NEW SHAPES
+    private final Color fillColor = Color.web("#336699");
+    private final Color outlineColor = Color.BLACK;
+    private final double outlineThickness = 2;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        shapeStore = new ShapeStore();
+        editHistory = new EditHistory(shapeStore, EditHistory.DEFAULT_BYTE_BUDGET);
+        shapeStore.addListener(editHistory);
+        shapeEditor = new ShapeEditor(shapeStore, editHistory, new Pane());
+        shapeIndex = shapeEditor.getShapeIndex();
+        
+        ids = shapeStore.addAll(DocumentGenerator.generate(shapes, ShapeMix.MIXED, DocumentGenerator.DEFAULT_SEED));
+        editHistory.clear();
+        SplittableRandom random = new SplittableRandom(DocumentGenerator.DEFAULT_SEED);
+        picks = new int[PICKS];
+        for (int i = 0; i < PICKS; i++) {
+            picks[i] = random.nextInt(shapes);
+        }
+        next = 0;
+    }
+    
+    // HELPER METHOD FOR CYCLING THROUGH THE PICKED SHAPES
+    private int pick() {
+        int slot = picks[next];
+        next = (next + 1) & (PICKS - 1);
+        return slot;
+    }
+    
+    /**
+     * Removes a shape, as the removal tool does, after checking it's still
+     * there, and then puts one just like it on top of the others.
+     *
+     * @return The new shape.
+     */
+    @Benchmark
+    public int containsRemoveAdd() {
+        int slot = pick();
+        int id = ids[slot];
+        if (!shapeStore.contains(id)) {
+            throw new IllegalStateException("Lost shape " + id);
+        }
+        ShapeRecord record = shapeStore.getRecord(id);
+        editHistory.remove(id);
+        editHistory.endGesture();
+        ids[slot] = editHistory.add(record.getType(), record.getX(), record.getY(),
+                record.getWidth(), record.getHeight(), record.getFillColor(),
+                record.getBorderColor(), record.getBorderWidth());
+        editHistory.endGesture();
+        return ids[slot];
+    }
+    
+    /**
+     * Brings the selected shape to the front, as its button does.
+     *
+     * @return Whether the shape moved.
+     */
+    @Benchmark
+    public boolean sendToFront() {
+        boolean moved = editHistory.bringToFront(ids[pick()]);
+        editHistory.endGesture();
+        return moved;
+    }
+    
+    /**
+     * Sends the selected shape to the back, as its button does.
+     *
+     * @return Whether the shape moved.
+     */
+    @Benchmark
+    public boolean sendToBack() {
+        boolean moved = editHistory.sendToBack(ids[pick()]);
+        editHistory.endGesture();
+        return moved;
+    }
+    
+    /**
+     * Selects a shape, filling the color pickers from it as updateControls
+     * does, and then sets both of its colors back from the pickers as
+     * choosing a color does.
+     *
+     * @return The fill color that was set.
+     */
+    @Benchmark
+    public int updateControlsColorRoundTrip() {
+        int id = ids[pick()];
+        Color fill = shapeStore.getFillPaint(id);
+        Color outline = shapeStore.getBorderPaint(id);
+        shapeEditor.setFillColor(id, fill);
+        shapeEditor.setOutlineColor(id, outline);
+        editHistory.endGesture();
+        return shapeStore.getFillColor(id);
+    }
+    
+    /**
+     * Draws a new rectangle as the mouse handlers do, pressing to start it
+     * from nothing, dragging to size it and releasing to finish it, and
+     * then undoes it so that the document stays the same size.
+     *
+     * @return The shape that was drawn.
+     */
+    @Benchmark
+    public int createShapeByMouse() {
+        // PRESSED
+        int id = shapeEditor.startShape(ShapeType.RECTANGLE, PRESS_X, PRESS_Y,
+                fillColor, outlineColor, outlineThickness);
+        
+        // DRAGGED
+        shapeEditor.sizeShape(id, RELEASE_X, RELEASE_Y);
+        
+        // RELEASED
+        editHistory.endGesture();
+        editHistory.undo();
+        return id;
+    }
+    
+    /**
+     * Finds the shape under the mouse, as every press and click with the
+     * selection tool does.
+     *
+     * @return The shape found.
+     */
+    @Benchmark
+    public int pickShape() {
+        int id = ids[pick()];
+        return shapeIndex.pick(shapeStore.getX(id), shapeStore.getY(id));
+    }
+}
@@ -28,6 +28,9 @@ public enum PropertyType {
     OUTLINE_TOOLTIP,
     REMOVE_ICON,
     REMOVE_TOOLTIP,
+    MOVE_TO_BACK_ICON,
+    MOVE_TO_FRONT_ICON,
+    SNAPSHOT_ICON,
 
     ATTRIBUTE_UPDATE_ERROR_MESSAGE,
     ATTRIBUTE_UPDATE_ERROR_TITLE,
@@ -42,5 +45,8 @@ public enum PropertyType {
     CSS_EXPORT_ERROR_MESSAGE,
     CSS_EXPORT_ERROR_TITLE,
     UPDATE_ERROR_MESSAGE,
-    UPDATE_ERROR_TITLE
+    UPDATE_ERROR_TITLE,
+    
+    // HOW MANY BYTES THE UNDO HISTORY MAY TAKE UP
+    UNDO_HISTORY_BYTES
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package pm.data;
+
+import java.util.Arrays;
+import javafx.scene.paint.Color;
+
+/**
+ * This class interns colors by their packed ARGB value, giving each
+ * distinct color an entry number and a single JavaFX color object that
+ * everything using it shares. Documents only use a handful of colors, so
+ * shapes refer to their entries rather than each holding a color of their
+ * own, and looking one up is a hash of an int, no strings involved. The
+ * JavaFX color for an entry is only made the first time it is asked for.
+ *
+ * Entries are never taken out of the palette, other than by clearing it.
+ * Note that a palette isn't safe to use from more than one thread.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class ColorPalette {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    
+    // THE COLORS, INDEXED BY ENTRY
+    private int[] argbs;
+    private Color[] colors;
+    private int size;
+    
+    // AN OPEN ADDRESSED HASH TABLE OF ENTRIES, EACH SLOT HOLDING ONE MORE
+    // THAN ITS ENTRY SO THAT 0 MEANS EMPTY. IT'S KEPT AT MOST HALF FULL
+    private int[] slots;
+    
+    /**
+     * Constructor for making an empty palette.
+     */
+    public ColorPalette() {
+        clear();
+    }
+    
+    /**
+     * Constructor for copying a palette, entry for entry, so the copy can
+     * be used on another thread while the original keeps changing.
+     *
+     * @param original The palette to copy.
+     */
+    public ColorPalette(ColorPalette original) {
+        argbs = Arrays.copyOf(original.argbs, original.argbs.length);
+        colors = Arrays.copyOf(original.colors, original.colors.length);
+        slots = Arrays.copyOf(original.slots, original.slots.length);
+        size = original.size;
+    }
+    
+    /**
+     * This function finds the entry for a color, adding it to the palette
+     * if it's not there yet.
+     *
+     * @param argb The packed ARGB color.
+     *
+     * @return The color's entry.
+     */
+    public int intern(int argb) {
+        int mask = slots.length - 1;
+        for (int slot = hash(argb) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot] - 1;
+            if (entry < 0) {
+                break;
+            }
+            if (argbs[entry] == argb) {
+                return entry;
+            }
+        }
+        
+        // IT'S A NEW COLOR
+        if (size == argbs.length) {
+            argbs = Arrays.copyOf(argbs, size * 2);
+            colors = Arrays.copyOf(colors, size * 2);
+        }
+        int entry = size++;
+        argbs[entry] = argb;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        else {
+            place(entry);
+        }
+        return entry;
+    }
+    
+    /**
+     * Accessor method for the packed ARGB value of an entry.
+     *
+     * @param entry The entry to look at.
+     *
+     * @return The packed ARGB color.
+     */
+    public int getArgb(int entry) {
+        checkEntry(entry);
+        return argbs[entry];
+    }
+    
+    /**
+     * Accessor method for the JavaFX color of an entry, which is always the
+     * same object for the same entry.
+     *
+     * @param entry The entry to look at.
+     *
+     * @return The shared JavaFX color.
+     */
+    public Color getColor(int entry) {
+        checkEntry(entry);
+        Color color = colors[entry];
+        if (color == null) {
+            color = ShapeRecord.toColor(argbs[entry]);
+            colors[entry] = color;
+        }
+        return color;
+    }
+    
+    /**
+     * This function provides the shared JavaFX color for a packed ARGB
+     * color, interning it first if need be.
+     *
+     * @param argb The packed ARGB color.
+     *
+     * @return The shared JavaFX color.
+     */
+    public Color toColor(int argb) {
+        return getColor(intern(argb));
+    }
+    
+    /**
+     * Accessor method for how many distinct colors are in the palette,
+     * whose entries run from 0 to one less than this.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * This function empties the palette, after which none of the entries
+     * handed out so far mean anything.
+     */
+    public void clear() {
+        argbs = new int[INITIAL_CAPACITY];
+        colors = new Color[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY * 2];
+        size = 0;
+    }
+    
+    private void checkEntry(int entry) {
+        if (entry < 0 || entry >= size) {
+            throw new IllegalArgumentException("No palette entry " + entry);
+        }
+    }
+    
+    // HELPER METHOD FOR PUTTING AN ENTRY IN THE FIRST FREE SLOT FOR IT
+    private void place(int entry) {
+        int mask = slots.length - 1;
+        int slot = hash(argbs[entry]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = entry + 1;
+    }
+    
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int entry = 0; entry < size; entry++) {
+            place(entry);
+        }
+    }
+    
+    // COLORS OFTEN DIFFER ONLY IN THEIR LOW BITS, SO THEY'RE MIXED UP
+    // BEFORE BEING MASKED DOWN TO A SLOT
+    private static int hash(int argb) {
+        int h = argb * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,11 +1,11 @@
 package pm.data;
 
-import java.util.HashMap;
-import java.util.Stack;
-import javafx.geometry.Dimension2D;
+import java.util.List;
+import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
-import javafx.scene.shape.Shape;
+import pm.PropertyType;
 import pm.gui.Workspace;
+import properties_manager.PropertiesManager;
 import saf.components.AppDataComponent;
 import saf.AppTemplate;
 
@@ -17,10 +17,23 @@ import saf.AppTemplate;
  * @version 1.0
  */
 public class DataManager implements AppDataComponent {
+    // THE BACKGROUND A DOCUMENT STARTS WITH
+    public static final int DEFAULT_BACKGROUND_ARGB = 0xFFFFFFFF;
+    
     // THIS IS A SHARED REFERENCE TO THE APPLICATION
     AppTemplate app;
     
     Workspace workspace;
+    
+    // ALL OF THE SHAPES IN THE DOCUMENT
+    ShapeStore shapeStore;
+    
+    // AND WHAT THE USER HAS DONE TO THEM
+    EditHistory editHistory;
+    
+    // THE BACKGROUND COLOR, ONLY KEPT HERE WHEN THERE IS NO WORKSPACE TO
+    // SHOW IT, AS WHEN BENCHMARKING
+    int backgroundArgb = DEFAULT_BACKGROUND_ARGB;
 
     /**
      * THis constructor creates the data manager and sets up the
@@ -32,43 +45,132 @@ public class DataManager implements AppDataComponent {
 	// KEEP THE APP FOR LATER
 	app = initApp;
         
+        shapeStore = new ShapeStore();
+        
+        // THE HISTORY'S BUDGET IS IN BYTES
+        long historyBudget = EditHistory.DEFAULT_BYTE_BUDGET;
+        try {
+            historyBudget = Long.parseLong(PropertiesManager.getPropertiesManager()
+                    .getProperty(PropertyType.UNDO_HISTORY_BYTES).trim());
+        } catch (NullPointerException | NumberFormatException e) {
+            // WE'LL JUST USE THE DEFAULT
+        }
+        editHistory = new EditHistory(shapeStore, historyBudget);
+        shapeStore.addListener(editHistory);
+        
         // KEEP THE WORKSPACE FOR LATER
         workspace = ((Workspace)app.getWorkspaceComponent());
     }
     
-    public Shape getSelectedShape(){
+    /**
+     * This function provides the shape the user has selected.
+     * 
+     * @return The id of the selected shape, or ShapeStore.NO_SHAPE if none is.
+     */
+    public int getSelectedShape(){
         return workspace.getSelectedShape();
     }
     
     public void setBackgroundColor(Paint color){
-        workspace.setBackgroundColor(color);
-    }
-    
-    public String getSelectedOutlineFill(){
-        return workspace.getSelectedOutlineFill();
+        if(workspace != null){
+            workspace.setBackgroundColor(color);
+        }
+        else{
+            backgroundArgb = ShapeRecord.toArgb((Color)color);
+        }
     }
     
     public Workspace getWorkspace(){
         return workspace;
     }
     
-    public Stack<Shape> getShapes(){
-        if(workspace != null) return workspace.shapeStack;
-        else return null;
+    /**
+     * This function provides the shapes of the document, which is where
+     * they are actually kept. The workspace only shows them.
+     * 
+     * @return The store holding all the shapes.
+     */
+    public ShapeStore getShapeStore(){
+        return shapeStore;
+    }
+    
+    /**
+     * This function provides the history of the user's edits, which is
+     * how the user's edits should be made so they can be undone. Note that
+     * it's cleared along with the document.
+     * 
+     * @return The history of the document's edits.
+     */
+    public EditHistory getEditHistory(){
+        return editHistory;
+    }
+    
+    /**
+     * This function places a shape on top of the shapes in the document.
+     * 
+     * @param record The saved state of the shape to add.
+     * 
+     * @return The id of the shape that was added.
+     */
+    public int addShape(ShapeRecord record){
+        return shapeStore.add(record);
+    }
+    
+    /**
+     * This function places shapes on top of the shapes in the document, in
+     * order. They all go into the workspace together, which is much cheaper
+     * than adding them one at a time.
+     * 
+     * @param records The saved state of the shapes to add.
+     */
+    public void addShapes(List<ShapeRecord> records){
+        shapeStore.addAll(records);
     }
     
     public Paint getBackgroundColor(){
+        if(workspace == null){
+            return ShapeRecord.toColor(backgroundArgb);
+        }
         return workspace.getDrawPane().getBackground().getFills().get(0).getFill();
     }
-
+    
+    public int getBackgroundArgb(){
+        if(workspace == null){
+            return backgroundArgb;
+        }
+        return ShapeRecord.toArgb((Color)getBackgroundColor());
+    }
+    
+    /**
+     * This function provides the shapes of the document in paint order as
+     * records. Note that the list is just a view of the shapes as they are
+     * now, each record is made as it is asked for.
+     * 
+     * @return The shapes of the document as records.
+     */
+    public List<ShapeRecord> getShapeRecords(){
+        return shapeStore.getRecords();
+    }
+    
+    /**
+     * This function copies the current state of the document into an
+     * immutable snapshot that can be safely used off the JavaFX thread.
+     * Only the shape store's arrays are copied here, no object is made for
+     * any of the shapes.
+     * 
+     * @return A snapshot of the document as it is right now.
+     */
+    public DocumentSnapshot snapshot(){
+        return new DocumentSnapshot(getBackgroundArgb(), shapeStore);
+    }
+    
     /**
-     * This function clears the app draw space
+     * This function clears the document and the app draw space
      */
     @Override
     public void reset() {
+        shapeStore.clear();
         if(workspace != null){
-            workspace.getDrawPane().getChildren().clear();
-            workspace.shapeStack.clear();
             workspace.resetWorkspace();
             workspace.reloadWorkspace();            
         }
@@ -0,0 +1,168 @@
+package pm.data;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.List;
+import pm.data.ShapeRecord.ShapeType;
+
+/**
+ * This class is an immutable copy of a whole document, taken at a moment
+ * in time. Since nothing in it can change it can be handed off to another
+ * thread, for example to be saved, while the user keeps on editing. The
+ * shapes are kept in a shape store, so a snapshot of a store only copies
+ * the store's arrays. Each shape can be read a field at a time by its
+ * place in paint order, and shape records are only made for whichever
+ * thread asks for them.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class DocumentSnapshot {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    
+    // THE MOST BYTES ONE SHAPE ADDS TO THE HASH
+    private static final int HASHED_SHAPE_SIZE = 1 + 5 * Double.BYTES + 2 * Integer.BYTES;
+    
+    private final int backgroundColor;
+    private final ShapeStore store;
+    
+    // THE IDS OF THE SHAPES IN THE STORE IN PAINT ORDER
+    private final int[] ids;
+
+    /**
+     * Constructor for taking a snapshot, note that the shapes are copied
+     * so later changes to the provided list don't show up in the snapshot.
+     * 
+     * @param initBackgroundColor The packed ARGB background color.
+     * 
+     * @param initShapes The shapes of the document in paint order.
+     */
+    public DocumentSnapshot(int initBackgroundColor, List<ShapeRecord> initShapes) {
+        backgroundColor = initBackgroundColor;
+        store = new ShapeStore();
+        ids = store.addAll(initShapes);
+    }
+    
+    /**
+     * Constructor for taking a snapshot of the shapes in a store, note that
+     * the store is copied so later changes to it don't show up in the
+     * snapshot.
+     * 
+     * @param initBackgroundColor The packed ARGB background color.
+     * 
+     * @param initStore The shapes of the document.
+     */
+    public DocumentSnapshot(int initBackgroundColor, ShapeStore initStore) {
+        backgroundColor = initBackgroundColor;
+        store = initStore.copy();
+        ids = store.getIdsInOrder();
+    }
+    
+    public int getBackgroundColor() {
+        return backgroundColor;
+    }
+    
+    /**
+     * Accessor method for the shapes in paint order. Note that each record
+     * is made as it's asked for, so anything going over the shapes more
+     * than once should use the accessors for each field instead.
+     * 
+     * @return The shapes of the document.
+     */
+    public List<ShapeRecord> getShapes() {
+        return new AbstractList<ShapeRecord>() {
+            @Override
+            public ShapeRecord get(int index) {
+                return store.getRecord(ids[index]);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+    
+    public int getShapeCount() {
+        return ids.length;
+    }
+    
+    // EACH SHAPE'S FIELDS, BY ITS PLACE IN PAINT ORDER FROM THE BOTTOM
+    
+    public ShapeType getType(int index) {
+        return store.getType(ids[index]);
+    }
+    
+    public double getX(int index) {
+        return store.getX(ids[index]);
+    }
+    
+    public double getY(int index) {
+        return store.getY(ids[index]);
+    }
+    
+    public double getWidth(int index) {
+        return store.getWidth(ids[index]);
+    }
+    
+    public double getHeight(int index) {
+        return store.getHeight(ids[index]);
+    }
+    
+    public int getFillColor(int index) {
+        return store.getFillColor(ids[index]);
+    }
+    
+    public int getBorderColor(int index) {
+        return store.getBorderColor(ids[index]);
+    }
+    
+    public double getBorderWidth(int index) {
+        return store.getBorderWidth(ids[index]);
+    }
+    
+    /**
+     * This method hashes everything in the snapshot, so two snapshots with
+     * the same hash can be taken to have the same contents. Note that this
+     * may take a while for a big document, so it shouldn't be done on the
+     * JavaFX thread.
+     * 
+     * @return The hash, as a hexadecimal string.
+     */
+    public String computeContentHash() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException nsae) {
+            // EVERY JAVA PLATFORM HAS TO PROVIDE IT
+            throw new IllegalStateException(nsae);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        buffer.putInt(backgroundColor);
+        buffer.putInt(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (buffer.remaining() < HASHED_SHAPE_SIZE) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            buffer.put((byte)getType(i).ordinal());
+            buffer.putDouble(getX(i));
+            buffer.putDouble(getY(i));
+            buffer.putDouble(getWidth(i));
+            buffer.putDouble(getHeight(i));
+            buffer.putDouble(getBorderWidth(i));
+            buffer.putInt(getFillColor(i));
+            buffer.putInt(getBorderColor(i));
+        }
+        digest.update(buffer.array(), 0, buffer.position());
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
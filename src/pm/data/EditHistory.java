@@ -0,0 +1,705 @@
+package pm.data;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import pm.data.ShapeRecord.ShapeType;
+
+/**
+ * This class makes the edits to a document's shapes on behalf of the user,
+ * remembering each one so it can be undone and redone. Every edit is kept
+ * as just what it changed, from what to what, so a long editing session
+ * costs a few dozen bytes per edit. Edits made one after another to the
+ * same shape during a single gesture, like all the moves of a drag, are
+ * merged into one edit.
+ *
+ * The history is kept within a budget of bytes, and once it's over the
+ * budget the oldest edits are forgotten. Undoing and redoing an edit takes
+ * constant time no matter how long the history is.
+ *
+ * Since the store gives the id of a removed shape to the next one added, a
+ * shape that's removed and brought back by undo may come back with another
+ * id. Edits therefore name shapes by their own handles, which stay the same
+ * for as long as any edit names them. Once the last edit naming a handle
+ * is forgotten the handle is handed out again, so the handles take up
+ * room for the edits being kept rather than for every shape ever edited.
+ * Note that the history has to listen
+ * to the store to find out about shapes changing ids underneath it, and it
+ * forgets everything when the store is cleared.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class EditHistory implements ShapeStoreListener {
+    
+    // USED WHEN NO BUDGET IS PROVIDED
+    public static final long DEFAULT_BYTE_BUDGET = 16L << 20;
+    
+    private static final int NO_HANDLE = -1;
+    private static final ShapeType[] TYPES = ShapeType.values();
+    
+    // ROUGHLY WHAT THE JVM NEEDS FOR EACH EDIT BEYOND ITS OWN FIELDS, THAT
+    // IS ITS OBJECT HEADER AND ITS PLACE IN THE HISTORY
+    private static final int EDIT_OVERHEAD = 24;
+    
+    private final ShapeStore store;
+    private long byteBudget;
+    
+    // THE NEWEST EDITS ARE AT THE END OF THE UNDO STACK, AND THE MOST
+    // RECENTLY UNDONE ONES AT THE END OF THE REDO STACK
+    private final ArrayDeque<Edit> undoStack;
+    private final ArrayDeque<Edit> redoStack;
+    private long bytesUsed;
+    
+    // WHETHER THE NEWEST EDIT MAY STILL HAVE MORE MERGED INTO IT
+    private boolean gestureOpen;
+    
+    // THE HANDLE OF EACH SHAPE BY ID, AND THE ID OF EACH SHAPE BY HANDLE
+    private int[] handles;
+    private int[] ids;
+    private int nextHandle;
+    
+    // HOW MANY REMEMBERED EDITS NAME EACH HANDLE, AND THE HANDLES NO EDIT
+    // NAMES ANY MORE, READY TO BE HANDED OUT AGAIN
+    private int[] handleUses;
+    private int[] freeHandles;
+    private int freeHandleCount;
+    
+    /**
+     * Constructor for keeping the history of a store, which still has to
+     * be added as a listener to the store.
+     *
+     * @param initStore The shapes to edit.
+     *
+     * @param initByteBudget About how many bytes the history may take up.
+     */
+    public EditHistory(ShapeStore initStore, long initByteBudget) {
+        store = initStore;
+        byteBudget = initByteBudget;
+        undoStack = new ArrayDeque<>();
+        redoStack = new ArrayDeque<>();
+        handles = new int[0];
+        ids = new int[0];
+        handleUses = new int[0];
+        freeHandles = new int[0];
+    }
+    
+    public long getByteBudget() {
+        return byteBudget;
+    }
+    
+    /**
+     * Mutator method for how many bytes the history may take up, note that
+     * lowering it forgets old edits right away.
+     *
+     * @param initByteBudget About how many bytes the history may take up.
+     */
+    public void setByteBudget(long initByteBudget) {
+        byteBudget = initByteBudget;
+        trim();
+    }
+    
+    /**
+     * Accessor method for about how many bytes the history takes up now.
+     *
+     * @return The estimated size of all the remembered edits.
+     */
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+    
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+    
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+    
+    public int getUndoCount() {
+        return undoStack.size();
+    }
+    
+    public int getRedoCount() {
+        return redoStack.size();
+    }
+    
+    /**
+     * This method forgets all of the edits.
+     */
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        bytesUsed = 0;
+        gestureOpen = false;
+        handles = new int[0];
+        ids = new int[0];
+        nextHandle = 0;
+        handleUses = new int[0];
+        freeHandles = new int[0];
+        freeHandleCount = 0;
+    }
+    
+    /**
+     * This method ends the current gesture, so the next edit won't be
+     * merged into the ones before it. It should be called whenever the user
+     * lets go of whatever they were dragging.
+     */
+    public void endGesture() {
+        gestureOpen = false;
+    }
+    
+    /**
+     * This method places a new shape on top of all the others.
+     *
+     * @param type The kind of shape.
+     * @param x The x location of the shape.
+     * @param y The y location of the shape.
+     * @param width The width (or x radius) of the shape.
+     * @param height The height (or y radius) of the shape.
+     * @param fillColor The packed ARGB fill color.
+     * @param borderColor The packed ARGB outline color.
+     * @param borderWidth The thickness of the outline.
+     *
+     * @return The id of the new shape.
+     */
+    public int add(ShapeType type, double x, double y, double width, double height,
+            int fillColor, int borderColor, double borderWidth) {
+        int id = store.add(type, x, y, width, height, fillColor, borderColor, borderWidth);
+        ShapeEdit edit = new ShapeEdit(handleOf(id), false);
+        edit.copyFrom(store, id);
+        record(edit);
+        return id;
+    }
+    
+    /**
+     * This method takes a shape out of the document.
+     *
+     * @param id The id of the shape to remove.
+     */
+    public void remove(int id) {
+        ShapeEdit edit = new ShapeEdit(handleOf(id), true);
+        edit.copyFrom(store, id);
+        int upperId = store.getAbove(id);
+        edit.upperHandle = (upperId == ShapeStore.NO_SHAPE) ? NO_HANDLE : handleOf(upperId);
+        store.remove(id);
+        record(edit);
+    }
+    
+    public void setPosition(int id, double x, double y) {
+        int handle = handleOf(id);
+        Edit newest = newestOpenEdit();
+        if (newest instanceof PairEdit && newest.handle == handle && ((PairEdit)newest).kind == PairEdit.MOVE) {
+            ((PairEdit)newest).setNew(x, y);
+        }
+        else {
+            record(new PairEdit(handle, PairEdit.MOVE, store.getX(id), store.getY(id), x, y));
+        }
+        store.setPosition(id, x, y);
+    }
+    
+    public void setSize(int id, double width, double height) {
+        int handle = handleOf(id);
+        Edit newest = newestOpenEdit();
+        if (newest instanceof ShapeEdit && newest.handle == handle && !((ShapeEdit)newest).removal) {
+            // A SHAPE BEING DRAWN IS JUST CREATED AT ITS FINAL SIZE
+            ((ShapeEdit)newest).width = width;
+            ((ShapeEdit)newest).height = height;
+        }
+        else if (newest instanceof PairEdit && newest.handle == handle && ((PairEdit)newest).kind == PairEdit.RESIZE) {
+            ((PairEdit)newest).setNew(width, height);
+        }
+        else {
+            record(new PairEdit(handle, PairEdit.RESIZE, store.getWidth(id), store.getHeight(id), width, height));
+        }
+        store.setSize(id, width, height);
+    }
+    
+    public void setFillColor(int id, int argb) {
+        // PICKING THE COLOR A SHAPE ALREADY HAS ISN'T AN EDIT
+        if (argb == store.getFillColor(id)) {
+            return;
+        }
+        record(new ColorEdit(handleOf(id), true, store.getFillColor(id), argb));
+        store.setFillColor(id, argb);
+    }
+    
+    public void setBorderColor(int id, int argb) {
+        if (argb == store.getBorderColor(id)) {
+            return;
+        }
+        record(new ColorEdit(handleOf(id), false, store.getBorderColor(id), argb));
+        store.setBorderColor(id, argb);
+    }
+    
+    public void setBorderWidth(int id, double borderWidth) {
+        int handle = handleOf(id);
+        Edit newest = newestOpenEdit();
+        if (newest instanceof BorderWidthEdit && newest.handle == handle) {
+            ((BorderWidthEdit)newest).newWidth = borderWidth;
+        }
+        else {
+            record(new BorderWidthEdit(handle, store.getBorderWidth(id), borderWidth));
+        }
+        store.setBorderWidth(id, borderWidth);
+    }
+    
+    public boolean bringToFront(int id) {
+        return restack(id, RestackEdit.TO_FRONT);
+    }
+    
+    public boolean sendToBack(int id) {
+        return restack(id, RestackEdit.TO_BACK);
+    }
+    
+    public boolean moveForward(int id) {
+        return restack(id, RestackEdit.FORWARD);
+    }
+    
+    public boolean moveBackward(int id) {
+        return restack(id, RestackEdit.BACKWARD);
+    }
+    
+    // HELPER METHOD FOR RESTACKING A SHAPE, REMEMBERING WHAT WAS ABOVE IT
+    private boolean restack(int id, byte kind) {
+        int upperId = store.getAbove(id);
+        RestackEdit edit = new RestackEdit(handleOf(id), kind,
+                (upperId == ShapeStore.NO_SHAPE) ? NO_HANDLE : handleOf(upperId));
+        if (!edit.apply(this)) {
+            freeIfUnused(edit.handle);
+            freeIfUnused(edit.getUpperHandle());
+            return false;
+        }
+        record(edit);
+        return true;
+    }
+    
+    /**
+     * This method undoes the newest edit that hasn't been undone.
+     *
+     * @return true if there was an edit to undo.
+     */
+    public boolean undo() {
+        Edit edit = undoStack.pollLast();
+        if (edit == null) {
+            return false;
+        }
+        gestureOpen = false;
+        edit.undo(this);
+        redoStack.addLast(edit);
+        return true;
+    }
+    
+    /**
+     * This method redoes the most recently undone edit.
+     *
+     * @return true if there was an edit to redo.
+     */
+    public boolean redo() {
+        Edit edit = redoStack.pollLast();
+        if (edit == null) {
+            return false;
+        }
+        gestureOpen = false;
+        edit.redo(this);
+        undoStack.addLast(edit);
+        return true;
+    }
+    
+    // HELPER METHOD FOR ADDING AN EDIT, WHICH MAKES ANYTHING UNDONE
+    // IMPOSSIBLE TO REDO
+    private void record(Edit edit) {
+        // THE NEW EDIT'S HANDLES ARE TAKEN FIRST, SO THEY AREN'T FREED
+        // ALONG WITH AN UNDONE EDIT THAT NAMED THEM TOO
+        use(edit.handle);
+        use(edit.getUpperHandle());
+        for (Edit undone : redoStack) {
+            forget(undone);
+        }
+        redoStack.clear();
+        undoStack.addLast(edit);
+        bytesUsed += edit.size();
+        gestureOpen = true;
+        trim();
+    }
+    
+    // HELPER METHOD FOR FORGETTING THE OLDEST EDITS UNTIL WE'RE WITHIN
+    // BUDGET, THOUGH THE NEWEST EDIT IS ALWAYS KEPT
+    private void trim() {
+        while (bytesUsed > byteBudget && undoStack.size() > 1) {
+            forget(undoStack.pollFirst());
+        }
+        while (bytesUsed > byteBudget && !redoStack.isEmpty()) {
+            forget(redoStack.pollFirst());
+        }
+    }
+    
+    // HELPER METHOD FOR LETTING GO OF AN EDIT THAT'S BEEN DROPPED FROM
+    // THE HISTORY, ALONG WITH ANY HANDLES ONLY IT NAMED
+    private void forget(Edit edit) {
+        bytesUsed -= edit.size();
+        release(edit.handle);
+        release(edit.getUpperHandle());
+    }
+    
+    private void use(int handle) {
+        if (handle != NO_HANDLE) {
+            handleUses[handle]++;
+        }
+    }
+    
+    private void release(int handle) {
+        if (handle != NO_HANDLE) {
+            handleUses[handle]--;
+            freeIfUnused(handle);
+        }
+    }
+    
+    // HELPER METHOD FOR UNTYING A HANDLE NO EDIT NAMES FROM ITS SHAPE, SO
+    // IT CAN BE GIVEN TO ANOTHER
+    private void freeIfUnused(int handle) {
+        if (handle == NO_HANDLE || handleUses[handle] > 0 || ids[handle] == ShapeStore.NO_SHAPE) {
+            return;
+        }
+        int id = ids[handle];
+        if (id < handles.length && handles[id] == handle) {
+            handles[id] = NO_HANDLE;
+        }
+        ids[handle] = ShapeStore.NO_SHAPE;
+        if (freeHandleCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeHandleCount * 3 / 2 + 1);
+        }
+        freeHandles[freeHandleCount++] = handle;
+    }
+    
+    private Edit newestOpenEdit() {
+        return gestureOpen ? undoStack.peekLast() : null;
+    }
+    
+    // HELPER METHOD FOR FINDING THE HANDLE OF A SHAPE, GIVING IT ONE IF IT
+    // DOESN'T HAVE ONE YET
+    private int handleOf(int id) {
+        if (id >= handles.length) {
+            int oldLength = handles.length;
+            handles = Arrays.copyOf(handles, Math.max(store.getIdLimit(), oldLength * 3 / 2 + 1));
+            Arrays.fill(handles, oldLength, handles.length, NO_HANDLE);
+        }
+        if (handles[id] == NO_HANDLE) {
+            bind((freeHandleCount > 0) ? freeHandles[--freeHandleCount] : nextHandle++, id);
+        }
+        return handles[id];
+    }
+    
+    // HELPER METHOD FOR FINDING THE SHAPE WITH A HANDLE
+    private int idOf(int handle) {
+        return (handle == NO_HANDLE) ? ShapeStore.NO_SHAPE : ids[handle];
+    }
+    
+    // HELPER METHOD FOR TYING A HANDLE TO A SHAPE
+    private void bind(int handle, int id) {
+        if (handle >= ids.length) {
+            int newLength = Math.max(handle + 1, ids.length * 3 / 2);
+            ids = Arrays.copyOf(ids, newLength);
+            handleUses = Arrays.copyOf(handleUses, newLength);
+        }
+        if (id >= handles.length) {
+            int oldLength = handles.length;
+            handles = Arrays.copyOf(handles, Math.max(id + 1, oldLength * 3 / 2));
+            Arrays.fill(handles, oldLength, handles.length, NO_HANDLE);
+        }
+        ids[handle] = id;
+        handles[id] = handle;
+    }
+    
+    @Override
+    public void shapeAdded(int id) {
+        // THE ID MAY HAVE BELONGED TO A SHAPE THAT'S GONE
+        if (id < handles.length) {
+            handles[id] = NO_HANDLE;
+        }
+    }
+    
+    @Override
+    public void shapeChanged(int id) {}
+    
+    @Override
+    public void shapeRestacked(int id) {}
+    
+    @Override
+    public void shapeRemoved(int id) {
+        if (id < handles.length) {
+            handles[id] = NO_HANDLE;
+        }
+    }
+    
+    @Override
+    public void shapesCleared() {
+        clear();
+    }
+    
+    // THIS IS ONE EDIT, WHICH KNOWS HOW TO UNDO AND REDO ITSELF
+    private static abstract class Edit {
+        final int handle;
+        
+        Edit(int initHandle) {
+            handle = initHandle;
+        }
+        
+        abstract void undo(EditHistory history);
+        abstract void redo(EditHistory history);
+        
+        // THE HANDLE OF THE SHAPE THAT WAS ABOVE THIS ONE, FOR EDITS THAT
+        // NEED TO KNOW
+        int getUpperHandle() {
+            return NO_HANDLE;
+        }
+        
+        // ABOUT HOW MANY BYTES THIS EDIT TAKES UP
+        abstract int size();
+    }
+    
+    // THIS ADDS OR REMOVES A WHOLE SHAPE, SO IT HAS TO REMEMBER ALL OF IT
+    private static class ShapeEdit extends Edit {
+        final boolean removal;
+        byte type;
+        double x;
+        double y;
+        double width;
+        double height;
+        int fillColor;
+        int borderColor;
+        double borderWidth;
+        
+        // WHAT WAS ABOVE THE SHAPE BEFORE IT WAS REMOVED
+        int upperHandle = NO_HANDLE;
+        
+        ShapeEdit(int initHandle, boolean initRemoval) {
+            super(initHandle);
+            removal = initRemoval;
+        }
+        
+        void copyFrom(ShapeStore store, int id) {
+            type = (byte)store.getType(id).ordinal();
+            x = store.getX(id);
+            y = store.getY(id);
+            width = store.getWidth(id);
+            height = store.getHeight(id);
+            fillColor = store.getFillColor(id);
+            borderColor = store.getBorderColor(id);
+            borderWidth = store.getBorderWidth(id);
+        }
+        
+        // PUTS THE SHAPE BACK, EITHER ON TOP OR WHERE IT WAS
+        void restore(EditHistory history) {
+            int id = history.store.add(TYPES[type], x, y, width, height, fillColor, borderColor, borderWidth);
+            history.bind(handle, id);
+            if (upperHandle != NO_HANDLE) {
+                history.store.placeBelow(id, history.idOf(upperHandle));
+            }
+        }
+        
+        void delete(EditHistory history) {
+            history.store.remove(history.idOf(handle));
+        }
+        
+        @Override
+        int getUpperHandle() {
+            return upperHandle;
+        }
+        
+        @Override
+        void undo(EditHistory history) {
+            if (removal) {
+                restore(history);
+            }
+            else {
+                delete(history);
+            }
+        }
+        
+        @Override
+        void redo(EditHistory history) {
+            if (removal) {
+                delete(history);
+            }
+            else {
+                restore(history);
+            }
+        }
+        
+        @Override
+        int size() {
+            return EDIT_OVERHEAD + 4 + 1 + 1 + 5 * 8 + 2 * 4 + 4;
+        }
+    }
+    
+    // THIS CHANGES A PAIR OF VALUES, EITHER THE POSITION OR THE SIZE
+    private static class PairEdit extends Edit {
+        static final byte MOVE = 0;
+        static final byte RESIZE = 1;
+        
+        final byte kind;
+        final double oldFirst;
+        final double oldSecond;
+        double newFirst;
+        double newSecond;
+        
+        PairEdit(int initHandle, byte initKind, double initOldFirst, double initOldSecond,
+                double initNewFirst, double initNewSecond) {
+            super(initHandle);
+            kind = initKind;
+            oldFirst = initOldFirst;
+            oldSecond = initOldSecond;
+            newFirst = initNewFirst;
+            newSecond = initNewSecond;
+        }
+        
+        void setNew(double initNewFirst, double initNewSecond) {
+            newFirst = initNewFirst;
+            newSecond = initNewSecond;
+        }
+        
+        void apply(EditHistory history, double first, double second) {
+            int id = history.idOf(handle);
+            if (kind == MOVE) {
+                history.store.setPosition(id, first, second);
+            }
+            else {
+                history.store.setSize(id, first, second);
+            }
+        }
+        
+        @Override
+        void undo(EditHistory history) {
+            apply(history, oldFirst, oldSecond);
+        }
+        
+        @Override
+        void redo(EditHistory history) {
+            apply(history, newFirst, newSecond);
+        }
+        
+        @Override
+        int size() {
+            return EDIT_OVERHEAD + 4 + 1 + 4 * 8;
+        }
+    }
+    
+    // THIS CHANGES EITHER THE FILL OR THE OUTLINE COLOR
+    private static class ColorEdit extends Edit {
+        final boolean fill;
+        final int oldColor;
+        final int newColor;
+        
+        ColorEdit(int initHandle, boolean initFill, int initOldColor, int initNewColor) {
+            super(initHandle);
+            fill = initFill;
+            oldColor = initOldColor;
+            newColor = initNewColor;
+        }
+        
+        void apply(EditHistory history, int argb) {
+            int id = history.idOf(handle);
+            if (fill) {
+                history.store.setFillColor(id, argb);
+            }
+            else {
+                history.store.setBorderColor(id, argb);
+            }
+        }
+        
+        @Override
+        void undo(EditHistory history) {
+            apply(history, oldColor);
+        }
+        
+        @Override
+        void redo(EditHistory history) {
+            apply(history, newColor);
+        }
+        
+        @Override
+        int size() {
+            return EDIT_OVERHEAD + 4 + 1 + 2 * 4;
+        }
+    }
+    
+    // THIS CHANGES THE THICKNESS OF THE OUTLINE
+    private static class BorderWidthEdit extends Edit {
+        final double oldWidth;
+        double newWidth;
+        
+        BorderWidthEdit(int initHandle, double initOldWidth, double initNewWidth) {
+            super(initHandle);
+            oldWidth = initOldWidth;
+            newWidth = initNewWidth;
+        }
+        
+        @Override
+        void undo(EditHistory history) {
+            history.store.setBorderWidth(history.idOf(handle), oldWidth);
+        }
+        
+        @Override
+        void redo(EditHistory history) {
+            history.store.setBorderWidth(history.idOf(handle), newWidth);
+        }
+        
+        @Override
+        int size() {
+            return EDIT_OVERHEAD + 4 + 2 * 8;
+        }
+    }
+    
+    // THIS MOVES A SHAPE UP OR DOWN, REMEMBERING WHAT WAS ABOVE IT SO IT
+    // CAN BE PUT BACK
+    private static class RestackEdit extends Edit {
+        static final byte TO_FRONT = 0;
+        static final byte TO_BACK = 1;
+        static final byte FORWARD = 2;
+        static final byte BACKWARD = 3;
+        
+        final byte kind;
+        final int oldUpperHandle;
+        
+        RestackEdit(int initHandle, byte initKind, int initOldUpperHandle) {
+            super(initHandle);
+            kind = initKind;
+            oldUpperHandle = initOldUpperHandle;
+        }
+        
+        boolean apply(EditHistory history) {
+            int id = history.idOf(handle);
+            switch (kind) {
+                case TO_FRONT:
+                    return history.store.bringToFront(id);
+                case TO_BACK:
+                    return history.store.sendToBack(id);
+                case FORWARD:
+                    return history.store.moveForward(id);
+                default:
+                    return history.store.moveBackward(id);
+            }
+        }
+        
+        @Override
+        void undo(EditHistory history) {
+            history.store.placeBelow(history.idOf(handle), history.idOf(oldUpperHandle));
+        }
+        
+        @Override
+        int getUpperHandle() {
+            return oldUpperHandle;
+        }
+        
+        @Override
+        void redo(EditHistory history) {
+            apply(history);
+        }
+        
+        @Override
+        int size() {
+            return EDIT_OVERHEAD + 4 + 1 + 4;
+        }
+    }
+}
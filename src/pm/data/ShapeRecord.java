@@ -0,0 +1,151 @@
+package pm.data;
+
+import javafx.scene.paint.Color;
+
+/**
+ * This class stores the saved state of a single shape independently of any
+ * JavaFX node, which lets file I/O pass shapes around without needing a
+ * live scene graph. Colors are kept packed into ARGB ints.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class ShapeRecord {
+    
+    public static enum ShapeType {
+        RECTANGLE("Rectangle"),
+        ELLIPSE("Ellipse");
+        
+        // THIS IS THE NAME USED FOR THE TYPE IN OUR FILES
+        private final String typeName;
+        
+        ShapeType(String initTypeName) {
+            typeName = initTypeName;
+        }
+        
+        public String getTypeName() {
+            return typeName;
+        }
+        
+        /**
+         * Finds the shape type saved with the provided name. Note that
+         * just like the original loader anything that isn't a rectangle
+         * is treated as an ellipse.
+         * 
+         * @param typeName The type name read from a file.
+         * 
+         * @return The matching shape type.
+         */
+        public static ShapeType fromTypeName(String typeName) {
+            return RECTANGLE.typeName.equals(typeName)? RECTANGLE : ELLIPSE;
+        }
+    };
+    
+    private final ShapeType type;
+    
+    // FOR RECTANGLES THESE ARE THE TOP LEFT CORNER AND SIZE, FOR
+    // ELLIPSES THEY ARE THE CENTER AND THE TWO RADII
+    private final double x;
+    private final double y;
+    private final double width;
+    private final double height;
+    
+    private final int fillColor;
+    private final int borderColor;
+    private final double borderWidth;
+
+    /**
+     * Constructor for initializing a shape record with all of its data.
+     * 
+     * @param initType The kind of shape.
+     * @param initX The x location of the shape.
+     * @param initY The y location of the shape.
+     * @param initWidth The width (or x radius) of the shape.
+     * @param initHeight The height (or y radius) of the shape.
+     * @param initFillColor The packed ARGB fill color.
+     * @param initBorderColor The packed ARGB outline color.
+     * @param initBorderWidth The thickness of the outline.
+     */
+    public ShapeRecord(ShapeType initType, double initX, double initY, 
+            double initWidth, double initHeight, int initFillColor, 
+            int initBorderColor, double initBorderWidth) {
+        type = initType;
+        x = initX;
+        y = initY;
+        width = initWidth;
+        height = initHeight;
+        fillColor = initFillColor;
+        borderColor = initBorderColor;
+        borderWidth = initBorderWidth;
+    }
+    
+    public ShapeType getType() { return type; }
+    public double getX() { return x; }
+    public double getY() { return y; }
+    public double getWidth() { return width; }
+    public double getHeight() { return height; }
+    public int getFillColor() { return fillColor; }
+    public int getBorderColor() { return borderColor; }
+    public double getBorderWidth() { return borderWidth; }
+    
+    /**
+     * Packs a color string as written by our files into an ARGB int. Files
+     * we write always use the 0xrrggbbaa form, which is decoded directly,
+     * anything else goes through the JavaFX color parser.
+     * 
+     * @param colorString The color as read from a file.
+     * 
+     * @return The packed ARGB color.
+     */
+    public static int parseColor(String colorString) {
+        if (colorString.length() == 10 && colorString.startsWith("0x")
+                && Character.digit(colorString.charAt(2), 16) >= 0) {
+            try {
+                int rgba = (int)Long.parseLong(colorString.substring(2), 16);
+                return (rgba >>> 8) | (rgba << 24);
+            } catch (NumberFormatException nfe) {
+                // FALL THROUGH TO THE FULL PARSER
+            }
+        }
+        return toArgb(Color.web(colorString));
+    }
+    
+    /**
+     * Formats a packed ARGB color the same way Color.toString does, which
+     * is the form our files use.
+     * 
+     * @param argb The packed color.
+     * 
+     * @return The color as 0xrrggbbaa.
+     */
+    public static String formatColor(int argb) {
+        return String.format("0x%08x", (argb << 8) | (argb >>> 24));
+    }
+    
+    /**
+     * Packs a JavaFX color into an ARGB int.
+     * 
+     * @param color The color to pack.
+     * 
+     * @return The packed ARGB color.
+     */
+    public static int toArgb(Color color) {
+        return ((int)Math.round(color.getOpacity() * 255.0) << 24)
+                | ((int)Math.round(color.getRed() * 255.0) << 16)
+                | ((int)Math.round(color.getGreen() * 255.0) << 8)
+                | (int)Math.round(color.getBlue() * 255.0);
+    }
+    
+    /**
+     * Unpacks an ARGB int into a JavaFX color.
+     * 
+     * @param argb The packed color.
+     * 
+     * @return The matching JavaFX color.
+     */
+    public static Color toColor(int argb) {
+        return Color.rgb((argb >> 16) & 0xff, (argb >> 8) & 0xff, argb & 0xff, 
+                ((argb >>> 24) & 0xff) / 255.0);
+    }
+}
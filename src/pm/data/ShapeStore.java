@@ -0,0 +1,736 @@
+package pm.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javafx.scene.paint.Color;
+import pm.data.ShapeRecord.ShapeType;
+
+/**
+ * This class holds all of the shapes of a document, and is where they
+ * truly live. Rather than an object per shape, each property of the shapes
+ * is kept in its own primitive array indexed by shape id, which takes a
+ * few dozen bytes per shape and lets big documents exist without any
+ * JavaFX nodes at all. Anything showing the shapes should listen to the
+ * store and follow along.
+ * 
+ * A shape keeps its id for as long as it is in the store, though the id
+ * of a removed shape is given to the next shape added. The store also
+ * keeps the stacking order of the shapes as a linked list through their
+ * ids, so restacking a shape takes constant time, along with a rank for
+ * each shape for comparing the heights of any two shapes.
+ * 
+ * Colors are kept as entries in the store's palette, so every shape of the
+ * same color shares one JavaFX color.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class ShapeStore {
+    
+    // USED WHEN THERE'S NO SHAPE, LIKE ABOVE THE TOP SHAPE
+    public static final int NO_SHAPE = -1;
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    // RANKS ARE SPREAD OUT BY THIS MUCH SO A SHAPE CAN USUALLY BE PUT
+    // BETWEEN TWO OTHERS WITHOUT RENUMBERING ANY OF THEM
+    private static final long RANK_STEP = 1L << 32;
+    private static final byte FREE = -1;
+    private static final ShapeType[] TYPES = ShapeType.values();
+    
+    // THE SHAPES, INDEXED BY ID
+    private byte[] types;
+    private double[] x;
+    private double[] y;
+    private double[] width;
+    private double[] height;
+    private int[] fillEntries;
+    private int[] borderEntries;
+    private double[] borderWidths;
+    
+    // THE STACKING ORDER, AS A LIST LINKED FROM THE BOTTOM UP AND FROM THE
+    // TOP DOWN, WITH RANKS THAT ALWAYS INCREASE GOING UP
+    private int[] above;
+    private int[] below;
+    private long[] ranks;
+    private int bottom;
+    private int top;
+    
+    // IDS IN USE ARE ALL BELOW THIS, AND ANY THAT ARE FREE ARE LISTED
+    private int idLimit;
+    private int[] freeIds;
+    private int freeCount;
+    private int size;
+    
+    // THE DISTINCT COLORS OF THE SHAPES
+    private final ColorPalette palette;
+    
+    private final ArrayList<ShapeStoreListener> listeners;
+    
+    /**
+     * Constructor for making an empty store.
+     */
+    public ShapeStore() {
+        listeners = new ArrayList<>();
+        palette = new ColorPalette();
+        allocate(INITIAL_CAPACITY);
+        bottom = NO_SHAPE;
+        top = NO_SHAPE;
+    }
+    
+    // HELPER CONSTRUCTOR FOR COPYING A STORE, ONE ARRAY AT A TIME
+    private ShapeStore(ShapeStore original) {
+        listeners = new ArrayList<>();
+        palette = new ColorPalette(original.palette);
+        int limit = original.idLimit;
+        types = Arrays.copyOf(original.types, limit);
+        x = Arrays.copyOf(original.x, limit);
+        y = Arrays.copyOf(original.y, limit);
+        width = Arrays.copyOf(original.width, limit);
+        height = Arrays.copyOf(original.height, limit);
+        fillEntries = Arrays.copyOf(original.fillEntries, limit);
+        borderEntries = Arrays.copyOf(original.borderEntries, limit);
+        borderWidths = Arrays.copyOf(original.borderWidths, limit);
+        above = Arrays.copyOf(original.above, limit);
+        below = Arrays.copyOf(original.below, limit);
+        ranks = Arrays.copyOf(original.ranks, limit);
+        freeIds = Arrays.copyOf(original.freeIds, original.freeCount);
+        freeCount = original.freeCount;
+        idLimit = limit;
+        size = original.size;
+        bottom = original.bottom;
+        top = original.top;
+    }
+    
+    /**
+     * This function copies the store, shapes, ids, stacking order and all,
+     * into a new store with no listeners. Only the arrays are copied, no
+     * object is made for any shape, so it's quick even for a big document.
+     * 
+     * @return The copy.
+     */
+    public ShapeStore copy() {
+        return new ShapeStore(this);
+    }
+    
+    public void addListener(ShapeStoreListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(ShapeStoreListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * This function places a new shape on top of all the others.
+     * 
+     * @param type The kind of shape.
+     * @param initX The x location of the shape.
+     * @param initY The y location of the shape.
+     * @param initWidth The width (or x radius) of the shape.
+     * @param initHeight The height (or y radius) of the shape.
+     * @param fillColor The packed ARGB fill color.
+     * @param borderColor The packed ARGB outline color.
+     * @param borderWidth The thickness of the outline.
+     * 
+     * @return The id of the new shape.
+     */
+    public int add(ShapeType type, double initX, double initY, double initWidth, 
+            double initHeight, int fillColor, int borderColor, double borderWidth) {
+        int id = store(type, initX, initY, initWidth, initHeight, fillColor, borderColor, borderWidth);
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeAdded(id);
+        }
+        return id;
+    }
+    
+    /**
+     * This function places a new shape on top of all the others.
+     * 
+     * @param record The state of the new shape.
+     * 
+     * @return The id of the new shape.
+     */
+    public int add(ShapeRecord record) {
+        return add(record.getType(), record.getX(), record.getY(), record.getWidth(), 
+                record.getHeight(), record.getFillColor(), record.getBorderColor(),
+                record.getBorderWidth());
+    }
+    
+    /**
+     * This function places new shapes on top of all the others, in order,
+     * telling the listeners about them all at once.
+     * 
+     * @param records The states of the new shapes.
+     * 
+     * @return The ids of the new shapes.
+     */
+    public int[] addAll(List<ShapeRecord> records) {
+        ensureCapacity(idLimit + records.size());
+        int[] ids = new int[records.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ShapeRecord record = records.get(i);
+            ids[i] = store(record.getType(), record.getX(), record.getY(), record.getWidth(), 
+                    record.getHeight(), record.getFillColor(), record.getBorderColor(),
+                    record.getBorderWidth());
+        }
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapesAdded(ids);
+        }
+        return ids;
+    }
+    
+    // HELPER METHOD FOR FILLING IN A NEW SHAPE AND PUTTING IT ON TOP
+    private int store(ShapeType type, double initX, double initY, double initWidth, 
+            double initHeight, int fillColor, int borderColor, double borderWidth) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        }
+        else {
+            ensureCapacity(idLimit + 1);
+            id = idLimit++;
+        }
+        types[id] = (byte)type.ordinal();
+        x[id] = initX;
+        y[id] = initY;
+        width[id] = initWidth;
+        height[id] = initHeight;
+        fillEntries[id] = palette.intern(fillColor);
+        borderEntries[id] = palette.intern(borderColor);
+        borderWidths[id] = borderWidth;
+        linkOnTop(id);
+        size++;
+        return id;
+    }
+    
+    /**
+     * This function takes a shape out of the store.
+     * 
+     * @param id The id of the shape to remove.
+     */
+    public void remove(int id) {
+        checkId(id);
+        unlink(id);
+        types[id] = FREE;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, Math.max(INITIAL_CAPACITY, freeCount * 2));
+        }
+        freeIds[freeCount++] = id;
+        size--;
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeRemoved(id);
+        }
+    }
+    
+    /**
+     * This function takes all of the shapes out of the store and gives
+     * back the memory they were using.
+     */
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+        palette.clear();
+        bottom = NO_SHAPE;
+        top = NO_SHAPE;
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapesCleared();
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * This function provides one more than the highest id in use, which is
+     * handy for sizing arrays indexed by id.
+     * 
+     * @return The limit on the ids in use.
+     */
+    public int getIdLimit() {
+        return idLimit;
+    }
+    
+    public boolean contains(int id) {
+        return id >= 0 && id < idLimit && types[id] != FREE;
+    }
+    
+    public ShapeType getType(int id) {
+        checkId(id);
+        return TYPES[types[id]];
+    }
+    
+    public boolean isRectangle(int id) {
+        return getType(id) == ShapeType.RECTANGLE;
+    }
+    
+    public double getX(int id) {
+        checkId(id);
+        return x[id];
+    }
+    
+    public double getY(int id) {
+        checkId(id);
+        return y[id];
+    }
+    
+    public double getWidth(int id) {
+        checkId(id);
+        return width[id];
+    }
+    
+    public double getHeight(int id) {
+        checkId(id);
+        return height[id];
+    }
+    
+    public int getFillColor(int id) {
+        checkId(id);
+        return palette.getArgb(fillEntries[id]);
+    }
+    
+    public int getBorderColor(int id) {
+        checkId(id);
+        return palette.getArgb(borderEntries[id]);
+    }
+    
+    /**
+     * Accessor method for the fill of a shape as a JavaFX color, which is
+     * shared with every other use of the same color.
+     * 
+     * @param id The id of the shape.
+     * 
+     * @return The shape's fill color.
+     */
+    public Color getFillPaint(int id) {
+        checkId(id);
+        return palette.getColor(fillEntries[id]);
+    }
+    
+    /**
+     * Accessor method for the outline of a shape as a JavaFX color, which
+     * is shared with every other use of the same color.
+     * 
+     * @param id The id of the shape.
+     * 
+     * @return The shape's outline color.
+     */
+    public Color getBorderPaint(int id) {
+        checkId(id);
+        return palette.getColor(borderEntries[id]);
+    }
+    
+    public ColorPalette getPalette() {
+        return palette;
+    }
+    
+    public double getBorderWidth(int id) {
+        checkId(id);
+        return borderWidths[id];
+    }
+    
+    public void setPosition(int id, double newX, double newY) {
+        checkId(id);
+        x[id] = newX;
+        y[id] = newY;
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeMoved(id);
+        }
+    }
+    
+    public void setSize(int id, double newWidth, double newHeight) {
+        checkId(id);
+        width[id] = newWidth;
+        height[id] = newHeight;
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeResized(id);
+        }
+    }
+    
+    public void setFillColor(int id, int argb) {
+        checkId(id);
+        fillEntries[id] = palette.intern(argb);
+        fireShapeRecolored(id);
+    }
+    
+    public void setBorderColor(int id, int argb) {
+        checkId(id);
+        borderEntries[id] = palette.intern(argb);
+        fireShapeRecolored(id);
+    }
+    
+    public void setBorderWidth(int id, double newBorderWidth) {
+        checkId(id);
+        borderWidths[id] = newBorderWidth;
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeBorderWidthChanged(id);
+        }
+    }
+    
+    private void fireShapeRecolored(int id) {
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeRecolored(id);
+        }
+    }
+    
+    /**
+     * This function provides the state of a shape as a record.
+     * 
+     * @param id The id of the shape.
+     * 
+     * @return The state of the shape.
+     */
+    public ShapeRecord getRecord(int id) {
+        checkId(id);
+        return new ShapeRecord(TYPES[types[id]], x[id], y[id], width[id], height[id],
+                palette.getArgb(fillEntries[id]), palette.getArgb(borderEntries[id]), borderWidths[id]);
+    }
+    
+    /**
+     * This function provides the shapes in paint order as records. Note
+     * that the list is just a view of the shapes as they are now, each
+     * record is made as it is asked for.
+     * 
+     * @return The shapes of the store as records.
+     */
+    public List<ShapeRecord> getRecords() {
+        final int[] ids = getIdsInOrder();
+        return new AbstractList<ShapeRecord>() {
+            @Override
+            public ShapeRecord get(int index) {
+                return getRecord(ids[index]);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+    
+    // STACKING ORDER
+    
+    /**
+     * This function provides the ids of all the shapes from the bottom to
+     * the top.
+     * 
+     * @return The ids in paint order.
+     */
+    public int[] getIdsInOrder() {
+        int[] ids = new int[size];
+        int i = 0;
+        for (int id = bottom; id != NO_SHAPE; id = above[id]) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+    
+    public int getBottom() {
+        return bottom;
+    }
+    
+    public int getTop() {
+        return top;
+    }
+    
+    /**
+     * This function provides the shape just above a shape, for walking up
+     * through the shapes in paint order starting from the bottom.
+     * 
+     * @param id The id of a shape.
+     * 
+     * @return The id of the shape above it, or NO_SHAPE at the top.
+     */
+    public int getAbove(int id) {
+        checkId(id);
+        return above[id];
+    }
+    
+    /**
+     * This function provides the shape just below a shape, for walking down
+     * through the shapes starting from the top.
+     * 
+     * @param id The id of a shape.
+     * 
+     * @return The id of the shape below it, or NO_SHAPE at the bottom.
+     */
+    public int getBelow(int id) {
+        checkId(id);
+        return below[id];
+    }
+    
+    /**
+     * This function provides the rank of a shape, shapes with higher ranks
+     * are above shapes with lower ranks. Note that ranks change as shapes
+     * are restacked.
+     * 
+     * @param id The id of a shape.
+     * 
+     * @return The rank of the shape.
+     */
+    public long getRank(int id) {
+        checkId(id);
+        return ranks[id];
+    }
+    
+    /**
+     * This function moves a shape above all the others.
+     * 
+     * @param id The id of the shape to move.
+     * 
+     * @return True if the shape moved.
+     */
+    public boolean bringToFront(int id) {
+        checkId(id);
+        if (id == top) {
+            return false;
+        }
+        unlink(id);
+        linkOnTop(id);
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeBroughtToFront(id);
+        }
+        return true;
+    }
+    
+    /**
+     * This function moves a shape below all the others.
+     * 
+     * @param id The id of the shape to move.
+     * 
+     * @return True if the shape moved.
+     */
+    public boolean sendToBack(int id) {
+        checkId(id);
+        if (id == bottom) {
+            return false;
+        }
+        unlink(id);
+        if (ranks[bottom] < Long.MIN_VALUE + RANK_STEP) {
+            renumber();
+        }
+        below[id] = NO_SHAPE;
+        above[id] = bottom;
+        ranks[id] = ranks[bottom] - RANK_STEP;
+        below[bottom] = id;
+        bottom = id;
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeSentToBack(id);
+        }
+        return true;
+    }
+    
+    /**
+     * This function moves a shape up one place, swapping it with the shape
+     * just above it.
+     * 
+     * @param id The id of the shape to move.
+     * 
+     * @return True if the shape moved.
+     */
+    public boolean moveForward(int id) {
+        checkId(id);
+        if (id == top) {
+            return false;
+        }
+        swapWithAbove(id);
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeMovedForward(id);
+        }
+        return true;
+    }
+    
+    /**
+     * This function moves a shape down one place, swapping it with the
+     * shape just below it.
+     * 
+     * @param id The id of the shape to move.
+     * 
+     * @return True if the shape moved.
+     */
+    public boolean moveBackward(int id) {
+        checkId(id);
+        if (id == bottom) {
+            return false;
+        }
+        swapWithAbove(below[id]);
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapeMovedBackward(id);
+        }
+        return true;
+    }
+    
+    /**
+     * This function moves a shape to just below another one, or to the top
+     * if there's no other one, which is what it takes to put a shape back
+     * where it used to be. Note that once in a long while this has to
+     * renumber the ranks of all the shapes.
+     * 
+     * @param id The id of the shape to move.
+     * 
+     * @param upperId The id of the shape it should end up just below, or
+     * NO_SHAPE to put it on top.
+     * 
+     * @return True if the shape moved.
+     */
+    public boolean placeBelow(int id, int upperId) {
+        checkId(id);
+        if (upperId == NO_SHAPE) {
+            if (id == top) {
+                return false;
+            }
+            unlink(id);
+            linkOnTop(id);
+        }
+        else {
+            checkId(upperId);
+            if (id == upperId || above[id] == upperId) {
+                return false;
+            }
+            unlink(id);
+            int lower = below[upperId];
+            above[id] = upperId;
+            below[id] = lower;
+            below[upperId] = id;
+            if (lower != NO_SHAPE) {
+                above[lower] = id;
+            }
+            else {
+                bottom = id;
+            }
+            if (lower == NO_SHAPE && ranks[upperId] >= Long.MIN_VALUE + RANK_STEP) {
+                ranks[id] = ranks[upperId] - RANK_STEP;
+            }
+            else if (lower != NO_SHAPE && ranks[upperId] - ranks[lower] > 1) {
+                ranks[id] = ranks[lower] + (ranks[upperId] - ranks[lower]) / 2;
+            }
+            else {
+                renumber();
+            }
+        }
+        for (ShapeStoreListener listener : listeners) {
+            listener.shapePlacedBelow(id);
+        }
+        return true;
+    }
+    
+    // HELPER METHOD FOR SPREADING THE RANKS BACK OUT EVENLY AROUND 0
+    private void renumber() {
+        long rank = -(size / 2) * RANK_STEP;
+        for (int id = bottom; id != NO_SHAPE; id = above[id]) {
+            ranks[id] = rank;
+            rank += RANK_STEP;
+        }
+    }
+    
+    // HELPER METHOD FOR TRADING PLACES WITH THE SHAPE ABOVE
+    private void swapWithAbove(int id) {
+        int upper = above[id];
+        int lower = below[id];
+        int higher = above[upper];
+        
+        // lower, id, upper, higher BECOMES lower, upper, id, higher
+        above[upper] = id;
+        below[upper] = lower;
+        above[id] = higher;
+        below[id] = upper;
+        if (lower != NO_SHAPE) {
+            above[lower] = upper;
+        }
+        else {
+            bottom = upper;
+        }
+        if (higher != NO_SHAPE) {
+            below[higher] = id;
+        }
+        else {
+            top = id;
+        }
+        long rank = ranks[id];
+        ranks[id] = ranks[upper];
+        ranks[upper] = rank;
+    }
+    
+    private void linkOnTop(int id) {
+        above[id] = NO_SHAPE;
+        below[id] = top;
+        if (top != NO_SHAPE) {
+            if (ranks[top] > Long.MAX_VALUE - RANK_STEP) {
+                renumber();
+            }
+            above[top] = id;
+            ranks[id] = ranks[top] + RANK_STEP;
+        }
+        else {
+            bottom = id;
+            ranks[id] = 0;
+        }
+        top = id;
+    }
+    
+    private void unlink(int id) {
+        if (below[id] != NO_SHAPE) {
+            above[below[id]] = above[id];
+        }
+        else {
+            bottom = above[id];
+        }
+        if (above[id] != NO_SHAPE) {
+            below[above[id]] = below[id];
+        }
+        else {
+            top = below[id];
+        }
+    }
+    
+    private void checkId(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("No shape with id " + id);
+        }
+    }
+    
+    // HELPER METHOD FOR STARTING OVER WITH EMPTY ARRAYS
+    private void allocate(int capacity) {
+        types = new byte[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        width = new double[capacity];
+        height = new double[capacity];
+        fillEntries = new int[capacity];
+        borderEntries = new int[capacity];
+        borderWidths = new double[capacity];
+        above = new int[capacity];
+        below = new int[capacity];
+        ranks = new long[capacity];
+        freeIds = new int[0];
+        freeCount = 0;
+        idLimit = 0;
+        size = 0;
+    }
+    
+    // HELPER METHOD FOR GROWING THE ARRAYS, BY HALF AGAIN EACH TIME
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, types.length + (types.length >> 1));
+        types = Arrays.copyOf(types, newCapacity);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        width = Arrays.copyOf(width, newCapacity);
+        height = Arrays.copyOf(height, newCapacity);
+        fillEntries = Arrays.copyOf(fillEntries, newCapacity);
+        borderEntries = Arrays.copyOf(borderEntries, newCapacity);
+        borderWidths = Arrays.copyOf(borderWidths, newCapacity);
+        above = Arrays.copyOf(above, newCapacity);
+        below = Arrays.copyOf(below, newCapacity);
+        ranks = Arrays.copyOf(ranks, newCapacity);
+    }
+}
@@ -0,0 +1,102 @@
+package pm.data;
+
+/**
+ * This interface is for anything that needs to follow the changes made to
+ * a shape store, such as the nodes that show its shapes. All of these are
+ * called after the change has been made.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public interface ShapeStoreListener {
+    
+    /**
+     * Called when a shape has been placed on top of all the others.
+     * 
+     * @param id The id of the new shape.
+     */
+    public void shapeAdded(int id);
+    
+    /**
+     * Called when shapes have been placed on top of all the others all at
+     * once, by default this is the same as adding them one at a time.
+     * 
+     * @param ids The ids of the new shapes, from the bottom to the top.
+     */
+    public default void shapesAdded(int[] ids) {
+        for (int id : ids) {
+            shapeAdded(id);
+        }
+    }
+    
+    /**
+     * Called when a shape has moved, changed size or changed its colors
+     * or outline.
+     * 
+     * @param id The id of the shape that changed.
+     */
+    public void shapeChanged(int id);
+    
+    // THESE SAY EXACTLY WHAT CHANGED, FOR LISTENERS THAT CARE, BY DEFAULT
+    // THEY ARE ALL JUST CHANGES
+    
+    public default void shapeMoved(int id) {
+        shapeChanged(id);
+    }
+    
+    public default void shapeResized(int id) {
+        shapeChanged(id);
+    }
+    
+    public default void shapeRecolored(int id) {
+        shapeChanged(id);
+    }
+    
+    public default void shapeBorderWidthChanged(int id) {
+        shapeChanged(id);
+    }
+    
+    /**
+     * Called when a shape has been restacked.
+     * 
+     * @param id The id of the shape that moved up or down.
+     */
+    public void shapeRestacked(int id);
+    
+    // AND THESE SAY EXACTLY HOW IT WAS RESTACKED, BY DEFAULT THEY ARE ALL
+    // JUST RESTACKINGS
+    
+    public default void shapeBroughtToFront(int id) {
+        shapeRestacked(id);
+    }
+    
+    public default void shapeSentToBack(int id) {
+        shapeRestacked(id);
+    }
+    
+    public default void shapeMovedForward(int id) {
+        shapeRestacked(id);
+    }
+    
+    public default void shapeMovedBackward(int id) {
+        shapeRestacked(id);
+    }
+    
+    public default void shapePlacedBelow(int id) {
+        shapeRestacked(id);
+    }
+    
+    /**
+     * Called when a shape has been removed. Note that its id may be given
+     * to a new shape after this.
+     * 
+     * @param id The id the shape had.
+     */
+    public void shapeRemoved(int id);
+    
+    /**
+     * Called when all of the shapes have been removed.
+     */
+    public void shapesCleared();
+}
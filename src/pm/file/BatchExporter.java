@@ -0,0 +1,311 @@
+package pm.file;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import pm.data.DocumentSnapshot;
+import saf.io.AppFiles;
+import static saf.settings.AppStartupConstants.PATH_EXPORT;
+import static saf.settings.AppStartupConstants.PATH_WORK;
+
+/**
+ * This class exports every document in a directory as an image, from the
+ * command line and without starting the application. Documents are read
+ * and drawn in parallel across all of the machine's processors, and each
+ * image is written under a temporary name and then moved into place, so
+ * an image is never seen half written. Each document is drawn as last
+ * saved, with the edits in its journal. The hash of each document and its
+ * journal is kept alongside the images, and documents that haven't
+ * changed since their last export are skipped. Documents that differ
+ * only in their extension, like foo.pm and foo.pmb, keep it in their
+ * image's name, foo.pm.png and foo.pmb.png, so they never write over one
+ * another.
+ * 
+ * Usage: BatchExporter [sourceDirectory [outputDirectory]]
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class BatchExporter {
+    
+    // THIS FILE IN THE OUTPUT DIRECTORY REMEMBERS WHAT WAS EXPORTED
+    public static final String HASHES_FILE_NAME = ".export_hashes";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    
+    public static enum ExportStatus {
+        EXPORTED,
+        SKIPPED,
+        FAILED
+    };
+    
+    private final Path sourceDirectory;
+    private final Path outputDirectory;
+    private final FileManager fileManager;
+    
+    // SOURCE HASHES FROM THE LAST EXPORT, KEYED BY RELATIVE SOURCE PATH
+    private final Properties lastHashes;
+
+    /**
+     * Constructor for setting up an export between two directories.
+     * 
+     * @param initSourceDirectory Where to look for documents, including in
+     * sub directories.
+     * 
+     * @param initOutputDirectory Where to write the images, which mirrors
+     * the layout of the source directory.
+     */
+    public BatchExporter(Path initSourceDirectory, Path initOutputDirectory) {
+        sourceDirectory = initSourceDirectory;
+        outputDirectory = initOutputDirectory;
+        fileManager = new FileManager();
+        lastHashes = new Properties();
+    }
+    
+    /**
+     * This method exports all of the documents in the source directory,
+     * printing the result for each as it finishes and then the totals.
+     * 
+     * @return The results for each document.
+     * 
+     * @throws IOException Thrown should the directories not be usable.
+     */
+    public List<ExportResult> exportAll() throws IOException {
+        Files.createDirectories(outputDirectory);
+        Path hashesFile = outputDirectory.resolve(HASHES_FILE_NAME);
+        if (Files.exists(hashesFile)) {
+            try (InputStream is = Files.newInputStream(hashesFile)) {
+                lastHashes.load(is);
+            }
+        }
+        
+        List<Path> documents;
+        try (Stream<Path> files = Files.walk(sourceDirectory)) {
+            documents = files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> FileManager.hasDocumentExtension(file.toString()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        
+        // NAME EACH DOCUMENT BY ITS PATH IN THE SOURCE DIRECTORY, WHICH
+        // BOTH KEYS ITS HASH AND NAMES ITS IMAGE, AND FIND THE DOCUMENTS
+        // THAT WOULD END UP WITH THE SAME IMAGE
+        List<String> relativePaths = new ArrayList<>(documents.size());
+        Map<String, Integer> imageUses = new HashMap<>();
+        for (Path document : documents) {
+            String relativePath = sourceDirectory.relativize(document).toString().replace('\\', '/');
+            relativePaths.add(relativePath);
+            imageUses.merge(imageName(relativePath, false), 1, Integer::sum);
+        }
+        
+        // EXPORT THEM ALL ON A POOL WITH A THREAD PER PROCESSOR
+        long start = System.nanoTime();
+        List<Callable<ExportResult>> exports = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Path document = documents.get(i);
+            String relativePath = relativePaths.get(i);
+            String imageName = imageName(relativePath, false);
+            if (imageUses.get(imageName) > 1) {
+                imageName = imageName(relativePath, true);
+            }
+            Path image = outputDirectory.resolve(imageName);
+            exports.add(() -> export(document, relativePath, image));
+        }
+        List<ExportResult> results = new ArrayList<>(documents.size());
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (Future<ExportResult> export : pool.invokeAll(exports)) {
+                results.add(export.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        // REMEMBER WHAT WE EXPORTED FOR NEXT TIME
+        Properties hashes = new Properties();
+        for (ExportResult result : results) {
+            if (result.status != ExportStatus.FAILED) {
+                hashes.setProperty(result.key, result.sourceHash);
+            }
+        }
+        Path tempHashesFile = AppFiles.getTempPath(hashesFile);
+        try (OutputStream os = Files.newOutputStream(tempHashesFile)) {
+            hashes.store(os, "Source hashes of the last export");
+        }
+        AppFiles.moveIntoPlace(tempHashesFile, hashesFile);
+        
+        printTotals(results, elapsed);
+        return results;
+    }
+    
+    // HELPER METHOD FOR NAMING A DOCUMENT'S IMAGE RELATIVE TO THE OUTPUT
+    // DIRECTORY, EITHER IN PLACE OF THE DOCUMENT'S EXTENSION OR AFTER IT
+    private static String imageName(String relativePath, boolean keepExtension) {
+        return keepExtension ? relativePath + FileManager.IMAGE_FILE_EXT
+                : FileManager.changeExtension(relativePath, FileManager.IMAGE_FILE_EXT);
+    }
+    
+    // HELPER METHOD FOR EXPORTING A SINGLE DOCUMENT, WHICH RUNS ON THE POOL,
+    // KEYING ITS HASH BY ITS PATH IN THE SOURCE DIRECTORY
+    private ExportResult export(Path document, String key, Path image) {
+        long start = System.nanoTime();
+        ExportResult result = new ExportResult(key, document, image);
+        try {
+            result.sourceHash = hash(document, Paths.get(EditJournal.getJournalPath(document.toString())));
+            if (result.sourceHash.equals(lastHashes.getProperty(key)) && Files.exists(image)) {
+                result.status = ExportStatus.SKIPPED;
+            }
+            else {
+                // READ THE DOCUMENT AS LAST SAVED
+                DocumentSnapshot snapshot = EditJournal.readWithEdits(fileManager, document.toString());
+                result.shapeCount = snapshot.getShapeCount();
+                
+                // AND DRAW IT OUT, WHICH ONLY REPLACES THE IMAGE ONCE DONE
+                Files.createDirectories(image.getParent());
+                fileManager.exportDocument(snapshot, image.toString());
+                result.status = ExportStatus.EXPORTED;
+            }
+        } catch (IOException | RuntimeException e) {
+            result.status = ExportStatus.FAILED;
+            result.error = e;
+        }
+        result.nanos = System.nanoTime() - start;
+        printResult(result);
+        return result;
+    }
+    
+    // HELPER METHOD FOR HASHING A DOCUMENT ALONG WITH ITS JOURNAL, IF IT
+    // HAS ONE. EACH FILE'S LENGTH GOES IN AHEAD OF ITS CONTENTS SO THAT
+    // NO TWO DIFFERENT PAIRS OF FILES HASH THE SAME
+    private static String hash(Path document, Path journal) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IOException(nsae);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        for (Path file : new Path[] { document, journal }) {
+            if (file == journal && !Files.isRegularFile(journal)) {
+                break;
+            }
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(Files.size(file)).array());
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+                int read;
+                while ((read = is.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+    
+    private static synchronized void printResult(ExportResult result) {
+        switch (result.status) {
+            case EXPORTED:
+                System.out.printf("%s -> %s  %.1f ms (%d shapes)%n", 
+                        result.source, result.image, result.nanos / 1e6, result.shapeCount);
+                break;
+            case SKIPPED:
+                System.out.printf("%s unchanged, skipped  %.1f ms%n", result.source, result.nanos / 1e6);
+                break;
+            default:
+                System.out.printf("%s FAILED: %s%n", result.source, result.error);
+                break;
+        }
+    }
+    
+    private static void printTotals(List<ExportResult> results, long elapsed) {
+        int exported = 0, skipped = 0, failed = 0;
+        long shapes = 0;
+        for (ExportResult result : results) {
+            switch (result.status) {
+                case EXPORTED:  exported++; shapes += result.shapeCount;  break;
+                case SKIPPED:   skipped++;                                break;
+                default:        failed++;                                 break;
+            }
+        }
+        double seconds = elapsed / 1e9;
+        System.out.printf("Exported %d, skipped %d, failed %d of %d files in %.2f s "
+                + "(%.1f files/s, %.0f shapes/s)%n",
+                exported, skipped, failed, results.size(), seconds,
+                seconds > 0 ? results.size() / seconds : 0,
+                seconds > 0 ? shapes / seconds : 0);
+    }
+    
+    /**
+     * This class describes how the export of one document went.
+     */
+    public static class ExportResult {
+        final String key;
+        final Path source;
+        final Path image;
+        String sourceHash;
+        ExportStatus status;
+        Exception error;
+        int shapeCount;
+        long nanos;
+        
+        ExportResult(String initKey, Path initSource, Path initImage) {
+            key = initKey;
+            source = initSource;
+            image = initImage;
+        }
+        
+        public Path getSource() { return source; }
+        public Path getImage() { return image; }
+        public ExportStatus getStatus() { return status; }
+        public long getNanos() { return nanos; }
+    }
+
+    /**
+     * Exports every document under the source directory, which defaults to
+     * the work directory, into the output directory, which defaults to the
+     * export directory.
+     * 
+     * @param args The optional source and output directories.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Path sourceDirectory = Paths.get(args.length > 0 ? args[0] : PATH_WORK);
+        Path outputDirectory = Paths.get(args.length > 1 ? args[1] : PATH_EXPORT);
+        try {
+            List<ExportResult> results = new BatchExporter(sourceDirectory, outputDirectory).exportAll();
+            for (ExportResult result : results) {
+                if (result.status == ExportStatus.FAILED) {
+                    System.exit(1);
+                }
+            }
+        } catch (IOException ioe) {
+            System.err.println("Batch export failed: " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package pm.file;
+
+import java.nio.ByteOrder;
+
+/**
+ * This class describes the layout of our binary document format, which
+ * is shared by its reader and writer. A file starts with a fixed header
+ * followed by the table of shape type names and the palette of colors the
+ * shapes use, then the shape data itself stored one section per field so
+ * that each section can be decoded in bulk:
+ * 
+ * <pre>
+ *   int     magic number
+ *   short   format version
+ *   short   number of entries in the shape type table
+ *   int     background color (packed ARGB)
+ *   int     number of shapes
+ *   type table, each entry a byte length followed by the ASCII name
+ *   int     number of entries in the palette
+ *   int[]   palette (packed ARGB)
+ *   byte[]  shape type of each shape, as an index into the type table
+ *   double[] x, y, width and height of each shape
+ *   double[] border width of each shape
+ *   char[]  fill color of each shape, as an index into the palette
+ *   char[]  border color of each shape, as an index into the palette
+ * </pre>
+ * 
+ * Every section starts on an 8 byte boundary and all values are little
+ * endian. Version 1 files have no palette, and their fill and border
+ * colors are packed ARGB ints, which is also how documents with too many
+ * colors for a palette are still written.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+class BinaryShapeFormat {
+    // "PMBF" WHEN READ AS ASCII
+    static final int MAGIC = 0x504D4246;
+    static final short VERSION = 2;
+    static final short VERSION_WITHOUT_PALETTE = 1;
+    
+    // THE MOST COLORS A PALETTE CAN HOLD, SINCE SHAPES INDEX IT WITH CHARS
+    static final int MAX_PALETTE_SIZE = Character.MAX_VALUE + 1;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    
+    // THE SIZE OF THE FIXED PART OF THE HEADER
+    static final int HEADER_SIZE = 16;
+    
+    // NUMBER OF GEOMETRY VALUES STORED PER SHAPE
+    static final int GEOMETRY_FIELDS = 4;
+    
+    // HOW MANY BYTES EACH SHAPE TAKES UP ACROSS ALL OF THE SECTIONS
+    static final int BYTES_PER_SHAPE = 1 + (GEOMETRY_FIELDS + 1) * Double.BYTES + 2 * Character.BYTES;
+    static final int BYTES_PER_SHAPE_WITHOUT_PALETTE = 1 + (GEOMETRY_FIELDS + 1) * Double.BYTES + 2 * Integer.BYTES;
+    
+    /**
+     * Rounds a file offset up to the start of the next section.
+     * 
+     * @param offset The offset to align.
+     * 
+     * @return The offset rounded up to a multiple of 8.
+     */
+    static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,202 @@
+package pm.file;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import pm.data.ShapeRecord;
+import pm.data.ShapeRecord.ShapeType;
+import static pm.file.BinaryShapeFormat.*;
+
+/**
+ * This class reads our binary document format, see BinaryShapeFormat for
+ * the layout. The file is read whole into memory and each section is
+ * decoded in bulk a block of shapes at a time, no text parsing is involved.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class BinaryShapeReader {
+    
+    // HOW MANY SHAPES WE DECODE FROM EACH SECTION AT A TIME
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * This method reads the binary document at the provided path, sending
+     * its background color and each of its shapes to the handler in paint
+     * order.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to load the data from.
+     * 
+     * @param handler The handler that receives the document contents.
+     * 
+     * @throws IOException Thrown should there be an error reading the
+     * file or should the file not be in our format.
+     */
+    public void read(String filePath, ShapeHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to read: " + filePath);
+            }
+            // READ INTO THE HEAP RATHER THAN MAPPING THE FILE, SINCE WINDOWS
+            // WON'T LET US SAVE OVER A FILE WHILE A MAPPING OF IT IS ALIVE
+            ByteBuffer buffer = ByteBuffer.allocate((int)size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Binary file is truncated");
+                }
+            }
+            buffer.flip();
+            read(buffer, handler);
+        }
+    }
+    
+    /**
+     * This method reads a binary document held in the provided buffer,
+     * sending its background color and each of its shapes to the handler
+     * in paint order.
+     * 
+     * @param buffer The buffer holding the whole document, positioned at
+     * its start.
+     * 
+     * @param handler The handler that receives the document contents.
+     * 
+     * @throws IOException Thrown should the document not be in our format.
+     */
+    public void read(ByteBuffer buffer, ShapeHandler handler) throws IOException {
+        try {
+            ByteBuffer in = buffer.slice().order(BYTE_ORDER);
+            
+            // FIRST THE HEADER
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a binary Pose Maker file");
+            }
+            short version = in.getShort();
+            if (version != VERSION && version != VERSION_WITHOUT_PALETTE) {
+                throw new IOException("Unsupported binary file version " + version);
+            }
+            boolean paletted = version != VERSION_WITHOUT_PALETTE;
+            short typeCount = in.getShort();
+            int backgroundColor = in.getInt();
+            int count = in.getInt();
+            int bytesPerShape = paletted ? BYTES_PER_SHAPE : BYTES_PER_SHAPE_WITHOUT_PALETTE;
+            if (typeCount < 0 || typeCount > in.remaining()) {
+                throw new IOException("Bad type table size " + typeCount);
+            }
+            if (count < 0 || (long)count * bytesPerShape > in.remaining()) {
+                throw new IOException("Binary file is truncated");
+            }
+            ShapeType[] typeTable = new ShapeType[typeCount];
+            
+            // THEN THE TYPE TABLE, WHICH MAPS THE TYPE CODES IN THIS FILE
+            // ONTO THE SHAPE TYPES WE KNOW ABOUT
+            for (int i = 0; i < typeTable.length; i++) {
+                byte[] name = new byte[in.get() & 0xff];
+                in.get(name);
+                typeTable[i] = toShapeType(new String(name, StandardCharsets.US_ASCII));
+            }
+            
+            // AND THE PALETTE, IF THE FILE HAS ONE
+            int[] palette = null;
+            if (paletted) {
+                in.position((int)align(in.position()));
+                int paletteSize = in.getInt();
+                if (paletteSize < 0 || paletteSize > MAX_PALETTE_SIZE
+                        || (long)paletteSize * Integer.BYTES > in.remaining()) {
+                    throw new IOException("Bad palette size " + paletteSize);
+                }
+                palette = new int[paletteSize];
+                in.asIntBuffer().get(palette);
+                in.position(in.position() + paletteSize * Integer.BYTES);
+            }
+            handler.backgroundColor(backgroundColor);
+            
+            // NOW FIND WHERE EACH SECTION STARTS
+            int colorBytes = paletted ? Character.BYTES : Integer.BYTES;
+            int typesStart = (int)align(in.position());
+            int geometryStart = (int)align(typesStart + count);
+            int borderWidthStart = geometryStart + count * GEOMETRY_FIELDS * Double.BYTES;
+            int fillStart = borderWidthStart + count * Double.BYTES;
+            int borderStart = fillStart + count * colorBytes;
+            if (borderStart + count * colorBytes > in.limit()) {
+                throw new IOException("Binary file is truncated");
+            }
+            ByteBuffer types = section(in, typesStart);
+            DoubleBuffer geometry = section(in, geometryStart).asDoubleBuffer();
+            DoubleBuffer borderWidths = section(in, borderWidthStart).asDoubleBuffer();
+            IntBuffer fills = paletted ? null : section(in, fillStart).asIntBuffer();
+            IntBuffer borders = paletted ? null : section(in, borderStart).asIntBuffer();
+            CharBuffer fillEntries = paletted ? section(in, fillStart).asCharBuffer() : null;
+            CharBuffer borderEntries = paletted ? section(in, borderStart).asCharBuffer() : null;
+            
+            // AND DECODE THEM TOGETHER ONE BLOCK OF SHAPES AT A TIME
+            int blockSize = Math.min(count, BLOCK_SIZE);
+            byte[] typeBlock = new byte[blockSize];
+            double[] geometryBlock = new double[blockSize * GEOMETRY_FIELDS];
+            double[] borderWidthBlock = new double[blockSize];
+            int[] fillBlock = new int[blockSize];
+            int[] borderBlock = new int[blockSize];
+            char[] fillEntryBlock = paletted ? new char[blockSize] : null;
+            char[] borderEntryBlock = paletted ? new char[blockSize] : null;
+            for (int start = 0; start < count; start += blockSize) {
+                int n = Math.min(blockSize, count - start);
+                types.get(typeBlock, 0, n);
+                geometry.get(geometryBlock, 0, n * GEOMETRY_FIELDS);
+                borderWidths.get(borderWidthBlock, 0, n);
+                if (paletted) {
+                    fillEntries.get(fillEntryBlock, 0, n);
+                    borderEntries.get(borderEntryBlock, 0, n);
+                    for (int i = 0; i < n; i++) {
+                        fillBlock[i] = palette[fillEntryBlock[i]];
+                        borderBlock[i] = palette[borderEntryBlock[i]];
+                    }
+                }
+                else {
+                    fills.get(fillBlock, 0, n);
+                    borders.get(borderBlock, 0, n);
+                }
+                for (int i = 0; i < n; i++) {
+                    int g = i * GEOMETRY_FIELDS;
+                    int typeCode = typeBlock[i] & 0xff;
+                    if (typeCode >= typeTable.length) {
+                        throw new IOException("Unknown shape type code " + typeCode);
+                    }
+                    handler.shape(new ShapeRecord(typeTable[typeCode],
+                            geometryBlock[g], geometryBlock[g + 1],
+                            geometryBlock[g + 2], geometryBlock[g + 3],
+                            fillBlock[i], borderBlock[i], borderWidthBlock[i]));
+                }
+                handler.progress((start + n) / (double)count);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException("Binary file is truncated", e);
+        }
+    }
+    
+    // HELPER METHOD FOR GETTING A VIEW OF THE BUFFER STARTING AT A SECTION
+    private static ByteBuffer section(ByteBuffer in, int start) {
+        ByteBuffer section = in.duplicate();
+        section.position(start);
+        return section.slice().order(BYTE_ORDER);
+    }
+    
+    // HELPER METHOD FOR LOOKING UP A TYPE NAME FROM THE TYPE TABLE
+    private static ShapeType toShapeType(String typeName) throws IOException {
+        for (ShapeType type : ShapeType.values()) {
+            if (type.getTypeName().equals(typeName)) {
+                return type;
+            }
+        }
+        throw new IOException("Unknown shape type " + typeName);
+    }
+}
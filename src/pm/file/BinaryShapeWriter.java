@@ -0,0 +1,178 @@
+package pm.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import pm.data.ColorPalette;
+import pm.data.DocumentSnapshot;
+import pm.data.ShapeRecord.ShapeType;
+import static pm.file.BinaryShapeFormat.*;
+
+/**
+ * This class writes our binary document format, see BinaryShapeFormat for
+ * the layout. Each section is written with a pass over the shapes through
+ * a fixed size buffer, so the whole file is never held in memory. The
+ * palette is gathered with one more pass before any of that. Every pass
+ * reads the fields it needs straight from the snapshot, so no object is
+ * made for any shape.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class BinaryShapeWriter {
+    
+    // THE SIZE OF THE BUFFER SITTING BETWEEN US AND THE FILE
+    private static final int SAVE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * This method writes a document to the provided path.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to save the data to.
+     * 
+     * @param document The snapshot of the document to write.
+     * 
+     * @throws IOException Thrown should there be an error writing 
+     * out data to the file.
+     */
+    public void write(String filePath, DocumentSnapshot document) throws IOException {
+        ShapeType[] types = ShapeType.values();
+        int count = document.getShapeCount();
+        
+        // GATHER THE COLORS, WHICH ALMOST ALWAYS FIT IN A PALETTE
+        ColorPalette palette = new ColorPalette();
+        for (int i = 0; i < count; i++) {
+            palette.intern(document.getFillColor(i));
+            palette.intern(document.getBorderColor(i));
+            if (palette.size() > MAX_PALETTE_SIZE) {
+                break;
+            }
+        }
+        boolean paletted = palette.size() <= MAX_PALETTE_SIZE;
+        
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            SectionWriter out = new SectionWriter(channel);
+            
+            // FIRST THE HEADER AND THE TYPE TABLE
+            out.putInt(MAGIC);
+            out.putShort(paletted ? VERSION : VERSION_WITHOUT_PALETTE);
+            out.putShort((short)types.length);
+            out.putInt(document.getBackgroundColor());
+            out.putInt(count);
+            for (ShapeType type : types) {
+                byte[] name = type.getTypeName().getBytes(StandardCharsets.US_ASCII);
+                out.putByte((byte)name.length);
+                for (byte b : name) {
+                    out.putByte(b);
+                }
+            }
+            
+            if (paletted) {
+                out.align();
+                out.putInt(palette.size());
+                for (int entry = 0; entry < palette.size(); entry++) {
+                    out.putInt(palette.getArgb(entry));
+                }
+            }
+            
+            // THEN EACH OF THE SHAPE SECTIONS
+            out.align();
+            for (int i = 0; i < count; i++) {
+                out.putByte((byte)document.getType(i).ordinal());
+            }
+            out.align();
+            for (int i = 0; i < count; i++) {
+                out.putDouble(document.getX(i));
+                out.putDouble(document.getY(i));
+                out.putDouble(document.getWidth(i));
+                out.putDouble(document.getHeight(i));
+            }
+            for (int i = 0; i < count; i++) {
+                out.putDouble(document.getBorderWidth(i));
+            }
+            if (paletted) {
+                for (int i = 0; i < count; i++) {
+                    out.putChar((char)palette.intern(document.getFillColor(i)));
+                }
+                for (int i = 0; i < count; i++) {
+                    out.putChar((char)palette.intern(document.getBorderColor(i)));
+                }
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    out.putInt(document.getFillColor(i));
+                }
+                for (int i = 0; i < count; i++) {
+                    out.putInt(document.getBorderColor(i));
+                }
+            }
+            out.flush();
+        }
+    }
+    
+    // THIS KEEPS TRACK OF WHERE WE ARE IN THE FILE AS THE BUFFER FILLS
+    // AND EMPTIES, WHICH WE NEED TO KNOW TO LINE UP EACH SECTION
+    private static class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long flushed;
+        
+        SectionWriter(FileChannel initChannel) {
+            channel = initChannel;
+            buffer = ByteBuffer.allocateDirect(SAVE_BUFFER_SIZE).order(BYTE_ORDER);
+        }
+        
+        void putByte(byte value) throws IOException {
+            ensure(Byte.BYTES);
+            buffer.put(value);
+        }
+        
+        void putShort(short value) throws IOException {
+            ensure(Short.BYTES);
+            buffer.putShort(value);
+        }
+        
+        void putChar(char value) throws IOException {
+            ensure(Character.BYTES);
+            buffer.putChar(value);
+        }
+        
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+        
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+        
+        void align() throws IOException {
+            long position = flushed + buffer.position();
+            for (long i = position; i < BinaryShapeFormat.align(position); i++) {
+                putByte((byte)0);
+            }
+        }
+        
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package pm.file;
+
+import java.io.IOException;
+import pm.data.DocumentSnapshot;
+
+/**
+ * This class converts documents between our JSON and binary formats. It
+ * can be run from the command line with the files to convert, each .pm
+ * file will be written out as a .pmb file next to it and vice versa. No
+ * information is lost in either direction. Each document is converted as
+ * last saved, with the edits in its journal.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class DocumentConverter {
+    private final FileManager fileManager = new FileManager();
+    private final JsonShapeWriter jsonWriter = new JsonShapeWriter();
+    private final BinaryShapeWriter binaryWriter = new BinaryShapeWriter();
+
+    /**
+     * This method converts a JSON document into a binary document.
+     * 
+     * @param jsonFilePath The JSON document to read.
+     * 
+     * @param binaryFilePath Where to write the binary document.
+     * 
+     * @throws IOException Thrown should there be an error reading or
+     * writing either of the files.
+     */
+    public void jsonToBinary(String jsonFilePath, String binaryFilePath) throws IOException {
+        DocumentSnapshot document = EditJournal.readWithEdits(fileManager, jsonFilePath);
+        binaryWriter.write(binaryFilePath, document);
+    }
+
+    /**
+     * This method converts a binary document into a JSON document.
+     * 
+     * @param binaryFilePath The binary document to read.
+     * 
+     * @param jsonFilePath Where to write the JSON document.
+     * 
+     * @throws IOException Thrown should there be an error reading or
+     * writing either of the files.
+     */
+    public void binaryToJson(String binaryFilePath, String jsonFilePath) throws IOException {
+        DocumentSnapshot document = EditJournal.readWithEdits(fileManager, binaryFilePath);
+        jsonWriter.write(jsonFilePath, document.getBackgroundColor(), document.getShapes());
+    }
+
+    /**
+     * Converts each file named on the command line into the other format.
+     * 
+     * @param args The .pm and .pmb files to convert.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: DocumentConverter file.pm|file.pmb ...");
+            System.exit(1);
+        }
+        DocumentConverter converter = new DocumentConverter();
+        boolean failed = false;
+        for (String filePath : args) {
+            try {
+                if (FileManager.isBinaryFile(filePath)) {
+                    String jsonFilePath = FileManager.changeExtension(filePath, FileManager.JSON_FILE_EXT);
+                    converter.binaryToJson(filePath, jsonFilePath);
+                    System.out.println(filePath + " -> " + jsonFilePath);
+                }
+                else {
+                    String binaryFilePath = FileManager.changeExtension(filePath, FileManager.BINARY_FILE_EXT);
+                    converter.jsonToBinary(filePath, binaryFilePath);
+                    System.out.println(filePath + " -> " + binaryFilePath);
+                }
+            } catch (IOException ioe) {
+                System.err.println(filePath + ": " + ioe.getMessage());
+                failed = true;
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+}
@@ -0,0 +1,175 @@
+package pm.file;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import pm.data.DataManager;
+import pm.data.ShapeRecord;
+
+/**
+ * This task loads a document without tying up the JavaFX thread. The file
+ * is read on the task's own thread, which hands the shapes over through a
+ * bounded queue, and on each pulse the JavaFX thread adds the next batch of
+ * them to the workspace all at once. The task only finishes once every shape
+ * is in the workspace, and it may be cancelled at any point. The document's
+ * journal is read along with it, but replaying it is left to whoever
+ * started the task.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class DocumentLoadTask extends Task<Integer> {
+    
+    // THE MOST SHAPES WE'LL ADD TO THE SCENE IN ONE PULSE
+    private static final int SHAPES_PER_PULSE = 1000;
+    
+    // HOW MANY PULSES WORTH OF SHAPES THE READER MAY GET AHEAD BY
+    private static final int QUEUED_PULSES = 4;
+    
+    private final FileManager fileManager;
+    private final DataManager dataManager;
+    private final String filePath;
+    
+    // SHAPES THAT HAVE BEEN READ BUT NOT YET ADDED TO THE WORKSPACE
+    private final BlockingQueue<ShapeRecord> readShapes;
+    
+    // THIS ADDS THE QUEUED SHAPES TO THE WORKSPACE ONCE PER PULSE
+    private final AnimationTimer shapeAdder;
+    
+    // SET ONCE THE WHOLE FILE HAS BEEN READ, AND COUNTED DOWN ONCE THE
+    // LAST OF ITS SHAPES HAS BEEN ADDED TO THE WORKSPACE
+    private volatile boolean readingDone;
+    private final CountDownLatch addingDone;
+    
+    // THE DOCUMENT'S JOURNAL, IF IT HAS ONE THAT MATCHES IT
+    private volatile EditJournal.JournalContents journal;
+
+    /**
+     * Constructor for setting up the task, note that loading doesn't begin
+     * until the task is started.
+     * 
+     * @param initFileManager The file component that will read the file.
+     * 
+     * @param initDataManager The data component to load the document into.
+     * 
+     * @param initFilePath Path (including file name/extension) to where
+     * to load the data from.
+     */
+    public DocumentLoadTask(FileManager initFileManager, DataManager initDataManager, String initFilePath) {
+        fileManager = initFileManager;
+        dataManager = initDataManager;
+        filePath = initFilePath;
+        readShapes = new ArrayBlockingQueue<>(SHAPES_PER_PULSE * QUEUED_PULSES);
+        addingDone = new CountDownLatch(1);
+        shapeAdder = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                addReadShapes();
+            }
+        };
+    }
+    
+    /**
+     * This method starts loading the document on a new background thread.
+     * Note that it must be called from the JavaFX thread, after the data
+     * component has been reset.
+     */
+    public void start() {
+        shapeAdder.start();
+        Thread loadThread = new Thread(this, "Load");
+        loadThread.setDaemon(true);
+        loadThread.start();
+    }
+
+    @Override
+    protected Integer call() throws Exception {
+        int[] shapeCount = new int[1];
+        try {
+            fileManager.readDocument(filePath, new ShapeHandler() {
+                @Override
+                public void backgroundColor(int argb) {
+                    // ONCE WE'VE BEEN CANCELLED ANOTHER DOCUMENT MAY ALREADY
+                    // BE LOADING, AND THE COLOR ISN'T OURS TO SET
+                    Platform.runLater(() -> {
+                        if (!isDone()) {
+                            dataManager.setBackgroundColor(ShapeRecord.toColor(argb));
+                        }
+                    });
+                }
+
+                @Override
+                public void shape(ShapeRecord shape) {
+                    try {
+                        readShapes.put(shape);
+                        shapeCount[0]++;
+                    } catch (InterruptedException ie) {
+                        // WE'VE BEEN CANCELLED
+                        throw new CancellationException();
+                    }
+                }
+
+                @Override
+                public void progress(double fraction) {
+                    updateProgress(fraction, 1.0);
+                }
+            });
+        } catch (IOException | CancellationException e) {
+            if (isCancelled()) {
+                return shapeCount[0];
+            }
+            throw e;
+        }
+        
+        // A JOURNAL WE CAN'T READ JUST MEANS THE EDITS IN IT ARE LOST
+        try {
+            journal = EditJournal.read(filePath);
+        } catch (IOException ioe) {
+            journal = null;
+        }
+        
+        // NOW WAIT FOR THE LAST OF THE SHAPES TO MAKE IT INTO THE WORKSPACE
+        readingDone = true;
+        addingDone.await();
+        updateProgress(1.0, 1.0);
+        return shapeCount[0];
+    }
+    
+    /**
+     * Accessor method for the journal read along with the document, which
+     * is only there once the task has succeeded.
+     * 
+     * @return The journal, or null if the document doesn't have one.
+     */
+    public EditJournal.JournalContents getJournal() {
+        return journal;
+    }
+    
+    // HELPER METHOD CALLED EACH PULSE TO ADD THE NEXT BATCH OF SHAPES
+    private void addReadShapes() {
+        if (isDone()) {
+            shapeAdder.stop();
+            readShapes.clear();
+            return;
+        }
+        
+        // NOTE THAT WE CHECK THIS BEFORE TAKING FROM THE QUEUE, SO IF IT'S
+        // SET EVERY SHAPE IS ALREADY IN THE QUEUE
+        boolean lastBatch = readingDone;
+        ArrayList<ShapeRecord> batch = new ArrayList<>(SHAPES_PER_PULSE);
+        readShapes.drainTo(batch, SHAPES_PER_PULSE);
+        if (!batch.isEmpty()) {
+            dataManager.addShapes(batch);
+        }
+        if (lastBatch && readShapes.isEmpty()) {
+            shapeAdder.stop();
+            addingDone.countDown();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package pm.file;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import pm.data.DocumentSnapshot;
+import pm.data.ShapeRecord;
+import pm.data.ShapeRecord.ShapeType;
+
+/**
+ * This class draws documents with Java2D, working straight from the shape
+ * records rather than from the workspace. No JavaFX stage or toolkit is
+ * needed, so it works on headless machines, and what it draws doesn't
+ * depend on the size of the application window. Shapes are drawn the
+ * same way JavaFX draws them, filled and then outlined with a centered,
+ * square capped, mitered stroke.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class DocumentRenderer {
+    
+    // THIS IS THE MITER LIMIT JavaFX USES BY DEFAULT
+    private static final float MITER_LIMIT = 10.0f;
+    
+    /**
+     * Whoever renders a document in strips is handed each of them through
+     * this, top to bottom.
+     */
+    public interface StripHandler {
+        /**
+         * Called with each strip once it has been drawn.
+         * 
+         * @param argb The strip's pixels as non premultiplied ARGB, one
+         * row after another starting at the front of the array. The array
+         * is reused for the next strip.
+         * 
+         * @param width The width of the strip in pixels.
+         * 
+         * @param rows How many rows the strip has.
+         * 
+         * @throws IOException Thrown should the strip not be handled.
+         */
+        public void strip(int[] argb, int width, int rows) throws IOException;
+    }
+
+    /**
+     * This method draws a region of a document into a new image. 
+     * 
+     * @param document The document to draw.
+     * 
+     * @param region The part of the document to draw, in document
+     * coordinates.
+     * 
+     * @param scale How many pixels each document unit takes up.
+     * 
+     * @return The image, which is the region's size times the scale.
+     */
+    public BufferedImage render(DocumentSnapshot document, Rectangle2D region, double scale) {
+        int width = getPixelWidth(region, scale);
+        int height = getPixelHeight(region, scale);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.scale(scale, scale);
+            g.translate(-region.getX(), -region.getY());
+            g.clip(region);
+            draw(g, document);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * This method draws a region of a document one strip of rows at a time,
+     * reusing the same image for every strip, so that however big the
+     * result gets only a strip of it is ever in memory. Strips meet on
+     * whole pixels, so they line up without seams, though shapes crossing
+     * from one to the next may be antialiased a shade differently than if
+     * it had all been drawn at once.
+     * 
+     * @param document The document to draw.
+     * 
+     * @param region The part of the document to draw, in document
+     * coordinates.
+     * 
+     * @param scale How many pixels each document unit takes up.
+     * 
+     * @param maxStripPixels About how many pixels each strip may have,
+     * though a strip always has at least one row.
+     * 
+     * @param handler Gets each strip once it's drawn.
+     * 
+     * @throws IOException Thrown should the handler fail, or should the
+     * thread be interrupted.
+     */
+    public void renderStrips(DocumentSnapshot document, Rectangle2D region, double scale,
+            int maxStripPixels, StripHandler handler) throws IOException {
+        int width = getPixelWidth(region, scale);
+        int height = getPixelHeight(region, scale);
+        int stripRows = Math.max(1, Math.min(height, maxStripPixels / width));
+        BufferedImage strip = new BufferedImage(width, stripRows, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt)strip.getRaster().getDataBuffer()).getData();
+        Rectangle2D.Double stripRegion = new Rectangle2D.Double();
+        for (int top = 0; top < height; top += stripRows) {
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Rendering was interrupted");
+            }
+            int rows = Math.min(stripRows, height - top);
+            Arrays.fill(pixels, 0);
+            
+            // THE STRIP'S EDGES FALL ON WHOLE PIXELS, SO NOTHING DRAWN
+            // ACROSS THEM COMES OUT ANY DIFFERENT
+            stripRegion.setRect(region.getX(), region.getY() + top / scale, 
+                    region.getWidth(), Math.min(rows / scale, region.getHeight() - top / scale));
+            Graphics2D g = strip.createGraphics();
+            try {
+                g.translate(0, -top);
+                g.scale(scale, scale);
+                g.translate(-region.getX(), -region.getY());
+                g.clip(stripRegion);
+                draw(g, document);
+            } finally {
+                g.dispose();
+            }
+            handler.strip(pixels, width, rows);
+        }
+    }
+    
+    /**
+     * Accessor method for how wide a region comes out once drawn.
+     * 
+     * @param region The region to draw, in document coordinates.
+     * 
+     * @param scale How many pixels each document unit takes up.
+     * 
+     * @return The width in pixels.
+     */
+    public static int getPixelWidth(Rectangle2D region, double scale) {
+        return Math.max(1, (int)Math.ceil(region.getWidth() * scale));
+    }
+    
+    /**
+     * Accessor method for how tall a region comes out once drawn.
+     * 
+     * @param region The region to draw, in document coordinates.
+     * 
+     * @param scale How many pixels each document unit takes up.
+     * 
+     * @return The height in pixels.
+     */
+    public static int getPixelHeight(Rectangle2D region, double scale) {
+        return Math.max(1, (int)Math.ceil(region.getHeight() * scale));
+    }
+
+    /**
+     * This method draws a document using the provided graphics, in document
+     * coordinates. Only the background inside the graphics' clip is filled,
+     * and shapes lying completely outside of it are skipped.
+     * 
+     * @param g The graphics to draw with, which must have a clip.
+     * 
+     * @param document The document to draw.
+     */
+    public void draw(Graphics2D g, DocumentSnapshot document) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        
+        // FIRST THE BACKGROUND
+        Rectangle2D clip = g.getClipBounds();
+        g.setColor(new Color(document.getBackgroundColor(), true));
+        g.fill(clip);
+        
+        // THEN THE SHAPES IN PAINT ORDER
+        Rectangle2D.Double rect = new Rectangle2D.Double();
+        Ellipse2D.Double ellipse = new Ellipse2D.Double();
+        Rectangle2D.Double bounds = new Rectangle2D.Double();
+        BasicStroke stroke = null;
+        for (ShapeRecord shape : document.getShapes()) {
+            if (!isVisible(shape)) {
+                continue;
+            }
+            getBounds(shape, bounds);
+            if (!bounds.intersects(clip)) {
+                continue;
+            }
+            Shape outline;
+            if (shape.getType() == ShapeType.RECTANGLE) {
+                rect.setRect(shape.getX(), shape.getY(), shape.getWidth(), shape.getHeight());
+                outline = rect;
+            }
+            else {
+                ellipse.setFrame(shape.getX() - shape.getWidth(), shape.getY() - shape.getHeight(), 
+                        shape.getWidth() * 2, shape.getHeight() * 2);
+                outline = ellipse;
+            }
+            g.setColor(new Color(shape.getFillColor(), true));
+            g.fill(outline);
+            if (shape.getBorderWidth() > 0) {
+                if (stroke == null || stroke.getLineWidth() != (float)shape.getBorderWidth()) {
+                    stroke = new BasicStroke((float)shape.getBorderWidth(),
+                            BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, MITER_LIMIT);
+                }
+                g.setStroke(stroke);
+                g.setColor(new Color(shape.getBorderColor(), true));
+                g.draw(outline);
+            }
+        }
+    }
+    
+    /**
+     * This method finds the area of the document that has been drawn on,
+     * including the outlines of the shapes.
+     * 
+     * @param shapes The shapes of the document.
+     * 
+     * @return The bounds of all the visible shapes, or null if there are
+     * none.
+     */
+    public static Rectangle2D getContentBounds(List<ShapeRecord> shapes) {
+        Rectangle2D.Double contentBounds = null;
+        Rectangle2D.Double bounds = new Rectangle2D.Double();
+        for (ShapeRecord shape : shapes) {
+            if (isVisible(shape)) {
+                getBounds(shape, bounds);
+                if (contentBounds == null) {
+                    contentBounds = new Rectangle2D.Double();
+                    contentBounds.setRect(bounds);
+                }
+                else {
+                    contentBounds.add(bounds);
+                }
+            }
+        }
+        return contentBounds;
+    }
+    
+    /**
+     * This method finds the area of the document to export, which runs
+     * from the document's origin, just like the workspace, out to the far
+     * edges of its shapes.
+     * 
+     * @param document The document being exported.
+     * 
+     * @return The area to export, in whole document units.
+     */
+    public static Rectangle getExportBounds(DocumentSnapshot document) {
+        Rectangle2D contentBounds = getContentBounds(document.getShapes());
+        if (contentBounds == null) {
+            return new Rectangle(0, 0, 1, 1);
+        }
+        return new Rectangle(0, 0, 
+                Math.max(1, (int)Math.ceil(contentBounds.getMaxX())), 
+                Math.max(1, (int)Math.ceil(contentBounds.getMaxY())));
+    }
+    
+    /**
+     * This method finds the area a shape covers once drawn, including half
+     * of its outline on each side.
+     * 
+     * @param shape The shape to measure.
+     * 
+     * @param bounds Where to put the bounds.
+     */
+    public static void getBounds(ShapeRecord shape, Rectangle2D bounds) {
+        double halfBorder = Math.max(0, shape.getBorderWidth()) / 2;
+        if (shape.getType() == ShapeType.RECTANGLE) {
+            bounds.setRect(shape.getX() - halfBorder, shape.getY() - halfBorder,
+                    shape.getWidth() + 2 * halfBorder, shape.getHeight() + 2 * halfBorder);
+        }
+        else {
+            bounds.setRect(shape.getX() - shape.getWidth() - halfBorder, 
+                    shape.getY() - shape.getHeight() - halfBorder,
+                    2 * (shape.getWidth() + halfBorder), 2 * (shape.getHeight() + halfBorder));
+        }
+    }
+    
+    /**
+     * Tests whether a shape would show up at all, JavaFX draws nothing for
+     * rectangles and ellipses with a negative size.
+     * 
+     * @param shape The shape to test.
+     * 
+     * @return true if the shape gets drawn.
+     */
+    public static boolean isVisible(ShapeRecord shape) {
+        return shape.getWidth() >= 0 && shape.getHeight() >= 0;
+    }
+}
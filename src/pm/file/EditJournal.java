@@ -0,0 +1,850 @@
+package pm.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import pm.data.DocumentSnapshot;
+import pm.data.ShapeRecord.ShapeType;
+import pm.data.ShapeStore;
+import pm.data.ShapeStoreListener;
+import saf.io.AppFiles;
+
+/**
+ * This class keeps a journal of the edits made to a document, so that
+ * saving only has to write what changed since the last save rather than
+ * the whole document. The journal lives next to the document it belongs
+ * to, and replaying it on top of that document gives back exactly what
+ * was saved. Its file looks like:
+ *
+ * <pre>
+ *   int     magic number
+ *   short   format version
+ *   short   unused
+ *   long    length of the document the journal starts from
+ *   long    last modified time of that document, in milliseconds
+ *   int     CRC-32 of that document's bytes
+ *   int     number of shapes in that document
+ *   int[]   journal id of each of those shapes, from the bottom up
+ *   edit records, each an op byte followed by the data for that op
+ * </pre>
+ *
+ * Shapes are named in the journal by their own ids rather than by their
+ * ids in the store, since store ids get reused. The journal is only good
+ * for the exact document it starts from, so one that doesn't match its
+ * document is ignored. The length and time are only a quick way to spot
+ * a document that has changed, a journal is only replayed once the
+ * document's bytes match its checksum too. Once the edits grow big enough they are folded into
+ * the document, which is done entirely on the saving thread.
+ *
+ * While attached to a store this records each edit as it happens, but the
+ * records are only written out when the document is saved. All values
+ * are little endian.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class EditJournal implements ShapeStoreListener {
+    // "PMJL" WHEN READ AS ASCII
+    static final int MAGIC = 0x504D4A4C;
+    static final short VERSION = 3;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    
+    // THE SIZE OF THE FIXED PART OF THE HEADER
+    static final int HEADER_SIZE = 32;
+    
+    // THE EDIT RECORDS, ALL BUT BACKGROUND START WITH A JOURNAL ID
+    static final byte CREATE = 1;
+    static final byte MOVE = 2;
+    static final byte RESIZE = 3;
+    static final byte RECOLOR = 4;
+    static final byte BORDER_WIDTH = 5;
+    static final byte TO_FRONT = 6;
+    static final byte TO_BACK = 7;
+    static final byte FORWARD = 8;
+    static final byte BACKWARD = 9;
+    static final byte DELETE = 10;
+    static final byte BACKGROUND = 11;
+    static final byte PLACE_BELOW = 12;
+    
+    // HOW MANY BYTES FOLLOW THE OP BYTE OF EACH KIND OF RECORD
+    private static final int[] RECORD_SIZES = {
+        -1,
+        Integer.BYTES + 1 + 5 * Double.BYTES + 2 * Integer.BYTES,
+        Integer.BYTES + 2 * Double.BYTES,
+        Integer.BYTES + 2 * Double.BYTES,
+        Integer.BYTES + 2 * Integer.BYTES,
+        Integer.BYTES + Double.BYTES,
+        Integer.BYTES,
+        Integer.BYTES,
+        Integer.BYTES,
+        Integer.BYTES,
+        Integer.BYTES,
+        Integer.BYTES,
+        2 * Integer.BYTES
+    };
+    
+    // THE EDITS ARE FOLDED INTO THE DOCUMENT ONCE THEY TAKE UP THIS MUCH,
+    // OR HALF THE SIZE OF THE DOCUMENT IF THAT'S BIGGER
+    private static final long COMPACTION_SIZE = 1 << 20;
+    
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+    private static final ShapeType[] TYPES = ShapeType.values();
+    
+    private final ShapeStore store;
+    
+    // THE DOCUMENT THE JOURNAL BELONGS TO
+    private String documentPath;
+    
+    // THE JOURNAL ID OF EACH SHAPE, INDEXED BY STORE ID, AND THE NEXT ONE
+    // TO HAND OUT
+    private int[] journalIds;
+    private int nextJournalId;
+    
+    // THE BACKGROUND COLOR AS OF THE LAST RECORD
+    private int backgroundColor;
+    
+    // THE JOURNAL IDS OF THE DOCUMENT'S SHAPES, IF THE JOURNAL FILE STILL
+    // HAS TO BE STARTED
+    private int[] pendingBase;
+    
+    // SET WHEN THE EDITS CAN NO LONGER BE TRUSTED, SO THE WHOLE DOCUMENT
+    // HAS TO BE SAVED AGAIN
+    private boolean snapshotNeeded;
+    
+    // EDITS THAT HAVEN'T BEEN SAVED YET, ALONG WITH WHERE THE LAST OF THEM
+    // STARTS SO REPEATS OF THE SAME EDIT CAN JUST REPLACE IT
+    private ByteBuffer edits;
+    private int lastRecordStart;
+    
+    private boolean attached;
+    
+    /**
+     * Constructor for a journal that will follow the provided store, note
+     * that it doesn't record anything until it's started or resumed.
+     *
+     * @param initStore The shapes of the document being edited.
+     */
+    public EditJournal(ShapeStore initStore) {
+        store = initStore;
+        journalIds = new int[0];
+        edits = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(BYTE_ORDER);
+        lastRecordStart = -1;
+    }
+    
+    /**
+     * This method starts a new journal for the document as it is right
+     * now, which should be exactly what's in the document's file or about
+     * to be written to it.
+     *
+     * @param initDocumentPath The document the journal belongs to.
+     *
+     * @param initBackgroundColor The document's packed ARGB background color.
+     */
+    public void start(String initDocumentPath, int initBackgroundColor) {
+        documentPath = initDocumentPath;
+        backgroundColor = initBackgroundColor;
+        journalIds = new int[store.getIdLimit()];
+        Arrays.fill(journalIds, ShapeStore.NO_SHAPE);
+        int[] order = store.getIdsInOrder();
+        pendingBase = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            journalIds[order[i]] = i;
+            pendingBase[i] = i;
+        }
+        nextJournalId = order.length;
+        snapshotNeeded = false;
+        clearEdits();
+        attach();
+    }
+    
+    /**
+     * This method picks up a journal read along with its document, replaying
+     * its edits on top of the document's shapes, which must already be in
+     * the store. Note that a journal that doesn't match the shapes is left
+     * alone, and the store along with it.
+     *
+     * @param initDocumentPath The document the journal belongs to.
+     *
+     * @param initBackgroundColor The document's packed ARGB background color.
+     *
+     * @param contents The journal as read from its file, or null if there
+     * wasn't one.
+     *
+     * @return true if the journal was replayed, false if a new one should
+     * be started instead.
+     */
+    public boolean resume(String initDocumentPath, int initBackgroundColor, JournalContents contents) {
+        if (contents == null) {
+            return false;
+        }
+        Replay replay = Replay.start(store, contents.baseIds, initBackgroundColor);
+        if (replay == null) {
+            return false;
+        }
+        
+        // IF THE EDITS ARE DAMAGED WE KEEP WHATEVER CAME BEFORE THE DAMAGE,
+        // BUT THE JOURNAL ON DISK CAN'T BE ADDED TO ANYMORE
+        boolean intact;
+        try {
+            intact = replay.apply(contents.records);
+        } catch (IOException ioe) {
+            intact = false;
+        }
+        documentPath = initDocumentPath;
+        backgroundColor = replay.backgroundColor;
+        journalIds = replay.journalIds;
+        nextJournalId = replay.nextJournalId;
+        pendingBase = null;
+        snapshotNeeded = !intact;
+        clearEdits();
+        attach();
+        return true;
+    }
+    
+    /**
+     * This method stops recording edits and forgets the document, after
+     * this the journal has to be started or resumed again to be used.
+     */
+    public void stop() {
+        if (attached) {
+            store.removeListener(this);
+            attached = false;
+        }
+        documentPath = null;
+        pendingBase = null;
+        clearEdits();
+    }
+    
+    // HELPER METHOD FOR FOLLOWING THE STORE
+    private void attach() {
+        if (!attached) {
+            store.addListener(this);
+            attached = true;
+        }
+    }
+    
+    public String getDocumentPath() {
+        return documentPath;
+    }
+    
+    public int getBackgroundColor() {
+        return backgroundColor;
+    }
+    
+    /**
+     * Accessor method for checking whether the next save can just add to
+     * the journal, or whether the whole document has to be written.
+     *
+     * @return true if the whole document has to be saved.
+     */
+    public boolean isSnapshotNeeded() {
+        return snapshotNeeded || documentPath == null;
+    }
+    
+    /**
+     * This method marks the journal on disk as no longer matching the
+     * edits, which happens when a save fails, so that the next save writes
+     * the whole document.
+     */
+    public void invalidate() {
+        snapshotNeeded = true;
+    }
+    
+    /**
+     * This method provides the journal ids of the shapes the journal
+     * starts from, if its file still has to be started, and only does so
+     * once.
+     *
+     * @return The journal ids from the bottom up, or null if the file has
+     * already been started.
+     */
+    public int[] takeBase() {
+        int[] base = pendingBase;
+        pendingBase = null;
+        return base;
+    }
+    
+    /**
+     * This method records the background color, if it's different from
+     * the last one recorded. Since the background isn't kept in the store
+     * this should be called before taking the edits for a save.
+     *
+     * @param argb The packed ARGB background color.
+     */
+    public void recordBackground(int argb) {
+        if (argb != backgroundColor) {
+            backgroundColor = argb;
+            beginRecord(BACKGROUND, 0);
+            edits.putInt(argb);
+        }
+    }
+    
+    /**
+     * This method hands over all of the edits recorded since the last time
+     * it was called.
+     *
+     * @return The edit records, ready to be added to the journal file.
+     */
+    public byte[] takeEdits() {
+        byte[] taken = Arrays.copyOf(edits.array(), edits.position());
+        clearEdits();
+        return taken;
+    }
+    
+    // HELPER METHOD FOR THROWING AWAY THE RECORDED EDITS
+    private void clearEdits() {
+        if (edits.capacity() > INITIAL_BUFFER_SIZE) {
+            edits = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(BYTE_ORDER);
+        }
+        edits.clear();
+        lastRecordStart = -1;
+    }
+    
+    @Override
+    public void shapeAdded(int id) {
+        if (id >= journalIds.length) {
+            int oldLength = journalIds.length;
+            journalIds = Arrays.copyOf(journalIds, Math.max(store.getIdLimit(), oldLength * 3 / 2 + 1));
+            Arrays.fill(journalIds, oldLength, journalIds.length, ShapeStore.NO_SHAPE);
+        }
+        journalIds[id] = nextJournalId++;
+        beginRecord(CREATE, journalIds[id]);
+        edits.put((byte)store.getType(id).ordinal());
+        edits.putDouble(store.getX(id));
+        edits.putDouble(store.getY(id));
+        edits.putDouble(store.getWidth(id));
+        edits.putDouble(store.getHeight(id));
+        edits.putInt(store.getFillColor(id));
+        edits.putInt(store.getBorderColor(id));
+        edits.putDouble(store.getBorderWidth(id));
+    }
+    
+    @Override
+    public void shapeChanged(int id) {
+        // THE STORE ALWAYS SAYS EXACTLY WHAT CHANGED
+    }
+    
+    @Override
+    public void shapeMoved(int id) {
+        beginRecord(MOVE, journalIds[id]);
+        edits.putDouble(store.getX(id));
+        edits.putDouble(store.getY(id));
+    }
+    
+    @Override
+    public void shapeResized(int id) {
+        beginRecord(RESIZE, journalIds[id]);
+        edits.putDouble(store.getWidth(id));
+        edits.putDouble(store.getHeight(id));
+    }
+    
+    @Override
+    public void shapeRecolored(int id) {
+        beginRecord(RECOLOR, journalIds[id]);
+        edits.putInt(store.getFillColor(id));
+        edits.putInt(store.getBorderColor(id));
+    }
+    
+    @Override
+    public void shapeBorderWidthChanged(int id) {
+        beginRecord(BORDER_WIDTH, journalIds[id]);
+        edits.putDouble(store.getBorderWidth(id));
+    }
+    
+    @Override
+    public void shapeRestacked(int id) {
+        // THE STORE ALWAYS SAYS EXACTLY HOW IT WAS RESTACKED
+    }
+    
+    @Override
+    public void shapeBroughtToFront(int id) {
+        beginRecord(TO_FRONT, journalIds[id]);
+    }
+    
+    @Override
+    public void shapeSentToBack(int id) {
+        beginRecord(TO_BACK, journalIds[id]);
+    }
+    
+    @Override
+    public void shapeMovedForward(int id) {
+        beginRecord(FORWARD, journalIds[id]);
+    }
+    
+    @Override
+    public void shapeMovedBackward(int id) {
+        beginRecord(BACKWARD, journalIds[id]);
+    }
+    
+    @Override
+    public void shapePlacedBelow(int id) {
+        int upperId = store.getAbove(id);
+        beginRecord(PLACE_BELOW, journalIds[id]);
+        edits.putInt((upperId == ShapeStore.NO_SHAPE) ? ShapeStore.NO_SHAPE : journalIds[upperId]);
+    }
+    
+    @Override
+    public void shapeRemoved(int id) {
+        beginRecord(DELETE, journalIds[id]);
+        journalIds[id] = ShapeStore.NO_SHAPE;
+    }
+    
+    @Override
+    public void shapesCleared() {
+        // NONE OF THE EDITS MEAN ANYTHING ANYMORE
+        journalIds = new int[0];
+        snapshotNeeded = true;
+        clearEdits();
+    }
+    
+    // HELPER METHOD FOR STARTING A RECORD, NOTE THAT A MOVE, RESIZE,
+    // RECOLOR OR NEW BORDER WIDTH FOR THE SAME SHAPE AS THE RECORD BEFORE
+    // IT JUST TAKES THAT RECORD'S PLACE, SO DRAGGING A SHAPE AROUND ONLY
+    // EVER LEAVES ONE RECORD BEHIND
+    private void beginRecord(byte op, int journalId) {
+        int size = 1 + RECORD_SIZES[op];
+        if (lastRecordStart >= 0 && op >= MOVE && op <= BORDER_WIDTH
+                && edits.get(lastRecordStart) == op
+                && edits.getInt(lastRecordStart + 1) == journalId) {
+            edits.position(lastRecordStart);
+        }
+        else if (edits.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(edits.capacity() * 2, edits.position() + size)).order(BYTE_ORDER);
+            edits.flip();
+            grown.put(edits);
+            edits = grown;
+        }
+        lastRecordStart = edits.position();
+        edits.put(op);
+        if (op != BACKGROUND) {
+            edits.putInt(journalId);
+        }
+    }
+    
+    /**
+     * Provides the journal file of a document, which is the document's
+     * own file name with the journal extension added to it.
+     *
+     * @param documentPath The document.
+     *
+     * @return The path of the document's journal.
+     */
+    public static String getJournalPath(String documentPath) {
+        return documentPath + FileManager.JOURNAL_FILE_EXT;
+    }
+    
+    /**
+     * This method reads the journal of a document, if it has one that
+     * still matches the document. It may be called from any thread.
+     *
+     * @param documentPath The document whose journal to read.
+     *
+     * @return The journal, or null if there is no usable one.
+     *
+     * @throws IOException Thrown should there be an error reading the
+     * journal.
+     */
+    public static JournalContents read(String documentPath) throws IOException {
+        Path journalPath = Paths.get(getJournalPath(documentPath));
+        if (!Files.isRegularFile(journalPath)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journalPath)).order(BYTE_ORDER);
+        int baseCount = readHeader(buffer, Paths.get(documentPath), true);
+        if (baseCount < 0 || buffer.remaining() < (long)baseCount * Integer.BYTES) {
+            return null;
+        }
+        int[] baseIds = new int[baseCount];
+        buffer.asIntBuffer().get(baseIds);
+        buffer.position(buffer.position() + baseCount * Integer.BYTES);
+        return new JournalContents(baseIds, buffer.slice().order(BYTE_ORDER));
+    }
+    
+    /**
+     * This method reads a document as it was last saved, which is the
+     * document with the edits in its journal replayed on top, just as
+     * opening it in the app would show it. Since saving usually only adds
+     * to the journal, anything working from saved documents should read
+     * them through this. It may be called from any thread.
+     *
+     * @param fileManager The file component for reading the document.
+     *
+     * @param documentPath The document to read.
+     *
+     * @return The document with all of its saved edits.
+     *
+     * @throws IOException Thrown should there be an error reading the
+     * document or its journal.
+     */
+    public static DocumentSnapshot readWithEdits(FileManager fileManager, String documentPath) throws IOException {
+        DocumentSnapshot document = fileManager.readDocument(documentPath);
+        JournalContents contents = read(documentPath);
+        if (contents == null) {
+            return document;
+        }
+        ShapeStore editedStore = new ShapeStore();
+        editedStore.addAll(document.getShapes());
+        Replay replay = Replay.start(editedStore, contents.baseIds, document.getBackgroundColor());
+        if (replay == null) {
+            return document;
+        }
+        
+        // AS WHEN LOADING, DAMAGED EDITS ONLY LOSE WHAT COMES AFTER THE DAMAGE
+        try {
+            replay.apply(contents.records);
+        } catch (IOException ioe) {
+            // KEEP WHAT WAS REPLAYED
+        }
+        return new DocumentSnapshot(replay.backgroundColor, editedStore);
+    }
+    
+    // HELPER METHOD FOR CHECKING A JOURNAL'S HEADER AGAINST ITS DOCUMENT,
+    // PROVIDING THE NUMBER OF SHAPES IT STARTS FROM OR -1 IF IT DOESN'T
+    // BELONG TO THE DOCUMENT. ONLY CHECKING THE DOCUMENT'S BYTES MEANS
+    // READING THE WHOLE DOCUMENT, SO IT'S LEFT OUT WHEN NOTHING IS REPLAYED
+    private static int readHeader(ByteBuffer buffer, Path documentPath, boolean checkContents) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE
+                || buffer.getInt() != MAGIC
+                || buffer.getShort() != VERSION) {
+            return -1;
+        }
+        buffer.getShort();
+        long documentLength = buffer.getLong();
+        long documentModified = buffer.getLong();
+        int documentChecksum = buffer.getInt();
+        int baseCount = buffer.getInt();
+        if (!Files.isRegularFile(documentPath)
+                || Files.size(documentPath) != documentLength
+                || Files.getLastModifiedTime(documentPath).toMillis() != documentModified) {
+            return -1;
+        }
+        if (checkContents && checksum(documentPath) != documentChecksum) {
+            return -1;
+        }
+        return baseCount;
+    }
+    
+    // HELPER METHOD FOR FINDING THE CRC-32 OF A WHOLE FILE
+    private static int checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return (int)crc.getValue();
+    }
+    
+    /**
+     * This method starts a document's journal over, with no edits in it.
+     * Note that the document must already be written, since the journal
+     * is tied to exactly that version of it.
+     *
+     * @param documentPath The document, which must exist.
+     *
+     * @param baseIds The journal ids of the document's shapes, from the
+     * bottom up.
+     *
+     * @throws IOException Thrown should there be an error writing the
+     * journal.
+     */
+    public static void writeBase(String documentPath, int[] baseIds) throws IOException {
+        Path journalPath = Paths.get(getJournalPath(documentPath));
+        Path tempPath = AppFiles.getTempPath(journalPath);
+        writeJournal(tempPath, Paths.get(documentPath), baseIds);
+        AppFiles.moveIntoPlace(tempPath, journalPath);
+    }
+    
+    // HELPER METHOD FOR WRITING A JOURNAL WITH NO EDITS YET
+    private static void writeJournal(Path journalPath, Path documentPath, int[] baseIds) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + baseIds.length * Integer.BYTES).order(BYTE_ORDER);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short)0);
+        buffer.putLong(Files.size(documentPath));
+        buffer.putLong(Files.getLastModifiedTime(documentPath).toMillis());
+        buffer.putInt(checksum(documentPath));
+        buffer.putInt(baseIds.length);
+        buffer.asIntBuffer().put(baseIds);
+        buffer.position(buffer.capacity());
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+    
+    /**
+     * This method adds edits to the end of a document's journal, making
+     * sure they're on the disk before returning. The cost only depends on
+     * how many edits there are, not on the size of the document.
+     *
+     * @param documentPath The document whose journal to add to, which must
+     * already have been started.
+     *
+     * @param records The edits, as provided by takeEdits.
+     *
+     * @throws IOException Thrown should the journal be missing or there be
+     * an error writing to it.
+     */
+    public static void append(String documentPath, byte[] records) throws IOException {
+        if (records.length == 0) {
+            return;
+        }
+        Path journalPath = Paths.get(getJournalPath(documentPath));
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (NoSuchFileException nsfe) {
+            throw new IOException("The journal of " + documentPath + " is missing", nsfe);
+        }
+    }
+    
+    /**
+     * Tests whether a document's journal has grown big enough that it
+     * should be folded into the document.
+     *
+     * @param documentPath The document whose journal to test.
+     *
+     * @return true if the journal should be compacted.
+     *
+     * @throws IOException Thrown should there be an error reading the
+     * journal's header.
+     */
+    public static boolean needsCompaction(String documentPath) throws IOException {
+        Path journalPath = Paths.get(getJournalPath(documentPath));
+        if (!Files.isRegularFile(journalPath)) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {}
+            header.flip();
+            int baseCount = readHeader(header, Paths.get(documentPath), false);
+            if (baseCount < 0) {
+                return false;
+            }
+            long editsSize = channel.size() - HEADER_SIZE - (long)baseCount * Integer.BYTES;
+            return editsSize > Math.max(COMPACTION_SIZE, Files.size(Paths.get(documentPath)) / 2);
+        }
+    }
+    
+    /**
+     * This method folds a document's journal into the document, leaving
+     * the document with all of the journal's edits and an empty journal.
+     * The document is read and rewritten without going anywhere near
+     * JavaFX, so this is meant to be called from the saving thread.
+     *
+     * @param fileManager The file component for reading and writing the
+     * document.
+     *
+     * @param documentPath The document to compact.
+     *
+     * @throws IOException Thrown should there be an error reading or
+     * writing the document or its journal.
+     */
+    public static void compact(FileManager fileManager, String documentPath) throws IOException {
+        JournalContents contents = read(documentPath);
+        if (contents == null) {
+            return;
+        }
+        
+        // REBUILD THE DOCUMENT AS OF THE LAST EDIT
+        DocumentSnapshot document = fileManager.readDocument(documentPath);
+        ShapeStore foldedStore = new ShapeStore();
+        foldedStore.addAll(document.getShapes());
+        Replay replay = Replay.start(foldedStore, contents.baseIds, document.getBackgroundColor());
+        if (replay == null || !replay.apply(contents.records)) {
+            throw new IOException("The journal of " + documentPath + " is damaged");
+        }
+        int[] order = foldedStore.getIdsInOrder();
+        int[] baseIds = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            baseIds[i] = replay.journalIds[order[i]];
+        }
+        
+        // WRITE IT AND ITS NEW JOURNAL BESIDE THE OLD ONES, THEN SWAP THEM IN
+        int dot = documentPath.lastIndexOf('.');
+        String tempDocumentPath = documentPath.substring(0, dot) + ".compacting" + documentPath.substring(dot);
+        Path tempJournalPath = Paths.get(getJournalPath(tempDocumentPath));
+        fileManager.saveDocument(new DocumentSnapshot(replay.backgroundColor, foldedStore), tempDocumentPath);
+        writeJournal(tempJournalPath, Paths.get(tempDocumentPath), baseIds);
+        AppFiles.moveIntoPlace(Paths.get(tempDocumentPath), Paths.get(documentPath));
+        AppFiles.moveIntoPlace(tempJournalPath, Paths.get(getJournalPath(documentPath)));
+    }
+    
+    /**
+     * This class holds a journal as read from its file, ready to be
+     * replayed once its document has been loaded.
+     */
+    public static class JournalContents {
+        private final int[] baseIds;
+        private final ByteBuffer records;
+        
+        JournalContents(int[] initBaseIds, ByteBuffer initRecords) {
+            baseIds = initBaseIds;
+            records = initRecords;
+        }
+        
+        /**
+         * Accessor method for the number of shapes in the document the
+         * journal starts from.
+         *
+         * @return The number of shapes.
+         */
+        public int getBaseSize() {
+            return baseIds.length;
+        }
+    }
+    
+    // THIS APPLIES EDIT RECORDS TO A STORE, KEEPING TRACK OF WHICH SHAPE
+    // EACH JOURNAL ID NAMES
+    private static class Replay {
+        final ShapeStore store;
+        int[] storeIds;
+        int[] journalIds;
+        int nextJournalId;
+        int backgroundColor;
+        
+        Replay(ShapeStore initStore, int initBackgroundColor) {
+            store = initStore;
+            backgroundColor = initBackgroundColor;
+            storeIds = new int[0];
+            journalIds = new int[0];
+        }
+        
+        // MATCHES THE STORE'S SHAPES UP WITH THE JOURNAL IDS OF THE SHAPES
+        // THE JOURNAL STARTS FROM, PROVIDING NULL IF THEY DON'T MATCH
+        static Replay start(ShapeStore store, int[] baseIds, int backgroundColor) {
+            int[] order = store.getIdsInOrder();
+            if (order.length != baseIds.length) {
+                return null;
+            }
+            Replay replay = new Replay(store, backgroundColor);
+            for (int i = 0; i < order.length; i++) {
+                if (baseIds[i] < 0 || replay.storeIdOf(baseIds[i]) != ShapeStore.NO_SHAPE) {
+                    return null;
+                }
+                replay.name(order[i], baseIds[i]);
+            }
+            return replay;
+        }
+        
+        // APPLIES THE RECORDS, PROVIDING FALSE IF THE LAST ONE WAS ONLY
+        // PARTLY WRITTEN
+        boolean apply(ByteBuffer records) throws IOException {
+            records = records.duplicate().order(BYTE_ORDER);
+            while (records.hasRemaining()) {
+                byte op = records.get();
+                if (op < CREATE || op > PLACE_BELOW) {
+                    throw new IOException("Unknown journal record " + op);
+                }
+                if (records.remaining() < RECORD_SIZES[op]) {
+                    return false;
+                }
+                if (op == BACKGROUND) {
+                    backgroundColor = records.getInt();
+                    continue;
+                }
+                int journalId = records.getInt();
+                if (op == CREATE) {
+                    byte type = records.get();
+                    if (journalId < 0 || storeIdOf(journalId) != ShapeStore.NO_SHAPE
+                            || type < 0 || type >= TYPES.length) {
+                        throw new IOException("Bad journal record for shape " + journalId);
+                    }
+                    int id = store.add(TYPES[type], records.getDouble(), records.getDouble(),
+                            records.getDouble(), records.getDouble(), records.getInt(),
+                            records.getInt(), records.getDouble());
+                    name(id, journalId);
+                    continue;
+                }
+                int id = storeIdOf(journalId);
+                if (id == ShapeStore.NO_SHAPE) {
+                    throw new IOException("Journal record for missing shape " + journalId);
+                }
+                switch (op) {
+                    case MOVE:
+                        store.setPosition(id, records.getDouble(), records.getDouble());
+                        break;
+                    case RESIZE:
+                        store.setSize(id, records.getDouble(), records.getDouble());
+                        break;
+                    case RECOLOR:
+                        store.setFillColor(id, records.getInt());
+                        store.setBorderColor(id, records.getInt());
+                        break;
+                    case BORDER_WIDTH:
+                        store.setBorderWidth(id, records.getDouble());
+                        break;
+                    case TO_FRONT:
+                        store.bringToFront(id);
+                        break;
+                    case TO_BACK:
+                        store.sendToBack(id);
+                        break;
+                    case FORWARD:
+                        store.moveForward(id);
+                        break;
+                    case BACKWARD:
+                        store.moveBackward(id);
+                        break;
+                    case PLACE_BELOW:
+                        int upperJournalId = records.getInt();
+                        int upperId = storeIdOf(upperJournalId);
+                        if (upperJournalId != ShapeStore.NO_SHAPE && upperId == ShapeStore.NO_SHAPE) {
+                            throw new IOException("Journal record for missing shape " + upperJournalId);
+                        }
+                        store.placeBelow(id, upperId);
+                        break;
+                    case DELETE:
+                        store.remove(id);
+                        storeIds[journalId] = ShapeStore.NO_SHAPE;
+                        journalIds[id] = ShapeStore.NO_SHAPE;
+                        break;
+                }
+            }
+            return true;
+        }
+        
+        int storeIdOf(int journalId) {
+            return (journalId >= 0 && journalId < storeIds.length) ? storeIds[journalId] : ShapeStore.NO_SHAPE;
+        }
+        
+        // HELPER METHOD FOR TYING A SHAPE TO ITS JOURNAL ID BOTH WAYS
+        void name(int id, int journalId) {
+            if (journalId >= storeIds.length) {
+                int oldLength = storeIds.length;
+                storeIds = Arrays.copyOf(storeIds, Math.max(journalId + 1, oldLength * 3 / 2));
+                Arrays.fill(storeIds, oldLength, storeIds.length, ShapeStore.NO_SHAPE);
+            }
+            if (id >= journalIds.length) {
+                int oldLength = journalIds.length;
+                journalIds = Arrays.copyOf(journalIds, Math.max(id + 1, oldLength * 3 / 2));
+                Arrays.fill(journalIds, oldLength, journalIds.length, ShapeStore.NO_SHAPE);
+            }
+            storeIds[journalId] = id;
+            journalIds[id] = journalId;
+            nextJournalId = Math.max(nextJournalId, journalId + 1);
+        }
+    }
+}
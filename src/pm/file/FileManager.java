@@ -1,38 +1,20 @@
 package pm.file;
 
-import java.io.FileInputStream;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.util.HashMap;
-import java.util.Map;
-import javafx.collections.ObservableList;
-import javafx.geometry.Dimension2D;
-import javafx.geometry.Insets;
-import javafx.scene.Node;
-import javafx.scene.layout.Background;
-import javafx.scene.layout.BackgroundFill;
-import javafx.scene.layout.CornerRadii;
-import javafx.scene.paint.Paint;
-import javafx.scene.shape.Ellipse;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
-import javax.json.JsonReader;
-import javax.json.JsonWriter;
-import javax.json.JsonWriterFactory;
-import javax.json.stream.JsonGenerator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.function.DoubleConsumer;
 import pm.data.DataManager;
-import pm.gui.Workspace;
+import pm.data.DocumentSnapshot;
+import pm.data.ShapeRecord;
 import saf.components.AppDataComponent;
 import saf.components.AppFileComponent;
+import saf.io.AppFiles;
 
 /**
  * This class serves as the file management component for this application,
@@ -44,9 +26,116 @@ import saf.components.AppFileComponent;
  */
 public class FileManager implements AppFileComponent {
 
+    // THESE ARE THE EXTENSIONS OF OUR TWO DOCUMENT FORMATS
+    public static final String JSON_FILE_EXT = ".pm";
+    public static final String BINARY_FILE_EXT = ".pmb";
+
+    // EDITS SINCE A DOCUMENT WAS LAST WRITTEN IN FULL ARE KEPT IN A
+    // JOURNAL, WHICH IS THE DOCUMENT'S FILE NAME WITH THIS ADDED
+    public static final String JOURNAL_FILE_EXT = ".pmj";
+
+    // EXPORTED IMAGES ARE WRITTEN AS PNGS, UNLESS THEY'RE ASKED FOR AS SVGS
+    public static final String IMAGE_FILE_EXT = ".png";
+    public static final String SVG_FILE_EXT = ".svg";
+    
+    // IMAGES ARE DRAWN IN STRIPS OF ABOUT THIS MANY PIXELS, WHICH IS 16 MB
+    private static final int STRIP_PIXELS = 4 * 1024 * 1024;
+    private static final int IMAGE_BUFFER_SIZE = 64 * 1024;
+
+    // THESE DO THE ACTUAL READING AND WRITING FOR EACH FORMAT
+    private final JsonShapeReader jsonReader = new JsonShapeReader();
+    private final JsonShapeWriter jsonWriter = new JsonShapeWriter();
+    private final BinaryShapeReader binaryReader = new BinaryShapeReader();
+    private final BinaryShapeWriter binaryWriter = new BinaryShapeWriter();
+    private final SvgShapeWriter svgWriter = new SvgShapeWriter();
+    
+    // AND THIS DRAWS DOCUMENTS FOR EXPORTING
+    private final DocumentRenderer renderer = new DocumentRenderer();
+
+    /**
+     * Accessor method for checking whether saved work will be pretty printed.
+     * 
+     * @return true if saved JSON files are indented, false if they are compact.
+     */
+    public boolean isPrettyPrinting() {
+        return jsonWriter.isPrettyPrinting();
+    }
+
+    /**
+     * Mutator method for switching between indented and compact JSON save
+     * files. Both produce the same JSON document, the compact form just
+     * leaves out all the whitespace.
+     * 
+     * @param initPrettyPrinting true to indent saved files, false to write
+     * them compactly.
+     */
+    public void setPrettyPrinting(boolean initPrettyPrinting) {
+        jsonWriter.setPrettyPrinting(initPrettyPrinting);
+    }
+    
+    /**
+     * Tests whether the provided file uses our binary format, which is
+     * decided by its extension.
+     * 
+     * @param filePath The file to test.
+     * 
+     * @return true if the file is a binary document, false if it is JSON.
+     */
+    public static boolean isBinaryFile(String filePath) {
+        return filePath.toLowerCase().endsWith(BINARY_FILE_EXT);
+    }
+    
+    /**
+     * Tests whether the provided file is to be exported as an SVG image,
+     * which is decided by its extension.
+     * 
+     * @param filePath The file to test.
+     * 
+     * @return true if the file is an SVG image, false if it is a PNG.
+     */
+    public static boolean isSvgFile(String filePath) {
+        return filePath.toLowerCase().endsWith(SVG_FILE_EXT);
+    }
+    
+    /**
+     * Tests whether the provided file has the extension of one of our
+     * document formats.
+     * 
+     * @param filePath The file to test.
+     * 
+     * @return true if the file ends with a document extension.
+     */
+    public static boolean hasDocumentExtension(String filePath) {
+        String lowerCasePath = filePath.toLowerCase();
+        return lowerCasePath.endsWith(JSON_FILE_EXT) || lowerCasePath.endsWith(BINARY_FILE_EXT);
+    }
+    
+    /**
+     * Replaces the extension of the provided file, or adds one if it
+     * doesn't have one.
+     * 
+     * @param filePath The file whose extension to change.
+     * 
+     * @param extension The new extension, including the dot.
+     * 
+     * @return The path with the new extension.
+     */
+    public static String changeExtension(String filePath, String extension) {
+        int dot = filePath.lastIndexOf('.');
+        int separator = Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\'));
+        if (dot > separator) {
+            filePath = filePath.substring(0, dot);
+        }
+        return filePath + extension;
+    }
+
     /**
      * This method is for saving user work, which in the case of this
-     * application means the data that constitutes the page DOM.
+     * application means the data that constitutes the page DOM. Files
+     * ending with the binary extension are written in our binary format,
+     * everything else is written as JSON. Note that the shapes are
+     * streamed straight to the file, no tree of the whole document is
+     * ever built.
      * 
      * @param data The data management component for this application.
      * 
@@ -58,85 +147,43 @@ public class FileManager implements AppFileComponent {
      */
     @Override
     public void saveData(AppDataComponent data, String filePath) throws IOException {
-        StringWriter sw = new StringWriter();
-
-	// BUILD THE HTMLTags ARRAY
 	DataManager dataManager = (DataManager)data;
-        
-        Shape selectedShape = dataManager.getSelectedShape();
-        
-        ObservableList<Node> shapeChildList = dataManager.getWorkspace().getDrawPane().getChildren();
-
-	//Build Shapes Array
-	JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
-        dataManager.getShapes().stream().map((shape) -> {
-            JsonObjectBuilder shapeObjectBuilder = Json.createObjectBuilder();
-            if(shape instanceof Rectangle) shapeObjectBuilder.add("Type", "Rectangle");
-            else if(shape instanceof Ellipse) shapeObjectBuilder.add("Type", "Ellipse");
-            JsonObjectBuilder coordinates = Json.createObjectBuilder()
-                    .add("x-location", 
-                            (shape instanceof Rectangle)?
-                                    ((Rectangle)shape).getX():
-                                    ((Ellipse)shape).getCenterX())
-                    .add("y-location", 
-                            (shape instanceof Rectangle)?
-                                    ((Rectangle)shape).getY():
-                                    ((Ellipse)shape).getCenterY()
-                    );
-            JsonObjectBuilder dimensions = Json.createObjectBuilder()
-                    .add("width",
-                            (shape instanceof Rectangle)?
-                                    ((Rectangle)shape).getWidth():
-                                    ((Ellipse)shape).getRadiusX()
-                    )
-                    .add("height",
-                            (shape instanceof Rectangle)?
-                                    ((Rectangle)shape).getHeight():
-                                    ((Ellipse)shape).getRadiusY()
-                    );
-            shapeObjectBuilder
-                    .add("Coordinates", coordinates)
-                    .add("Dimensions", dimensions)
-                    .add("fill-color", shape.getFill().toString())
-                    .add("border-color", 
-                        (shape != selectedShape)?
-                            shape.getStroke().toString():
-                            dataManager.getSelectedOutlineFill()
-                    )
-                    .add("border-width", shape.getStrokeWidth());
-            return shapeObjectBuilder;
-        }).forEach((shapeObjectBuilder) -> {
-            arrayBuilder.add(shapeObjectBuilder);
-        });
-	
-	// THEN PUT IT ALL TOGETHER IN A JsonObject
-	JsonObject dataManagerJSO = Json.createObjectBuilder()
-                .add("background-color", dataManager.getBackgroundColor().toString())
-                .add("Shapes", arrayBuilder)
-		.build();
-	
-	// AND NOW OUTPUT IT TO A JSON FILE WITH PRETTY PRINTING
-	Map<String, Object> properties = new HashMap<>(1);
-	properties.put(JsonGenerator.PRETTY_PRINTING, true);
-	JsonWriterFactory writerFactory = Json.createWriterFactory(properties);
-        try (JsonWriter jsonWriter = writerFactory.createWriter(sw)) {
-            jsonWriter.writeObject(dataManagerJSO);
+        if (isBinaryFile(filePath)) {
+            binaryWriter.write(filePath, dataManager.snapshot());
         }
-
-	// INIT THE WRITER
-	OutputStream os = new FileOutputStream(filePath);
-	JsonWriter jsonFileWriter = Json.createWriter(os);
-	jsonFileWriter.writeObject(dataManagerJSO);
-	String prettyPrinted = sw.toString();
-        try (PrintWriter pw = new PrintWriter(filePath)) {
-            pw.write(prettyPrinted);
+        else {
+            jsonWriter.write(filePath, dataManager.getBackgroundArgb(), dataManager.getShapeRecords());
         }
     }
       
     /**
-     * This method loads data from a JSON formatted file into the data 
+     * This method saves a snapshot of the document, picking the format
+     * from the file extension just like saveData does. Since the snapshot
+     * can't change while it's being written this may be called from any
+     * thread.
+     * 
+     * @param document The snapshot of the document to save.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to save the data to.
+     * 
+     * @throws IOException Thrown should there be an error writing 
+     * out data to the file.
+     */
+    public void saveDocument(DocumentSnapshot document, String filePath) throws IOException {
+        if (isBinaryFile(filePath)) {
+            binaryWriter.write(filePath, document);
+        }
+        else {
+            jsonWriter.write(filePath, document.getBackgroundColor(), document.getShapes());
+        }
+    }
+      
+    /**
+     * This method loads data from a JSON or binary file into the data 
      * management component and then forces the updating of the workspace
-     * such that the user may edit the data.
+     * such that the user may edit the data. Note that the file is read
+     * as a stream, with each shape added as soon as it has been read.
      * 
      * @param data Data management component where we'll load the file into.
      * 
@@ -152,73 +199,217 @@ public class FileManager implements AppFileComponent {
 	DataManager dataManager = (DataManager)data;
 	dataManager.reset();
 	
-	// LOAD THE JSON FILE WITH ALL THE DATA
-	JsonObject json = loadJSONFile(filePath);
-	
-        Workspace workspace = dataManager.getWorkspace();
-        
-	// LOAD THE Shape Array
-	JsonArray jsonShapeArray = json.getJsonArray("Shapes");
-        for(int i=0; i < jsonShapeArray.size(); i++){
-            Shape tempShape;
-            JsonObject jsonShapeObject = jsonShapeArray.getJsonObject(i);
-            if(jsonShapeObject.getString("Type").equals("Rectangle")){
-                tempShape = new Rectangle(0,0);
+	// AND ADD EACH SHAPE AS THE READER COMES ACROSS IT
+        ShapeHandler handler = new ShapeHandler() {
+            @Override
+            public void backgroundColor(int argb) {
+                dataManager.setBackgroundColor(ShapeRecord.toColor(argb));
             }
-            else{
-                tempShape = new Ellipse(0,0);
+
+            @Override
+            public void shape(ShapeRecord shape) {
+                dataManager.addShape(shape);
             }
-            double xLocation, yLocation, width, height, borderWidth;
-            Paint fillColor, borderColor;
-            Dimension2D shapeLocation;
-            JsonObject coordinates, dimensions;
-            coordinates = jsonShapeObject.getJsonObject("Coordinates");
-            dimensions = jsonShapeObject.getJsonObject("Dimensions");
-            xLocation = coordinates.getJsonNumber("x-location").doubleValue();
-            yLocation = coordinates.getJsonNumber("y-location").doubleValue();
-            width = dimensions.getJsonNumber("width").doubleValue();
-            height = dimensions.getJsonNumber("height").doubleValue();
-            borderWidth = jsonShapeObject.getJsonNumber("border-width").doubleValue();
-            fillColor = Paint.valueOf(jsonShapeObject.getString("fill-color"));
-            borderColor = Paint.valueOf(jsonShapeObject.getString("border-color"));
-            shapeLocation = new Dimension2D(xLocation,yLocation);
-            if (tempShape instanceof Rectangle){
-                ((Rectangle) tempShape).setX(xLocation);
-                ((Rectangle) tempShape).setY(yLocation);
-                ((Rectangle) tempShape).setWidth(width);
-                ((Rectangle) tempShape).setHeight(height);
+        };
+        readDocument(filePath, handler);
+    }
+    
+    /**
+     * This method reads a JSON or binary file, sending its contents to
+     * the provided handler as they are read. Note that it doesn't touch
+     * the data component at all, so it may be called from any thread.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to load the data from.
+     * 
+     * @param handler The handler that receives the document contents.
+     * 
+     * @throws IOException Thrown should there be an error reading
+     * in data from the file.
+     */
+    public void readDocument(String filePath, ShapeHandler handler) throws IOException {
+        if (isBinaryFile(filePath)) {
+            binaryReader.read(filePath, handler);
+        }
+        else {
+            jsonReader.read(filePath, handler);
+        }
+    }
+    
+    /**
+     * This method reads a whole JSON or binary file into memory, just as
+     * it is in the file. Note that it leaves out any edits in the
+     * document's journal. It may be called from any thread.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to load the data from.
+     * 
+     * @return The document's background color and shapes, bottom up.
+     * 
+     * @throws IOException Thrown should there be an error reading
+     * in data from the file.
+     */
+    public DocumentSnapshot readDocument(String filePath) throws IOException {
+        int[] backgroundColor = new int[1];
+        ArrayList<ShapeRecord> shapes = new ArrayList<>();
+        readDocument(filePath, new ShapeHandler() {
+            @Override
+            public void backgroundColor(int argb) {
+                backgroundColor[0] = argb;
             }
-            else{
-                ((Ellipse)tempShape).setCenterX(xLocation);
-                ((Ellipse)tempShape).setCenterY(yLocation);
-                ((Ellipse)tempShape).setRadiusX(width);
-                ((Ellipse)tempShape).setRadiusY(height);
+            
+            @Override
+            public void shape(ShapeRecord shape) {
+                shapes.add(shape);
             }
-            tempShape.setFill(fillColor);
-            tempShape.setStroke(borderColor);
-            tempShape.setStrokeWidth(borderWidth);
-            dataManager.getShapes().push(tempShape);
-            workspace.getDrawPane().getChildren().add(tempShape);
-            workspace.setShapeListeners(tempShape);
-        }
-	
-	// AND GET THE BACKGROUND COLOR
-	String backgroundColor = json.getString("background-color");
-	workspace.setBackgroundColor(Paint.valueOf(backgroundColor));
+        });
+        return new DocumentSnapshot(backgroundColor[0], shapes);
     }
-
-    // HELPER METHOD FOR LOADING DATA FROM A JSON FORMAT
-    private JsonObject loadJSONFile(String jsonFilePath) throws IOException {
-        JsonObject json;
-        try (InputStream is = new FileInputStream(jsonFilePath); 
-             JsonReader jsonReader = Json.createReader(is)) {
-            json = jsonReader.readObject();
-        }
-	return json;
+    
+    /**
+     * This method makes a task that loads a JSON or binary file into the
+     * data management component. The file is read on the task's thread
+     * while the shapes are added to the workspace in batches on the JavaFX
+     * thread, so the user interface stays responsive throughout.
+     * 
+     * @param data Data management component where we'll load the file into.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to load the data from.
+     * 
+     * @return The task, which still needs to be started.
+     */
+    public DocumentLoadTask makeLoadTask(AppDataComponent data, String filePath) {
+        return new DocumentLoadTask(this, (DataManager)data, filePath);
     }
 
+    /**
+     * This method exports the document as a PNG image, drawn with Java2D
+     * rather than through the workspace, or as an SVG image for files
+     * ending with the SVG extension. The image covers the document from its
+     * origin out to the far edges of its shapes.
+     * 
+     * @param data The data management component for this application.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to export the image to.
+     * 
+     * @throws IOException Thrown should there be an error writing 
+     * out the image.
+     */
     @Override
-    public void exportData(AppDataComponent data, String filePath) throws IOException {}
+    public void exportData(AppDataComponent data, String filePath) throws IOException {
+        exportDocument(((DataManager)data).snapshot(), filePath);
+    }
+    
+    /**
+     * This method exports a snapshot of the document as a PNG image, or as
+     * an SVG image for files ending with the SVG extension, whose shapes are
+     * streamed straight to the file in paint order. It doesn't need JavaFX
+     * at all, so it may be called from any thread.
+     * 
+     * @param document The snapshot of the document to export.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to export the image to.
+     * 
+     * @throws IOException Thrown should there be an error writing 
+     * out the image.
+     */
+    public void exportDocument(DocumentSnapshot document, String filePath) throws IOException {
+        Rectangle2D exportBounds = DocumentRenderer.getExportBounds(document);
+        if (isSvgFile(filePath)) {
+            writeInPlace(filePath, tempFilePath -> 
+                    svgWriter.write(tempFilePath, exportBounds, document.getBackgroundColor(), document.getShapes()));
+        }
+        else {
+            exportRegion(document, exportBounds, 1.0, filePath, null);
+        }
+    }
+    
+    /**
+     * This method exports a snapshot of the document as a PNG image at any
+     * scale, cropped to its shapes, which is how print sized images are
+     * made. The image is drawn and written a strip at a time, so how much
+     * memory it takes doesn't depend on how big the image is. Files ending
+     * with the SVG extension get an SVG image cropped the same way, which
+     * has no pixels to scale. It doesn't need JavaFX either, and stops
+     * early should its thread be interrupted, in which case nothing is
+     * left at the provided path.
+     * 
+     * @param document The snapshot of the document to export.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to export the image to.
+     * 
+     * @param scale How many pixels each document unit takes up.
+     * 
+     * @param progress Told how far along the export is, from 0 to 1, or
+     * null if nobody is interested.
+     * 
+     * @throws IOException Thrown should there be an error writing 
+     * out the image.
+     */
+    public void exportScaledDocument(DocumentSnapshot document, String filePath, double scale,
+            DoubleConsumer progress) throws IOException {
+        Rectangle2D contentBounds = DocumentRenderer.getContentBounds(document.getShapes());
+        Rectangle2D region = (contentBounds == null)? new Rectangle2D.Double(0, 0, 1, 1) : contentBounds;
+        if (isSvgFile(filePath)) {
+            writeInPlace(filePath, tempFilePath -> 
+                    svgWriter.write(tempFilePath, region, document.getBackgroundColor(), document.getShapes()));
+        }
+        else {
+            exportRegion(document, region, scale, filePath, progress);
+        }
+    }
+    
+    // HELPER METHOD FOR DRAWING A REGION OF A DOCUMENT STRAIGHT INTO A PNG
+    private void exportRegion(DocumentSnapshot document, Rectangle2D region, double scale,
+            String filePath, DoubleConsumer progress) throws IOException {
+        double width = Math.ceil(region.getWidth() * scale);
+        double height = Math.ceil(region.getHeight() * scale);
+        if (!(scale > 0) || width > PngStreamWriter.MAX_WIDTH || height > Integer.MAX_VALUE) {
+            throw new IOException("Can't export at a scale of " + scale);
+        }
+        int imageHeight = DocumentRenderer.getPixelHeight(region, scale);
+        writeInPlace(filePath, tempFilePath -> {
+            try (PngStreamWriter png = new PngStreamWriter(
+                    new BufferedOutputStream(new FileOutputStream(tempFilePath), IMAGE_BUFFER_SIZE),
+                    DocumentRenderer.getPixelWidth(region, scale), imageHeight)) {
+                renderer.renderStrips(document, region, scale, STRIP_PIXELS, (argb, stripWidth, rows) -> {
+                    png.writeRows(argb, 0, stripWidth, rows);
+                    if (progress != null) {
+                        progress.accept((double)png.getRowsWritten() / imageHeight);
+                    }
+                });
+                png.finish();
+            }
+        });
+    }
+    
+    // HELPER METHOD FOR WRITING A FILE UNDER A TEMPORARY NAME AND THEN
+    // MOVING IT INTO PLACE, SO AN EXPORT THAT FAILS OR IS CANCELLED PART
+    // WAY THROUGH NEVER LEAVES A HALF WRITTEN FILE WHERE IT WAS HEADED
+    private static void writeInPlace(String filePath, FileWriting writing) throws IOException {
+        Path target = Paths.get(filePath);
+        Path tempFile = AppFiles.getTempPath(target);
+        try {
+            writing.write(tempFile.toString());
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ioe) {
+                e.addSuppressed(ioe);
+            }
+            throw e;
+        }
+        AppFiles.moveIntoPlace(tempFile, target);
+    }
+    
+    // THIS WRITES OUT A FILE TO THE PATH IT'S GIVEN
+    private interface FileWriting {
+        void write(String filePath) throws IOException;
+    }
 
     @Override
     public void importData(AppDataComponent data, String filePath) throws IOException {}
@@ -0,0 +1,353 @@
+package pm.file;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import pm.data.DocumentSnapshot;
+import saf.io.AppFiles;
+import static saf.settings.AppStartupConstants.PATH_EXPORT;
+
+/**
+ * This class exports a document as a set of square icons of every size we
+ * ship, from the command line and without starting the application. The
+ * document is drawn only once, at the largest size, and each smaller size
+ * is then averaged down from a power of two size already made, halving
+ * wherever it can, which keeps thin outlines from breaking up the way they
+ * would if each size were drawn on its own. The sizes are encoded in
+ * parallel across all of the machine's processors, each under a temporary
+ * name, and only once they are all written are they moved into place,
+ * followed by a manifest listing them.
+ *
+ * Usage: IconSetExporter document [outputDirectory]
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class IconSetExporter {
+    
+    // THE SIZES OF THE ICONS IN A SET, LARGEST FIRST
+    public static final int[] ICON_SIZES = {1024, 512, 256, 128, 64, 48, 32, 16};
+    
+    // THE MANIFEST IS NAMED AFTER THE DOCUMENT WITH THIS ADDED
+    public static final String MANIFEST_FILE_EXT = ".icons.json";
+    private static final int IMAGE_BUFFER_SIZE = 64 * 1024;
+    
+    private final FileManager fileManager;
+    private final DocumentRenderer renderer;
+    
+    /**
+     * Constructor for setting up an exporter, which may export any number
+     * of icon sets.
+     */
+    public IconSetExporter() {
+        fileManager = new FileManager();
+        renderer = new DocumentRenderer();
+    }
+    
+    /**
+     * This method reads a document and exports it as a set of icons.
+     *
+     * @param document The document to export.
+     *
+     * @param outputDirectory Where to write the icons and their manifest.
+     *
+     * @return The manifest listing the icons.
+     *
+     * @throws IOException Thrown should the document not be read, or the
+     * icons not be written.
+     */
+    public Path export(Path document, Path outputDirectory) throws IOException {
+        String baseName = FileManager.changeExtension(document.getFileName().toString(), "");
+        return export(EditJournal.readWithEdits(fileManager, document.toString()), outputDirectory, baseName);
+    }
+    
+    /**
+     * This method exports a snapshot of a document as a set of icons, named
+     * after the provided base name and their size, cropped to the document's
+     * shapes and centered.
+     *
+     * @param document The snapshot of the document to export.
+     *
+     * @param outputDirectory Where to write the icons and their manifest.
+     *
+     * @param baseName What to start the name of each file with.
+     *
+     * @return The manifest listing the icons.
+     *
+     * @throws IOException Thrown should the icons not be written.
+     */
+    public Path export(DocumentSnapshot document, Path outputDirectory, String baseName) throws IOException {
+        Files.createDirectories(outputDirectory);
+        
+        // DRAW THE LARGEST SIZE AND THEN AVERAGE THE REST DOWN FROM IT
+        Map<Integer, int[]> icons = new HashMap<>();
+        int largest = ICON_SIZES[0];
+        icons.put(largest, draw(document, largest));
+        for (int i = 1; i < ICON_SIZES.length; i++) {
+            int size = ICON_SIZES[i];
+            int source = getSourceSize(size, i);
+            icons.put(size, downsample(icons.get(source), source, size));
+        }
+        
+        // ENCODE THEM ALL IN PARALLEL UNDER TEMPORARY NAMES
+        List<Callable<Path>> encodings = new ArrayList<>(ICON_SIZES.length);
+        for (int size : ICON_SIZES) {
+            Path tempIcon = AppFiles.getTempPath(outputDirectory.resolve(getIconFileName(baseName, size)));
+            int[] pixels = icons.get(size);
+            encodings.add(() -> {
+                writeIcon(pixels, size, tempIcon);
+                return tempIcon;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        List<Path> tempIcons = new ArrayList<>(ICON_SIZES.length);
+        try {
+            for (Future<Path> encoding : pool.invokeAll(encodings)) {
+                tempIcons.add(encoding.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            for (int size : ICON_SIZES) {
+                Files.deleteIfExists(AppFiles.getTempPath(outputDirectory.resolve(getIconFileName(baseName, size))));
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e);
+        } finally {
+            pool.shutdown();
+        }
+        
+        // THEN PUT THE WHOLE SET IN PLACE, WITH THE MANIFEST LAST
+        List<Integer> sizes = new ArrayList<>(ICON_SIZES.length);
+        for (int i = 0; i < ICON_SIZES.length; i++) {
+            AppFiles.moveIntoPlace(tempIcons.get(i), outputDirectory.resolve(getIconFileName(baseName, ICON_SIZES[i])));
+            sizes.add(ICON_SIZES[i]);
+        }
+        Collections.sort(sizes);
+        Path manifest = outputDirectory.resolve(baseName + MANIFEST_FILE_EXT);
+        Path tempManifest = AppFiles.getTempPath(manifest);
+        writeManifest(tempManifest, outputDirectory, baseName, sizes);
+        AppFiles.moveIntoPlace(tempManifest, manifest);
+        return manifest;
+    }
+    
+    /**
+     * Accessor method for the name of the file an icon of a set goes in.
+     *
+     * @param baseName What the set's files are named after.
+     *
+     * @param size The size of the icon.
+     *
+     * @return The icon's file name.
+     */
+    public static String getIconFileName(String baseName, int size) {
+        return baseName + "-" + size + FileManager.IMAGE_FILE_EXT;
+    }
+    
+    // HELPER METHOD FOR DRAWING A DOCUMENT INTO A SQUARE, CROPPED TO ITS
+    // SHAPES AND CENTERED, AS PREMULTIPLIED ARGB SO IT CAN BE AVERAGED
+    private int[] draw(DocumentSnapshot document, int size) {
+        Rectangle2D bounds = DocumentRenderer.getContentBounds(document.getShapes());
+        if (bounds == null) {
+            bounds = new Rectangle2D.Double(0, 0, 1, 1);
+        }
+        double side = Math.max(Math.max(bounds.getWidth(), bounds.getHeight()), Double.MIN_NORMAL);
+        Rectangle2D.Double square = new Rectangle2D.Double(
+                bounds.getCenterX() - side / 2, bounds.getCenterY() - side / 2, side, side);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.scale(size / side, size / side);
+            g.translate(-square.getX(), -square.getY());
+            g.clip(square);
+            renderer.draw(g, document);
+        } finally {
+            g.dispose();
+        }
+        return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    }
+    
+    // HELPER METHOD FOR PICKING WHICH OF THE SIZES ALREADY MADE TO AVERAGE
+    // AN ICON DOWN FROM. ONLY POWERS OF TWO ARE USED, SO NO ICON INHERITS
+    // THE BLUR OF AN UNEVEN SHRINK. THE SMALLEST ONE THE SIZE DIVIDES GIVES
+    // CLEAN WHOLE PIXEL AVERAGES, AND SIZES LIKE 48 THAT DIVIDE NONE ARE
+    // SHRUNK IN ONE STEP FROM THE SMALLEST AT LEAST TWICE THEIR SIZE
+    private static int getSourceSize(int size, int made) {
+        int multiple = 0;
+        int larger = 0;
+        for (int j = 0; j < made; j++) {
+            int candidate = ICON_SIZES[j];
+            if (Integer.bitCount(candidate) != 1 || candidate <= size) {
+                continue;
+            }
+            if (candidate % size == 0 && (multiple == 0 || candidate < multiple)) {
+                multiple = candidate;
+            }
+            if (candidate >= size * 2 && (larger == 0 || candidate < larger)) {
+                larger = candidate;
+            }
+        }
+        if (multiple != 0) {
+            return multiple;
+        }
+        return (larger != 0)? larger : ICON_SIZES[0];
+    }
+    
+    // HELPER METHOD FOR SHRINKING A SQUARE OF PREMULTIPLIED ARGB PIXELS BY
+    // AVERAGING EACH AREA OF THE SOURCE THAT A NEW PIXEL COVERS, ONE AXIS
+    // AT A TIME. HALVING COMES OUT AS A PLAIN 2 x 2 AVERAGE
+    private static int[] downsample(int[] source, int sourceSize, int size) {
+        int[] starts = new int[size];
+        double[][] weights = new double[size][];
+        double ratio = (double)sourceSize / size;
+        for (int i = 0; i < size; i++) {
+            double from = i * ratio;
+            double to = (i + 1) * ratio;
+            int first = (int)from;
+            int last = Math.min(sourceSize - 1, (int)Math.ceil(to) - 1);
+            starts[i] = first;
+            weights[i] = new double[last - first + 1];
+            for (int j = first; j <= last; j++) {
+                weights[i][j - first] = (Math.min(j + 1, to) - Math.max(j, from)) / ratio;
+            }
+        }
+        
+        // ACROSS FIRST, KEEPING EACH CHANNEL APART
+        float[] across = new float[sourceSize * size * 4];
+        for (int y = 0; y < sourceSize; y++) {
+            int row = y * sourceSize;
+            for (int x = 0; x < size; x++) {
+                double a = 0, r = 0, g = 0, b = 0;
+                for (int k = 0; k < weights[x].length; k++) {
+                    int pixel = source[row + starts[x] + k];
+                    double w = weights[x][k];
+                    a += w * (pixel >>> 24);
+                    r += w * ((pixel >> 16) & 0xFF);
+                    g += w * ((pixel >> 8) & 0xFF);
+                    b += w * (pixel & 0xFF);
+                }
+                int i = (y * size + x) * 4;
+                across[i] = (float)a;
+                across[i + 1] = (float)r;
+                across[i + 2] = (float)g;
+                across[i + 3] = (float)b;
+            }
+        }
+        
+        // AND THEN DOWN
+        int[] pixels = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double a = 0, r = 0, g = 0, b = 0;
+                for (int k = 0; k < weights[y].length; k++) {
+                    int i = ((starts[y] + k) * size + x) * 4;
+                    double w = weights[y][k];
+                    a += w * across[i];
+                    r += w * across[i + 1];
+                    g += w * across[i + 2];
+                    b += w * across[i + 3];
+                }
+                pixels[y * size + x] = (channel(a) << 24) | (channel(r) << 16) | (channel(g) << 8) | channel(b);
+            }
+        }
+        return pixels;
+    }
+    
+    // HELPER METHOD FOR ROUNDING AN AVERAGED CHANNEL BACK INTO A BYTE
+    private static int channel(double value) {
+        return Math.max(0, Math.min(255, (int)Math.round(value)));
+    }
+    
+    // HELPER METHOD FOR WRITING AN ICON, WHICH RUNS ON THE POOL
+    private static void writeIcon(int[] premultiplied, int size, Path iconFile) throws IOException {
+        int[] pixels = new int[premultiplied.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = premultiplied[i];
+            int a = pixel >>> 24;
+            if (a == 0xFF || a == 0) {
+                pixels[i] = a == 0 ? 0 : pixel;
+            }
+            else {
+                int r = Math.min(255, (((pixel >> 16) & 0xFF) * 255 + a / 2) / a);
+                int g = Math.min(255, (((pixel >> 8) & 0xFF) * 255 + a / 2) / a);
+                int b = Math.min(255, ((pixel & 0xFF) * 255 + a / 2) / a);
+                pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+        try (PngStreamWriter png = new PngStreamWriter(
+                new BufferedOutputStream(Files.newOutputStream(iconFile), IMAGE_BUFFER_SIZE), size, size)) {
+            png.writeRows(pixels, 0, size, size);
+            png.finish();
+        }
+    }
+    
+    // HELPER METHOD FOR LISTING THE ICONS OF A SET, SMALLEST FIRST
+    private static void writeManifest(Path manifest, Path outputDirectory, String baseName,
+            List<Integer> sizes) throws IOException {
+        Map<String, Object> properties = new HashMap<>(1);
+        properties.put(JsonGenerator.PRETTY_PRINTING, true);
+        try (OutputStream os = Files.newOutputStream(manifest);
+             JsonGenerator generator = Json.createGeneratorFactory(properties).createGenerator(os)) {
+            generator.writeStartObject()
+                    .write("name", baseName)
+                    .writeStartArray("icons");
+            for (int size : sizes) {
+                String fileName = getIconFileName(baseName, size);
+                generator.writeStartObject()
+                        .write("size", size)
+                        .write("file", fileName)
+                        .write("bytes", Files.size(outputDirectory.resolve(fileName)))
+                        .writeEnd();
+            }
+            generator.writeEnd()
+                    .writeEnd();
+        } catch (JsonException je) {
+            // THE GENERATOR WRAPS ANY WRITE FAILURES
+            throw new IOException(je);
+        }
+    }
+    
+    /**
+     * Exports a document as a set of icons into the output directory, which
+     * defaults to the export directory.
+     *
+     * @param args The document and the optional output directory.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 1) {
+            System.err.println("Usage: IconSetExporter document [outputDirectory]");
+            System.exit(1);
+        }
+        Path document = Paths.get(args[0]);
+        Path outputDirectory = Paths.get(args.length > 1 ? args[1] : PATH_EXPORT);
+        try {
+            long start = System.nanoTime();
+            Path manifest = new IconSetExporter().export(document, outputDirectory);
+            System.out.printf("%s -> %s  %.1f ms%n", document, manifest, (System.nanoTime() - start) / 1e6);
+        } catch (IOException ioe) {
+            System.err.println("Icon export failed: " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+}
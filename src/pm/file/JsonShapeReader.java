@@ -0,0 +1,176 @@
+package pm.file;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import pm.data.ShapeRecord;
+import pm.data.ShapeRecord.ShapeType;
+
+/**
+ * This class reads our JSON documents event by event, handing each shape
+ * off to a ShapeHandler as soon as it has been read. Only one shape is
+ * ever held at a time, so memory use stays flat no matter how large the
+ * document is.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class JsonShapeReader {
+    
+    // THE SIZE OF THE BUFFER SITTING BETWEEN THE FILE AND THE PARSER
+    private static final int LOAD_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * This method reads the JSON document at the provided path, sending
+     * its background color and each of its shapes to the handler in the
+     * order they appear in the file.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to load the data from.
+     * 
+     * @param handler The handler that receives the document contents.
+     * 
+     * @throws IOException Thrown should there be an error reading the
+     * file or should the file not be in our format.
+     */
+    public void read(String filePath, ShapeHandler handler) throws IOException {
+        long fileSize = new File(filePath).length();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(filePath), LOAD_BUFFER_SIZE)) {
+            read(is, handler, fileSize);
+        }
+    }
+    
+    /**
+     * This method reads a JSON document from the provided stream, sending
+     * its background color and each of its shapes to the handler in the
+     * order they appear.
+     * 
+     * @param is The stream to read the document from.
+     * 
+     * @param handler The handler that receives the document contents.
+     * 
+     * @throws IOException Thrown should there be an error reading the
+     * stream or should the document not be in our format.
+     */
+    public void read(InputStream is, ShapeHandler handler) throws IOException {
+        read(is, handler, 0);
+    }
+    
+    // HELPER METHOD FOR READING A DOCUMENT, IF WE KNOW HOW LONG IT IS
+    // WE ALSO LET THE HANDLER KNOW HOW FAR ALONG WE ARE
+    private void read(InputStream is, ShapeHandler handler, long length) throws IOException {
+        try (JsonParser parser = Json.createParser(is)) {
+            expect(parser, Event.START_OBJECT);
+            Event event;
+            while ((event = parser.next()) != Event.END_OBJECT) {
+                String key = parser.getString();
+                if (key.equals("background-color")) {
+                    expect(parser, Event.VALUE_STRING);
+                    handler.backgroundColor(ShapeRecord.parseColor(parser.getString()));
+                }
+                else if (key.equals("Shapes")) {
+                    expect(parser, Event.START_ARRAY);
+                    while ((event = parser.next()) != Event.END_ARRAY) {
+                        if (event != Event.START_OBJECT) {
+                            throw new IOException("Expected a shape object but found " + event);
+                        }
+                        handler.shape(readShape(parser));
+                        if (length > 0) {
+                            handler.progress(Math.min(1.0, parser.getLocation().getStreamOffset() / (double)length));
+                        }
+                    }
+                }
+                else {
+                    skipValue(parser, parser.next());
+                }
+            }
+        } catch (JsonException | IllegalStateException | NoSuchElementException e) {
+            // THE PARSER REPORTS BADLY FORMED JSON WITH UNCHECKED EXCEPTIONS
+            throw new IOException(e);
+        }
+    }
+    
+    // HELPER METHOD FOR READING THE REST OF A SHAPE OBJECT ONCE ITS START
+    // HAS BEEN CONSUMED, THIS LEAVES THE PARSER JUST PAST ITS END
+    private ShapeRecord readShape(JsonParser parser) throws IOException {
+        ShapeType type = ShapeType.ELLIPSE;
+        double x = 0, y = 0, width = 0, height = 0, borderWidth = 0;
+        int fillColor = 0, borderColor = 0;
+        while (parser.next() != Event.END_OBJECT) {
+            String key = parser.getString();
+            Event value = parser.next();
+            switch (key) {
+                case "Type":
+                    type = ShapeType.fromTypeName(parser.getString());
+                    break;
+                case "Coordinates":
+                case "Dimensions":
+                    if (value != Event.START_OBJECT) {
+                        throw new IOException("Expected an object for " + key);
+                    }
+                    while (parser.next() != Event.END_OBJECT) {
+                        String field = parser.getString();
+                        Event fieldValue = parser.next();
+                        switch (field) {
+                            case "x-location":  x = number(parser, fieldValue);       break;
+                            case "y-location":  y = number(parser, fieldValue);       break;
+                            case "width":       width = number(parser, fieldValue);   break;
+                            case "height":      height = number(parser, fieldValue);  break;
+                            default:            skipValue(parser, fieldValue);        break;
+                        }
+                    }
+                    break;
+                case "fill-color":
+                    fillColor = ShapeRecord.parseColor(parser.getString());
+                    break;
+                case "border-color":
+                    borderColor = ShapeRecord.parseColor(parser.getString());
+                    break;
+                case "border-width":
+                    borderWidth = number(parser, value);
+                    break;
+                default:
+                    skipValue(parser, value);
+                    break;
+            }
+        }
+        return new ShapeRecord(type, x, y, width, height, fillColor, borderColor, borderWidth);
+    }
+    
+    // HELPER METHOD FOR READING THE NUMBER THE PARSER IS CURRENTLY ON
+    private static double number(JsonParser parser, Event event) throws IOException {
+        if (event != Event.VALUE_NUMBER) {
+            throw new IOException("Expected a number but found " + event);
+        }
+        return parser.getBigDecimal().doubleValue();
+    }
+    
+    // HELPER METHOD FOR CHECKING THE NEXT EVENT IS THE ONE WE NEED
+    private static void expect(JsonParser parser, Event expected) throws IOException {
+        Event event = parser.next();
+        if (event != expected) {
+            throw new IOException("Expected " + expected + " but found " + event);
+        }
+    }
+    
+    // HELPER METHOD FOR PASSING OVER A VALUE WE DON'T USE, INCLUDING
+    // EVERYTHING NESTED INSIDE IT
+    private static void skipValue(JsonParser parser, Event event) {
+        if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+            int depth = 1;
+            while (depth > 0) {
+                event = parser.next();
+                if (event == Event.START_OBJECT || event == Event.START_ARRAY) depth++;
+                else if (event == Event.END_OBJECT || event == Event.END_ARRAY) depth--;
+            }
+        }
+    }
+}
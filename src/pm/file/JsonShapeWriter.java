@@ -0,0 +1,148 @@
+package pm.file;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import pm.data.ShapeRecord;
+
+/**
+ * This class writes our JSON documents through a JsonGenerator, streaming
+ * each shape to the file as it is reached rather than building a JSON
+ * tree of the whole document first.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class JsonShapeWriter {
+
+    // THE SIZE OF THE BUFFER SITTING BETWEEN THE GENERATOR AND THE FILE
+    private static final int SAVE_BUFFER_SIZE = 64 * 1024;
+
+    // WHETHER SAVED FILES ARE INDENTED FOR READING OR WRITTEN COMPACTLY
+    private boolean prettyPrinting = true;
+
+    // BUILT ONCE FOR THE CURRENT PRINTING MODE AND REUSED BY EVERY SAVE
+    private JsonGeneratorFactory generatorFactory = makeGeneratorFactory(prettyPrinting);
+
+    /**
+     * Accessor method for checking whether saved work will be pretty printed.
+     * 
+     * @return true if saved files are indented, false if they are compact.
+     */
+    public boolean isPrettyPrinting() {
+        return prettyPrinting;
+    }
+
+    /**
+     * Mutator method for switching between indented and compact save files.
+     * Both produce the same JSON document, the compact form just leaves out
+     * all the whitespace.
+     * 
+     * @param initPrettyPrinting true to indent saved files, false to write
+     * them compactly.
+     */
+    public void setPrettyPrinting(boolean initPrettyPrinting) {
+        if (prettyPrinting != initPrettyPrinting) {
+            prettyPrinting = initPrettyPrinting;
+            generatorFactory = makeGeneratorFactory(prettyPrinting);
+        }
+    }
+
+    /**
+     * This method writes a document to the provided path, walking through
+     * the shapes exactly once.
+     * 
+     * @param filePath Path (including file name/extension) to where
+     * to save the data to.
+     * 
+     * @param backgroundColor The packed ARGB background color.
+     * 
+     * @param shapes The shapes of the document in paint order.
+     * 
+     * @throws IOException Thrown should there be an error writing 
+     * out data to the file.
+     */
+    public void write(String filePath, int backgroundColor, Iterable<ShapeRecord> shapes) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel), SAVE_BUFFER_SIZE)) {
+            write(os, backgroundColor, shapes);
+        }
+    }
+
+    /**
+     * This method writes a document to the provided stream, walking through
+     * the shapes exactly once. Note that the stream is closed when done.
+     * 
+     * @param os The stream to write the document to.
+     * 
+     * @param backgroundColor The packed ARGB background color.
+     * 
+     * @param shapes The shapes of the document in paint order.
+     * 
+     * @throws IOException Thrown should there be an error writing 
+     * out data to the stream.
+     */
+    public void write(OutputStream os, int backgroundColor, Iterable<ShapeRecord> shapes) throws IOException {
+        try (JsonGenerator generator = generatorFactory.createGenerator(os)) {
+            generator.writeStartObject()
+                    .write("background-color", ShapeRecord.formatColor(backgroundColor))
+                    .writeStartArray("Shapes");
+            for (ShapeRecord shape : shapes) {
+                writeShape(generator, shape);
+            }
+            generator.writeEnd()
+                    .writeEnd();
+        } catch (JsonException je) {
+            // THE GENERATOR WRAPS ANY WRITE FAILURES
+            throw new IOException(je);
+        }
+    }
+
+    // HELPER METHOD FOR WRITING A SINGLE SHAPE OBJECT TO THE GENERATOR
+    private void writeShape(JsonGenerator generator, ShapeRecord shape) {
+        generator.writeStartObject()
+                .write("Type", shape.getType().getTypeName());
+        generator.writeStartObject("Coordinates")
+                .write("x-location", number(shape.getX()))
+                .write("y-location", number(shape.getY()))
+                .writeEnd();
+        generator.writeStartObject("Dimensions")
+                .write("width", number(shape.getWidth()))
+                .write("height", number(shape.getHeight()))
+                .writeEnd();
+        generator.write("fill-color", ShapeRecord.formatColor(shape.getFillColor()))
+                .write("border-color", ShapeRecord.formatColor(shape.getBorderColor()))
+                .write("border-width", number(shape.getBorderWidth()))
+                .writeEnd();
+    }
+
+    // NUMBERS GO OUT THE SAME WAY A JsonObjectBuilder WOULD WRITE THEM,
+    // WHICH KEEPS VALUES LIKE 1.0E+10 IDENTICAL TO OLDER SAVE FILES
+    private static BigDecimal number(double value) {
+        return BigDecimal.valueOf(value);
+    }
+
+    // HELPER METHOD FOR MAKING A GENERATOR FACTORY FOR A PRINTING MODE
+    private static JsonGeneratorFactory makeGeneratorFactory(boolean pretty) {
+	Map<String, Object> properties = new HashMap<>(1);
+        if (pretty) {
+            properties.put(JsonGenerator.PRETTY_PRINTING, true);
+        }
+	return Json.createGeneratorFactory(properties);
+    }
+}
@@ -0,0 +1,197 @@
+package pm.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * This class writes a PNG image a few rows at a time, so that the whole
+ * image never has to be held in memory. Rows are written as 8 bit RGBA
+ * with the Sub filter, which suits the flat colors of our documents, and
+ * the compressed data is split into IDAT chunks as it comes out of the
+ * deflater. Once every row has been written the image must be finished,
+ * and the writer closed either way.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class PngStreamWriter implements Closeable {
+    
+    // THE WIDEST IMAGE WE CAN WRITE, SINCE A WHOLE ROW IS KEPT IN AN ARRAY
+    public static final int MAX_WIDTH = (Integer.MAX_VALUE - 1) / 4;
+    
+    private static final byte[] SIGNATURE = {
+        (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+    private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+    private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+    private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+    
+    // 8 BITS PER CHANNEL, RGBA, DEFLATE, ADAPTIVE FILTERING, NO INTERLACING
+    private static final int BIT_DEPTH = 8;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int FILTER_SUB = 1;
+    private static final int BYTES_PER_PIXEL = 4;
+    
+    // HOW MUCH COMPRESSED DATA GOES IN EACH IDAT CHUNK
+    private static final int CHUNK_SIZE = 64 * 1024;
+    
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final CRC32 crc = new CRC32();
+    private final Deflater deflater;
+    private final DeflaterOutputStream deflaterOut;
+    
+    // ONE FILTERED ROW, WITH ITS FILTER TYPE UP FRONT
+    private final byte[] row;
+    private int rowsWritten;
+    
+    /**
+     * Constructor for starting an image, which writes out its header right
+     * away.
+     *
+     * @param initOut Where to write the image, which is closed along with
+     * the writer.
+     *
+     * @param initWidth The width of the image in pixels.
+     *
+     * @param initHeight The height of the image in pixels.
+     *
+     * @throws IOException Thrown should the header not be written, or the
+     * image be too large.
+     */
+    public PngStreamWriter(OutputStream initOut, int initWidth, int initHeight) throws IOException {
+        if (initWidth < 1 || initHeight < 1 || initWidth > MAX_WIDTH) {
+            throw new IOException("Can't write a " + initWidth + " x " + initHeight + " image");
+        }
+        out = initOut;
+        width = initWidth;
+        height = initHeight;
+        row = new byte[1 + width * BYTES_PER_PIXEL];
+        row[0] = FILTER_SUB;
+        
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = BIT_DEPTH;
+        header[9] = COLOR_TYPE_RGBA;
+        writeChunk(IHDR, header, 0, header.length);
+        
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        deflaterOut = new DeflaterOutputStream(new IdatOutputStream(), deflater, CHUNK_SIZE);
+    }
+    
+    /**
+     * Accessor method for how many rows have been written so far.
+     *
+     * @return The number of rows written.
+     */
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+    
+    /**
+     * This method writes the next rows of the image.
+     *
+     * @param argb The pixels, as non premultiplied ARGB.
+     *
+     * @param offset Where in the array the first row starts.
+     *
+     * @param scanlineStride How far apart the rows are in the array.
+     *
+     * @param rows How many rows to write.
+     *
+     * @throws IOException Thrown should the rows not be written, or there
+     * be more rows than the image has.
+     */
+    public void writeRows(int[] argb, int offset, int scanlineStride, int rows) throws IOException {
+        if (rows > height - rowsWritten) {
+            throw new IOException("Too many rows for a " + height + " row image");
+        }
+        for (int r = 0; r < rows; r++) {
+            int start = offset + r * scanlineStride;
+            int previous = 0;
+            for (int x = 0, i = 1; x < width; x++, i += BYTES_PER_PIXEL) {
+                int pixel = argb[start + x];
+                row[i] = (byte)((pixel >>> 16) - (previous >>> 16));
+                row[i + 1] = (byte)((pixel >>> 8) - (previous >>> 8));
+                row[i + 2] = (byte)(pixel - previous);
+                row[i + 3] = (byte)((pixel >>> 24) - (previous >>> 24));
+                previous = pixel;
+            }
+            deflaterOut.write(row);
+        }
+        rowsWritten += rows;
+    }
+    
+    /**
+     * This method finishes the image once all of its rows have been written.
+     *
+     * @throws IOException Thrown should rows be missing, or the end of the
+     * image not be written.
+     */
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+        }
+        deflaterOut.finish();
+        writeChunk(IEND, row, 0, 0);
+        out.flush();
+    }
+    
+    /**
+     * This method closes the stream being written to, whether or not the
+     * image was finished.
+     *
+     * @throws IOException Thrown should the stream not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        out.close();
+    }
+    
+    // HELPER METHOD FOR WRITING A CHUNK, WITH ITS LENGTH AND CHECKSUM
+    private void writeChunk(byte[] type, byte[] data, int offset, int length) throws IOException {
+        byte[] number = new byte[4];
+        putInt(number, 0, length);
+        out.write(number);
+        out.write(type);
+        out.write(data, offset, length);
+        crc.reset();
+        crc.update(type);
+        crc.update(data, offset, length);
+        putInt(number, 0, (int)crc.getValue());
+        out.write(number);
+    }
+    
+    // HELPER METHOD FOR WRITING A BIG ENDIAN INT INTO AN ARRAY
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte)(value >>> 24);
+        bytes[offset + 1] = (byte)(value >>> 16);
+        bytes[offset + 2] = (byte)(value >>> 8);
+        bytes[offset + 3] = (byte)value;
+    }
+    
+    // THE DEFLATER WRITES INTO THIS, WHICH TURNS WHAT IT GETS INTO IDAT
+    // CHUNKS
+    private class IdatOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                writeChunk(IDAT, b, off, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package pm.file;
+
+import pm.data.ShapeRecord;
+
+/**
+ * This interface receives the contents of a document as it is being read,
+ * one shape at a time, so that readers never need to hold onto the whole
+ * document themselves.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public interface ShapeHandler {
+    public void backgroundColor(int argb);
+    public void shape(ShapeRecord shape);
+    
+    /**
+     * Called by readers that know how far through the document they are,
+     * the default ignores it.
+     * 
+     * @param fraction How much of the document has been read, from 0 to 1.
+     */
+    public default void progress(double fraction) {}
+}
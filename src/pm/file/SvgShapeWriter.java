@@ -0,0 +1,173 @@
+package pm.file;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import pm.data.ShapeRecord;
+import pm.data.ShapeRecord.ShapeType;
+
+/**
+ * This class exports documents as SVG images through an XMLStreamWriter,
+ * streaming each shape to the file as a rect or ellipse element as it is
+ * reached, in paint order, rather than building a DOM of the whole image
+ * first. Shapes are outlined the same way JavaFX draws them, with a
+ * centered, mitered stroke.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class SvgShapeWriter {
+    
+    // THE SIZE OF THE BUFFER SITTING BETWEEN THE XML WRITER AND THE FILE
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    
+    private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+    private static final String ENCODING = "UTF-8";
+    
+    // THIS IS THE MITER LIMIT JavaFX USES BY DEFAULT, SVG'S IS 4
+    private static final String MITER_LIMIT = "10";
+    
+    // BUILT ONCE AND REUSED BY EVERY EXPORT
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    
+    /**
+     * This method writes a document as an SVG image to the provided path,
+     * walking through the shapes exactly once.
+     *
+     * @param filePath Path (including file name/extension) to where
+     * to export the image to.
+     *
+     * @param bounds The area of the document the image shows.
+     *
+     * @param backgroundColor The packed ARGB background color.
+     *
+     * @param shapes The shapes of the document in paint order.
+     *
+     * @throws IOException Thrown should there be an error writing
+     * out the image.
+     */
+    public void write(String filePath, Rectangle2D bounds, int backgroundColor,
+            Iterable<ShapeRecord> shapes) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel), EXPORT_BUFFER_SIZE)) {
+            write(os, bounds, backgroundColor, shapes);
+        }
+    }
+    
+    /**
+     * This method writes a document as an SVG image to the provided stream,
+     * walking through the shapes exactly once. Note that the stream is
+     * flushed but not closed.
+     *
+     * @param os The stream to write the image to.
+     *
+     * @param bounds The area of the document the image shows.
+     *
+     * @param backgroundColor The packed ARGB background color.
+     *
+     * @param shapes The shapes of the document in paint order.
+     *
+     * @throws IOException Thrown should there be an error writing
+     * out the image.
+     */
+    public void write(OutputStream os, Rectangle2D bounds, int backgroundColor,
+            Iterable<ShapeRecord> shapes) throws IOException {
+        try {
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(os, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("svg");
+            writer.writeDefaultNamespace(SVG_NAMESPACE);
+            writer.writeAttribute("version", "1.1");
+            writer.writeAttribute("width", number(bounds.getWidth()));
+            writer.writeAttribute("height", number(bounds.getHeight()));
+            writer.writeAttribute("viewBox", number(bounds.getX()) + " " + number(bounds.getY()) + " "
+                    + number(bounds.getWidth()) + " " + number(bounds.getHeight()));
+            writer.writeAttribute("stroke-miterlimit", MITER_LIMIT);
+            writer.writeCharacters("\n");
+            
+            // FIRST THE BACKGROUND
+            writer.writeEmptyElement("rect");
+            writer.writeAttribute("x", number(bounds.getX()));
+            writer.writeAttribute("y", number(bounds.getY()));
+            writer.writeAttribute("width", number(bounds.getWidth()));
+            writer.writeAttribute("height", number(bounds.getHeight()));
+            writePaint(writer, "fill", backgroundColor);
+            writer.writeCharacters("\n");
+            
+            // THEN THE SHAPES IN PAINT ORDER
+            for (ShapeRecord shape : shapes) {
+                if (DocumentRenderer.isVisible(shape)) {
+                    writeShape(writer, shape);
+                    writer.writeCharacters("\n");
+                }
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.writeCharacters("\n");
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException xse) {
+            // THE XML WRITER WRAPS ANY WRITE FAILURES
+            throw new IOException(xse);
+        }
+        os.flush();
+    }
+    
+    // HELPER METHOD FOR WRITING A SINGLE SHAPE ELEMENT
+    private void writeShape(XMLStreamWriter writer, ShapeRecord shape) throws XMLStreamException {
+        if (shape.getType() == ShapeType.RECTANGLE) {
+            writer.writeEmptyElement("rect");
+            writer.writeAttribute("x", number(shape.getX()));
+            writer.writeAttribute("y", number(shape.getY()));
+            writer.writeAttribute("width", number(shape.getWidth()));
+            writer.writeAttribute("height", number(shape.getHeight()));
+        }
+        else {
+            // OUR ELLIPSES ARE CENTERED ON THEIR LOCATION, WITH THEIR SIZE
+            // BEING THEIR RADII
+            writer.writeEmptyElement("ellipse");
+            writer.writeAttribute("cx", number(shape.getX()));
+            writer.writeAttribute("cy", number(shape.getY()));
+            writer.writeAttribute("rx", number(shape.getWidth()));
+            writer.writeAttribute("ry", number(shape.getHeight()));
+        }
+        writePaint(writer, "fill", shape.getFillColor());
+        if (shape.getBorderWidth() > 0) {
+            writePaint(writer, "stroke", shape.getBorderColor());
+            writer.writeAttribute("stroke-width", number(shape.getBorderWidth()));
+        }
+    }
+    
+    // HELPER METHOD FOR WRITING A COLOR, WITH ITS OPACITY ONLY WHEN IT ISN'T
+    // OPAQUE. THREE DECIMALS ARE ENOUGH TO GET EACH OF THE 256 ALPHAS BACK
+    private static void writePaint(XMLStreamWriter writer, String name, int argb) throws XMLStreamException {
+        writer.writeAttribute(name, "#" + Integer.toHexString(0x1000000 | (argb & 0xFFFFFF)).substring(1));
+        int alpha = argb >>> 24;
+        if (alpha != 0xFF) {
+            writer.writeAttribute(name + "-opacity", number(Math.round(alpha * 1000 / 255.0) / 1000.0));
+        }
+    }
+    
+    // SVG DOESN'T ALLOW EVERY FORM JAVA PRINTS NUMBERS IN, SO THEY ALWAYS
+    // GO OUT WITHOUT AN EXPONENT
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long)value);
+        }
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+}
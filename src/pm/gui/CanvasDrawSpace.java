@@ -0,0 +1,272 @@
+package pm.gui;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Shape;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import pm.data.ShapeStore;
+import pm.data.ShapeStoreListener;
+import static pm.data.ShapeStore.NO_SHAPE;
+
+/**
+ * This class draws the shapes of a shape store straight onto canvases
+ * instead of making a node for every shape, which keeps large documents
+ * responsive. Only the live shape, the one being selected, dragged or
+ * created, is put into the scene as a node so it can be edited without
+ * redrawing everything. Shapes below it are drawn on a canvas behind it
+ * and shapes above it on a canvas in front of it, so the picture is the
+ * same as when every shape is a node.
+ * 
+ * The canvases follow the store by listening to it, changes to the live
+ * shape show up on its node without any redrawing.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class CanvasDrawSpace implements ShapeStoreListener {
+    
+    // THESE MATCH HOW JavaFX SHAPES ARE OUTLINED BY DEFAULT
+    private static final StrokeLineCap LINE_CAP = StrokeLineCap.SQUARE;
+    private static final StrokeLineJoin LINE_JOIN = StrokeLineJoin.MITER;
+    private static final double MITER_LIMIT = 10;
+    
+    private final Pane drawSpace;
+    private final ShapeStore store;
+    private final ShapeNodes shapeNodes;
+    
+    private final Canvas backCanvas;
+    private final Canvas frontCanvas;
+    
+    private int liveShape;
+    private Shape liveNode;
+    private boolean attached;
+    private boolean redrawPending;
+    
+    /**
+     * Constructor for setting up canvas drawing for a draw space. Note that
+     * nothing changes until it is attached.
+     * 
+     * @param initDrawSpace The pane the shapes are shown in.
+     * 
+     * @param initStore The shapes to draw.
+     * 
+     * @param initShapeNodes Where to get the node for the live shape.
+     */
+    public CanvasDrawSpace(Pane initDrawSpace, ShapeStore initStore, ShapeNodes initShapeNodes) {
+        drawSpace = initDrawSpace;
+        store = initStore;
+        shapeNodes = initShapeNodes;
+        backCanvas = makeCanvas();
+        frontCanvas = makeCanvas();
+        liveShape = NO_SHAPE;
+    }
+    
+    // HELPER METHOD FOR MAKING A CANVAS THAT COVERS THE DRAW SPACE
+    private Canvas makeCanvas() {
+        Canvas canvas = new Canvas();
+        canvas.setManaged(false);
+        canvas.setMouseTransparent(true);
+        canvas.widthProperty().bind(drawSpace.widthProperty());
+        canvas.heightProperty().bind(drawSpace.heightProperty());
+        canvas.widthProperty().addListener(e -> shapesChanged());
+        canvas.heightProperty().addListener(e -> shapesChanged());
+        return canvas;
+    }
+    
+    public boolean isAttached() {
+        return attached;
+    }
+    
+    public int getLiveShape() {
+        return liveShape;
+    }
+    
+    /**
+     * This function puts the canvases into the draw space, replacing
+     * whatever was there, and draws the shapes onto them.
+     */
+    public void attach() {
+        if (attached) {
+            return;
+        }
+        attached = true;
+        drawSpace.getChildren().setAll(backCanvas, frontCanvas);
+        showLiveNode();
+        redraw();
+    }
+    
+    /**
+     * This function takes the canvases out of the draw space, leaving it
+     * empty.
+     */
+    public void detach() {
+        if (!attached) {
+            return;
+        }
+        attached = false;
+        liveNode = null;
+        drawSpace.getChildren().clear();
+        clear(backCanvas);
+        clear(frontCanvas);
+    }
+    
+    /**
+     * This function changes which shape is shown as a node. The canvases
+     * are redrawn when it changes, since the shapes above and below it
+     * change too.
+     * 
+     * @param id The shape being edited, or NO_SHAPE if there is none.
+     */
+    public void setLiveShape(int id) {
+        if (id == liveShape) {
+            return;
+        }
+        hideLiveNode();
+        liveShape = id;
+        showLiveNode();
+        shapesChanged();
+    }
+    
+    private void showLiveNode() {
+        if (attached && liveShape != NO_SHAPE) {
+            liveNode = shapeNodes.getNode(liveShape);
+            drawSpace.getChildren().add(1, liveNode);
+        }
+    }
+    
+    private void hideLiveNode() {
+        if (liveNode != null) {
+            drawSpace.getChildren().remove(liveNode);
+            shapeNodes.releaseNode(liveShape);
+            liveNode = null;
+        }
+    }
+    
+    // HELPER METHOD FOR REDRAWING ONCE ALL THE CURRENT CHANGES ARE MADE
+    private void shapesChanged() {
+        if (attached && !redrawPending) {
+            redrawPending = true;
+            Platform.runLater(this::redraw);
+        }
+    }
+    
+    // HELPER METHOD FOR DRAWING EVERYTHING BUT THE LIVE SHAPE
+    private void redraw() {
+        redrawPending = false;
+        if (!attached) {
+            return;
+        }
+        clear(backCanvas);
+        clear(frontCanvas);
+        GraphicsContext gc = backCanvas.getGraphicsContext2D();
+        for (int id = store.getBottom(); id != NO_SHAPE; id = store.getAbove(id)) {
+            if (id == liveShape) {
+                gc = frontCanvas.getGraphicsContext2D();
+            }
+            else {
+                paint(gc, id);
+            }
+        }
+    }
+    
+    private static void clear(Canvas canvas) {
+        canvas.getGraphicsContext2D().clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    }
+    
+    // HELPER METHOD FOR DRAWING A SHAPE JUST AS ITS NODE WOULD LOOK, WHICH
+    // MEANS NOTHING AT ALL FOR A NEGATIVE SIZE AND NO OUTLINE FOR A ZERO
+    // THICKNESS, AS THE CANVAS WOULD OTHERWISE KEEP THE OLD LINE WIDTH
+    private void paint(GraphicsContext gc, int id) {
+        double width = store.getWidth(id);
+        double height = store.getHeight(id);
+        if (width < 0 || height < 0) {
+            return;
+        }
+        double x = store.getX(id);
+        double y = store.getY(id);
+        boolean isRect = store.isRectangle(id);
+        if (!isRect) {
+            // ELLIPSES ARE STORED BY CENTER AND RADII
+            x -= width;
+            y -= height;
+            width *= 2;
+            height *= 2;
+        }
+        gc.setFill(store.getFillPaint(id));
+        if (isRect) {
+            gc.fillRect(x, y, width, height);
+        }
+        else {
+            gc.fillOval(x, y, width, height);
+        }
+        double borderWidth = store.getBorderWidth(id);
+        if (borderWidth > 0) {
+            gc.setStroke(store.getBorderPaint(id));
+            gc.setLineWidth(borderWidth);
+            gc.setLineCap(LINE_CAP);
+            gc.setLineJoin(LINE_JOIN);
+            gc.setMiterLimit(MITER_LIMIT);
+            if (isRect) {
+                gc.strokeRect(x, y, width, height);
+            }
+            else {
+                gc.strokeOval(x, y, width, height);
+            }
+        }
+    }
+    
+    // SHAPES ADDED ON TOP ARE SIMPLY DRAWN OVER WHAT IS ALREADY THERE,
+    // WHICH MAKES LOADING A BIG DOCUMENT MUCH CHEAPER THAN REDRAWING IT
+
+    @Override
+    public void shapeAdded(int id) {
+        shapesAdded(new int[] { id });
+    }
+
+    @Override
+    public void shapesAdded(int[] ids) {
+        if (!attached || redrawPending) {
+            return;
+        }
+        GraphicsContext gc = ((liveShape == NO_SHAPE)? backCanvas : frontCanvas).getGraphicsContext2D();
+        for (int id : ids) {
+            paint(gc, id);
+        }
+    }
+
+    @Override
+    public void shapeChanged(int id) {
+        if (id != liveShape) {
+            shapesChanged();
+        }
+    }
+
+    @Override
+    public void shapeRestacked(int id) {
+        shapesChanged();
+    }
+
+    @Override
+    public void shapeRemoved(int id) {
+        if (id == liveShape) {
+            liveNode = null;
+            liveShape = NO_SHAPE;
+        }
+        shapesChanged();
+    }
+
+    @Override
+    public void shapesCleared() {
+        if (liveNode != null) {
+            drawSpace.getChildren().remove(liveNode);
+            liveNode = null;
+        }
+        liveShape = NO_SHAPE;
+        clear(backCanvas);
+        clear(frontCanvas);
+    }
+}
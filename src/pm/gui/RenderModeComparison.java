@@ -0,0 +1,199 @@
+package pm.gui;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.stage.Stage;
+import javax.imageio.ImageIO;
+import pm.data.DocumentSnapshot;
+import pm.data.ShapeRecord;
+import pm.data.ShapeStore;
+import pm.file.DocumentRenderer;
+import pm.file.EditJournal;
+import pm.file.FileManager;
+import static pm.data.ShapeStore.NO_SHAPE;
+import static saf.settings.AppStartupConstants.PATH_WORK;
+
+/**
+ * This class checks, from the command line, that canvas rendering draws
+ * documents with exactly the same pixels as giving every shape a node.
+ * Each document is drawn both ways, and again on the canvases with its
+ * middle shape as the live node, and the snapshots are compared pixel by
+ * pixel. Should any differ, both snapshots are written out as PNG images
+ * and the program exits with 1.
+ *
+ * Unless told otherwise with the usual system properties, JavaFX is run
+ * with its headless Monocle platform and software rendering, so Monocle
+ * must be on the class path, and the same pixels come out on any machine.
+ *
+ * Usage: RenderModeComparison [document ...]
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class RenderModeComparison extends Application {
+    
+    // RUN JavaFX WITHOUT A SCREEN
+    private static final String[][] HEADLESS_PROPERTIES = {
+        {"java.awt.headless", "true"},
+        {"glass.platform", "Monocle"},
+        {"monocle.platform", "Headless"},
+        {"prism.order", "sw"}
+    };
+    
+    private static final String IMAGE_FORMAT = "png";
+    
+    // SET BY THE COMPARISONS, FOR main TO EXIT WITH
+    private static volatile int exitCode;
+    
+    @Override
+    public void start(Stage primaryStage) {
+        List<String> documents = getParameters().getRaw();
+        int mismatches = 0;
+        try {
+            if (documents.isEmpty()) {
+                documents = findDocuments(Paths.get(PATH_WORK));
+            }
+            for (String document : documents) {
+                mismatches += compare(document);
+            }
+            exitCode = (mismatches == 0) ? 0 : 1;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Comparison failed: " + e);
+            exitCode = 1;
+        }
+        Platform.exit();
+    }
+    
+    // HELPER METHOD FOR FINDING EVERY DOCUMENT IN A DIRECTORY
+    private static List<String> findDocuments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(Path::toString)
+                    .filter(FileManager::hasDocumentExtension)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+    
+    // HELPER METHOD FOR DRAWING ONE DOCUMENT EVERY WAY, WHICH RETURNS HOW
+    // MANY OF THE CANVAS DRAWINGS DIDN'T MATCH THE NODES
+    private int compare(String document) throws IOException {
+        DocumentSnapshot snapshot = EditJournal.readWithEdits(new FileManager(), document);
+        ShapeStore store = new ShapeStore();
+        int[] ids = store.addAll(snapshot.getShapes());
+        
+        // THE SNAPSHOTS COVER WHAT AN EXPORT WOULD
+        Rectangle bounds = DocumentRenderer.getExportBounds(snapshot);
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(ShapeRecord.toColor(snapshot.getBackgroundColor()));
+        parameters.setViewport(new Rectangle2D(0, 0, bounds.width, bounds.height));
+        
+        int[] nodePixels = snapshot(drawNodes(store, bounds), parameters, bounds);
+        int mismatches = 0;
+        if (!matches(document, "canvas", nodePixels,
+                snapshot(drawCanvas(store, bounds, NO_SHAPE), parameters, bounds), bounds)) {
+            mismatches++;
+        }
+        if (ids.length > 0 && !matches(document, "canvas with a live shape", nodePixels,
+                snapshot(drawCanvas(store, bounds, ids[ids.length / 2]), parameters, bounds), bounds)) {
+            mismatches++;
+        }
+        return mismatches;
+    }
+    
+    // HELPER METHOD FOR DRAWING EVERY SHAPE AS A NODE
+    private static Pane drawNodes(ShapeStore store, Rectangle bounds) {
+        Pane drawSpace = new Pane();
+        drawSpace.resize(bounds.width, bounds.height);
+        new ShapeNodes(store, drawSpace).show();
+        return drawSpace;
+    }
+    
+    // HELPER METHOD FOR DRAWING THE SHAPES ON CANVASES, NOTE THAT THE
+    // CANVASES ARE DRAWN AS SOON AS THEY'RE ATTACHED
+    private static Pane drawCanvas(ShapeStore store, Rectangle bounds, int liveShape) {
+        Pane drawSpace = new Pane();
+        drawSpace.resize(bounds.width, bounds.height);
+        ShapeNodes shapeNodes = new ShapeNodes(store, drawSpace);
+        shapeNodes.hide();
+        CanvasDrawSpace canvasDrawSpace = new CanvasDrawSpace(drawSpace, store, shapeNodes);
+        canvasDrawSpace.setLiveShape(liveShape);
+        canvasDrawSpace.attach();
+        return drawSpace;
+    }
+    
+    // HELPER METHOD FOR GETTING THE PIXELS OF A DRAWING
+    private static int[] snapshot(Pane drawSpace, SnapshotParameters parameters, Rectangle bounds) {
+        WritableImage image = drawSpace.snapshot(parameters, null);
+        int[] pixels = new int[bounds.width * bounds.height];
+        image.getPixelReader().getPixels(0, 0, bounds.width, bounds.height,
+                PixelFormat.getIntArgbInstance(), pixels, 0, bounds.width);
+        return pixels;
+    }
+    
+    // HELPER METHOD FOR COMPARING A DRAWING WITH THE NODES, PRINTING HOW
+    // IT WENT AND WRITING BOTH OUT SHOULD THEY DIFFER
+    private static boolean matches(String document, String mode, int[] nodePixels, int[] pixels,
+            Rectangle bounds) throws IOException {
+        int differing = 0;
+        int maxDifference = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            if (pixels[i] != nodePixels[i]) {
+                differing++;
+                for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+                    int difference = Math.abs(((pixels[i] >>> shift) & 0xFF) - ((nodePixels[i] >>> shift) & 0xFF));
+                    maxDifference = Math.max(maxDifference, difference);
+                }
+            }
+        }
+        if (differing == 0) {
+            System.out.printf("%s, %s: identical to nodes (%dx%d)%n", document, mode, bounds.width, bounds.height);
+            return true;
+        }
+        File nodeImage = File.createTempFile("nodes_", "." + IMAGE_FORMAT);
+        File modeImage = File.createTempFile("canvas_", "." + IMAGE_FORMAT);
+        writeImage(nodePixels, bounds, nodeImage);
+        writeImage(pixels, bounds, modeImage);
+        System.out.printf("%s, %s: %d of %d pixels differ from nodes, by up to %d, see %s and %s%n",
+                document, mode, differing, pixels.length, maxDifference, nodeImage, modeImage);
+        return false;
+    }
+    
+    private static void writeImage(int[] pixels, Rectangle bounds, File imageFile) throws IOException {
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, bounds.width, bounds.height, pixels, 0, bounds.width);
+        ImageIO.write(image, IMAGE_FORMAT, imageFile);
+    }
+    
+    /**
+     * Compares both ways of drawing for the documents given, or for every
+     * document in the work directory.
+     *
+     * @param args The documents to draw.
+     */
+    public static void main(String[] args) {
+        for (String[] property : HEADLESS_PROPERTIES) {
+            if (System.getProperty(property[0]) == null) {
+                System.setProperty(property[0], property[1]);
+            }
+        }
+        launch(args);
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,123 @@
+package pm.gui;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import pm.data.EditHistory;
+import pm.data.ShapeRecord;
+import pm.data.ShapeRecord.ShapeType;
+import pm.data.ShapeStore;
+
+/**
+ * This class puts together everything the Workspace works on shapes with,
+ * and makes the edits that its controls and mouse handlers make. The shape
+ * index and both ways of drawing the shapes follow the store by listening
+ * to it, while the edits all go through the edit history so they can be
+ * undone. None of it needs the draw space to be shown.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class ShapeEditor {
+    
+    private final ShapeStore shapeStore;
+    private final EditHistory editHistory;
+    private final ShapeIndex shapeIndex;
+    private final ShapeNodes shapeNodes;
+    private final CanvasDrawSpace canvasDrawSpace;
+    
+    /**
+     * Constructor for setting up the index and the drawing of a store's
+     * shapes, which follow the store from then on.
+     *
+     * @param initShapeStore The shapes to edit.
+     *
+     * @param initEditHistory The history the edits go through, which
+     * must already be listening to the store.
+     *
+     * @param initDrawSpace The pane the shapes are shown in.
+     */
+    public ShapeEditor(ShapeStore initShapeStore, EditHistory initEditHistory, Pane initDrawSpace) {
+        shapeStore = initShapeStore;
+        editHistory = initEditHistory;
+        shapeIndex = new ShapeIndex(shapeStore);
+        shapeNodes = new ShapeNodes(shapeStore, initDrawSpace);
+        canvasDrawSpace = new CanvasDrawSpace(initDrawSpace, shapeStore, shapeNodes);
+        shapeStore.addListener(shapeIndex);
+        shapeStore.addListener(shapeNodes);
+        shapeStore.addListener(canvasDrawSpace);
+    }
+    
+    public ShapeIndex getShapeIndex() {
+        return shapeIndex;
+    }
+    
+    public ShapeNodes getShapeNodes() {
+        return shapeNodes;
+    }
+    
+    public CanvasDrawSpace getCanvasDrawSpace() {
+        return canvasDrawSpace;
+    }
+    
+    /**
+     * This method starts a new shape where the mouse was pressed, which
+     * grows from nothing as the mouse is dragged.
+     *
+     * @param type The kind of shape to draw.
+     *
+     * @param x Where the mouse was pressed.
+     *
+     * @param y Where the mouse was pressed.
+     *
+     * @param fillColor The fill color picked for new shapes.
+     *
+     * @param outlineColor The outline color picked for new shapes.
+     *
+     * @param outlineThickness The outline thickness picked for new shapes.
+     *
+     * @return The new shape.
+     */
+    public int startShape(ShapeType type, double x, double y,
+            Color fillColor, Color outlineColor, double outlineThickness) {
+        return editHistory.add(type, x, y, 0, 0,
+                ShapeRecord.toArgb(fillColor), ShapeRecord.toArgb(outlineColor), outlineThickness);
+    }
+    
+    /**
+     * This method sizes a new shape to where the mouse has been dragged.
+     * Note that rectangles grow from their corner and ellipses from their
+     * center.
+     *
+     * @param id The shape being drawn.
+     *
+     * @param x Where the mouse is now.
+     *
+     * @param y Where the mouse is now.
+     */
+    public void sizeShape(int id, double x, double y) {
+        editHistory.setSize(id, x - shapeStore.getX(id), y - shapeStore.getY(id));
+    }
+    
+    /**
+     * This method sets a shape's fill to the color picked for it.
+     *
+     * @param id The shape to change.
+     *
+     * @param color The color picked.
+     */
+    public void setFillColor(int id, Color color) {
+        editHistory.setFillColor(id, ShapeRecord.toArgb(color));
+    }
+    
+    /**
+     * This method sets a shape's outline to the color picked for it.
+     *
+     * @param id The shape to change.
+     *
+     * @param color The color picked.
+     */
+    public void setOutlineColor(int id, Color color) {
+        editHistory.setBorderColor(id, ShapeRecord.toArgb(color));
+    }
+}
@@ -0,0 +1,300 @@
+package pm.gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import pm.data.ShapeStore;
+import pm.data.ShapeStoreListener;
+import static pm.data.ShapeStore.NO_SHAPE;
+
+/**
+ * This class is a spatial index over the shapes of a shape store, used to
+ * find the shape under the mouse without asking every shape. The draw space
+ * is divided into a uniform grid of square cells and each shape is listed
+ * in every cell its bounds touch, so only the few shapes near a point need
+ * to be tested. Shapes too big to list cell by cell in the finest grid go
+ * in coarser ones laid over it, each with cells LEVEL_SCALE times wider
+ * than the one below, so every shape is listed in only a few cells and a
+ * pick looks in one cell of each grid.
+ * 
+ * Picking returns the topmost shape under a point, using the ranks the
+ * store keeps for its shapes. The index follows the store by listening
+ * to it.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class ShapeIndex implements ShapeStoreListener {
+    
+    public static final double DEFAULT_CELL_SIZE = 64;
+    
+    // SHAPES COVERING MORE CELLS THAN THIS GO UP TO A COARSER GRID
+    private static final int MAX_CELLS_PER_SHAPE = 256;
+    
+    // EACH GRID'S CELLS ARE THIS MANY TIMES WIDER THAN THE ONE BELOW,
+    // AND THE COARSEST IS WIDER THAN ANY DRAWING ANYONE WILL MAKE
+    private static final int LEVEL_SCALE = 16;
+    private static final int LEVEL_COUNT = 6;
+    
+    private final double[] cellSizes;
+    private final ShapeStore store;
+    
+    // THE SHAPES IN EACH CELL OF EACH GRID, KEYED BY COLUMN AND ROW
+    private final ArrayList<HashMap<Long, IdList>> levels;
+    
+    // SHAPES TOO BIG EVEN FOR THE COARSEST GRID
+    private final IdList hugeShapes;
+    
+    // THE GRID AND CELLS EACH SHAPE IS LISTED IN, INDEXED BY ID, WITH AN
+    // EMPTY RANGE FOR SHAPES THAT AREN'T IN ANY CELL
+    private int[] minColumns;
+    private int[] maxColumns;
+    private int[] minRows;
+    private int[] maxRows;
+    private byte[] shapeLevels;
+    
+    /**
+     * Constructor for making an index with the default cell size.
+     * 
+     * @param initStore The shapes to index.
+     */
+    public ShapeIndex(ShapeStore initStore) {
+        this(initStore, DEFAULT_CELL_SIZE);
+    }
+    
+    /**
+     * Constructor for making an index of the shapes already in a store.
+     * 
+     * @param initStore The shapes to index.
+     * 
+     * @param initCellSize The width and height of each grid cell.
+     */
+    public ShapeIndex(ShapeStore initStore, double initCellSize) {
+        store = initStore;
+        cellSizes = new double[LEVEL_COUNT];
+        levels = new ArrayList<>(LEVEL_COUNT);
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            cellSizes[level] = (level == 0)? initCellSize : cellSizes[level - 1] * LEVEL_SCALE;
+            levels.add(new HashMap<>());
+        }
+        hugeShapes = new IdList();
+        allocate(store.getIdLimit());
+        for (int id = store.getBottom(); id != NO_SHAPE; id = store.getAbove(id)) {
+            insert(id);
+        }
+    }
+    
+    /**
+     * This function finds the topmost shape under a point, testing against
+     * the shape's outline and border just as JavaFX would pick its node.
+     * 
+     * @param x The x coordinate in the draw space.
+     * 
+     * @param y The y coordinate in the draw space.
+     * 
+     * @return The id of the topmost shape containing the point, or NO_SHAPE
+     * if there is none.
+     */
+    public int pick(double x, double y) {
+        int topShape = NO_SHAPE;
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            HashMap<Long, IdList> cells = levels.get(level);
+            if (!cells.isEmpty()) {
+                IdList cell = cells.get(key(cellOf(x, level), cellOf(y, level)));
+                if (cell != null) {
+                    topShape = pick(cell, x, y, topShape);
+                }
+            }
+        }
+        return pick(hugeShapes, x, y, topShape);
+    }
+    
+    // HELPER METHOD FOR FINDING A SHAPE IN A LIST UNDER A POINT THAT'S
+    // ABOVE THE TOPMOST SHAPE FOUND SO FAR
+    private int pick(IdList list, double x, double y, int topShape) {
+        long topRank = (topShape == NO_SHAPE)? Long.MIN_VALUE : store.getRank(topShape);
+        for (int i = 0; i < list.size; i++) {
+            int id = list.ids[i];
+            long rank = store.getRank(id);
+            if (rank > topRank && contains(id, x, y)) {
+                topShape = id;
+                topRank = rank;
+            }
+        }
+        return topShape;
+    }
+    
+    // HELPER METHOD FOR TESTING IF A SHAPE OR ITS OUTLINE COVERS A POINT,
+    // THE OUTLINE IS CENTERED ON THE EDGE OF THE SHAPE
+    private boolean contains(int id, double px, double py) {
+        double width = store.getWidth(id);
+        double height = store.getHeight(id);
+        if (width < 0 || height < 0) {
+            return false;
+        }
+        double halfBorder = store.getBorderWidth(id) / 2;
+        double x = store.getX(id);
+        double y = store.getY(id);
+        if (store.isRectangle(id)) {
+            return px >= x - halfBorder && px <= x + width + halfBorder
+                    && py >= y - halfBorder && py <= y + height + halfBorder;
+        }
+        double radiusX = width + halfBorder;
+        double radiusY = height + halfBorder;
+        if (radiusX <= 0 || radiusY <= 0) {
+            return false;
+        }
+        double dx = (px - x) / radiusX;
+        double dy = (py - y) / radiusY;
+        return dx * dx + dy * dy <= 1;
+    }
+    
+    // HELPER METHOD FOR LISTING A SHAPE WHERE ITS BOUNDS ARE NOW
+    private void insert(int id) {
+        ensureCapacity(id + 1);
+        shapeLevels[id] = 0;
+        double width = store.getWidth(id);
+        double height = store.getHeight(id);
+        if (width < 0 || height < 0) {
+            // NOTHING TO PICK
+            minColumns[id] = 0;
+            maxColumns[id] = -1;
+            minRows[id] = 0;
+            maxRows[id] = -1;
+            return;
+        }
+        double halfBorder = store.getBorderWidth(id) / 2;
+        double minX = store.getX(id) - halfBorder;
+        double minY = store.getY(id) - halfBorder;
+        double maxX = store.getX(id) + width + halfBorder;
+        double maxY = store.getY(id) + height + halfBorder;
+        if (!store.isRectangle(id)) {
+            minX -= width;
+            minY -= height;
+        }
+        
+        // FIND THE FINEST GRID THE SHAPE FITS IN
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            minColumns[id] = cellOf(minX, level);
+            maxColumns[id] = cellOf(maxX, level);
+            minRows[id] = cellOf(minY, level);
+            maxRows[id] = cellOf(maxY, level);
+            long columnCount = (long)maxColumns[id] - minColumns[id] + 1;
+            long rowCount = (long)maxRows[id] - minRows[id] + 1;
+            if (columnCount <= MAX_CELLS_PER_SHAPE && rowCount <= MAX_CELLS_PER_SHAPE
+                    && columnCount * rowCount <= MAX_CELLS_PER_SHAPE) {
+                shapeLevels[id] = (byte)level;
+                HashMap<Long, IdList> cells = levels.get(level);
+                for (int column = minColumns[id]; column <= maxColumns[id]; column++) {
+                    for (int row = minRows[id]; row <= maxRows[id]; row++) {
+                        cells.computeIfAbsent(key(column, row), k -> new IdList()).add(id);
+                    }
+                }
+                return;
+            }
+        }
+        shapeLevels[id] = LEVEL_COUNT;
+        hugeShapes.add(id);
+    }
+    
+    // HELPER METHOD FOR UNLISTING A SHAPE FROM WHERE IT WAS
+    private void extract(int id) {
+        if (shapeLevels[id] == LEVEL_COUNT) {
+            hugeShapes.remove(id);
+            return;
+        }
+        HashMap<Long, IdList> cells = levels.get(shapeLevels[id]);
+        for (int column = minColumns[id]; column <= maxColumns[id]; column++) {
+            for (int row = minRows[id]; row <= maxRows[id]; row++) {
+                Long key = key(column, row);
+                IdList cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(id);
+                    if (cell.size == 0) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+    
+    private int cellOf(double coordinate, int level) {
+        return (int)Math.floor(coordinate / cellSizes[level]);
+    }
+    
+    private static Long key(int column, int row) {
+        return ((long)column << 32) | (row & 0xffffffffL);
+    }
+    
+    private void allocate(int capacity) {
+        minColumns = new int[capacity];
+        maxColumns = new int[capacity];
+        minRows = new int[capacity];
+        maxRows = new int[capacity];
+        shapeLevels = new byte[capacity];
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity > shapeLevels.length) {
+            int newCapacity = Math.max(capacity, shapeLevels.length * 2);
+            minColumns = Arrays.copyOf(minColumns, newCapacity);
+            maxColumns = Arrays.copyOf(maxColumns, newCapacity);
+            minRows = Arrays.copyOf(minRows, newCapacity);
+            maxRows = Arrays.copyOf(maxRows, newCapacity);
+            shapeLevels = Arrays.copyOf(shapeLevels, newCapacity);
+        }
+    }
+
+    @Override
+    public void shapeAdded(int id) {
+        insert(id);
+    }
+
+    @Override
+    public void shapeChanged(int id) {
+        extract(id);
+        insert(id);
+    }
+
+    @Override
+    public void shapeRestacked(int id) {
+        // PICKING USES THE STORE'S RANKS, SO THERE'S NOTHING TO DO
+    }
+
+    @Override
+    public void shapeRemoved(int id) {
+        extract(id);
+    }
+
+    @Override
+    public void shapesCleared() {
+        for (HashMap<Long, IdList> cells : levels) {
+            cells.clear();
+        }
+        hugeShapes.size = 0;
+        allocate(0);
+    }
+    
+    // A GROWABLE LIST OF SHAPE IDS
+    private static class IdList {
+        int[] ids = new int[4];
+        int size;
+        
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+        
+        void remove(int id) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
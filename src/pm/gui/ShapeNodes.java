@@ -0,0 +1,224 @@
+package pm.gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import pm.data.ShapeStore;
+import pm.data.ShapeStoreListener;
+import static pm.data.ShapeStore.NO_SHAPE;
+
+/**
+ * This class makes the JavaFX nodes that show the shapes of a shape store,
+ * and keeps them matching the store as it changes. When shown, every shape
+ * has a node in the draw space, stacked the same way as in the store.
+ * When hidden, nodes are only made for the shapes that are asked for.
+ * 
+ * The selected shape can be highlighted, which outlines it in yellow until
+ * its outline color is changed.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class ShapeNodes implements ShapeStoreListener {
+    
+    private static final Color HIGHLIGHT_COLOR = Color.YELLOW;
+    
+    private final ShapeStore store;
+    private final Pane drawSpace;
+    
+    // THE NODE FOR EACH SHAPE, INDEXED BY ID
+    private Shape[] nodes;
+    private boolean shown;
+    
+    // THE HIGHLIGHTED SHAPE, AND ITS OUTLINE COLOR WHEN IT WAS HIGHLIGHTED
+    private int highlighted;
+    private int highlightedBorderColor;
+    
+    /**
+     * Constructor for making the nodes of a store, which start off shown.
+     * 
+     * @param initStore The shapes to make nodes for.
+     * 
+     * @param initDrawSpace Where to show the nodes.
+     */
+    public ShapeNodes(ShapeStore initStore, Pane initDrawSpace) {
+        store = initStore;
+        drawSpace = initDrawSpace;
+        nodes = new Shape[store.getIdLimit()];
+        shown = true;
+        highlighted = NO_SHAPE;
+    }
+    
+    public boolean isShown() {
+        return shown;
+    }
+    
+    /**
+     * This function puts a node for every shape into the draw space,
+     * replacing anything else that was there.
+     */
+    public void show() {
+        shown = true;
+        ArrayList<Shape> shapes = new ArrayList<>(store.size());
+        for (int id = store.getBottom(); id != NO_SHAPE; id = store.getAbove(id)) {
+            shapes.add(getNode(id));
+        }
+        drawSpace.getChildren().setAll(shapes);
+    }
+    
+    /**
+     * This function stops keeping a node for every shape. Note that the
+     * nodes are left in the draw space for whoever replaces them.
+     */
+    public void hide() {
+        shown = false;
+        nodes = new Shape[0];
+    }
+    
+    /**
+     * This function provides the node for a shape, making it if needed.
+     * 
+     * @param id The id of the shape.
+     * 
+     * @return The node showing the shape.
+     */
+    public Shape getNode(int id) {
+        if (id >= nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(store.getIdLimit(), id + 1));
+        }
+        if (nodes[id] == null) {
+            nodes[id] = makeNode(id);
+        }
+        return nodes[id];
+    }
+    
+    /**
+     * This function lets go of the node for a shape while hidden, once it
+     * is no longer needed.
+     * 
+     * @param id The id of the shape.
+     */
+    public void releaseNode(int id) {
+        if (!shown && id >= 0 && id < nodes.length) {
+            nodes[id] = null;
+        }
+    }
+    
+    /**
+     * This function outlines a shape in yellow, removing the outline from
+     * any shape that had it before.
+     * 
+     * @param id The shape to highlight, or NO_SHAPE for none.
+     */
+    public void setHighlighted(int id) {
+        int previous = highlighted;
+        highlighted = id;
+        if (previous != NO_SHAPE) {
+            shapeChanged(previous);
+        }
+        if (id != NO_SHAPE) {
+            highlightedBorderColor = store.getBorderColor(id);
+            shapeChanged(id);
+        }
+    }
+    
+    public int getHighlighted() {
+        return highlighted;
+    }
+    
+    // HELPER METHOD FOR MAKING THE NODE FOR A SHAPE
+    private Shape makeNode(int id) {
+        Shape node = store.isRectangle(id)? new Rectangle() : new Ellipse();
+        node.setMouseTransparent(true);
+        updateNode(node, id);
+        return node;
+    }
+    
+    // HELPER METHOD FOR MAKING A NODE MATCH ITS SHAPE
+    private void updateNode(Shape node, int id) {
+        if (node instanceof Rectangle) {
+            Rectangle rect = (Rectangle)node;
+            rect.setX(store.getX(id));
+            rect.setY(store.getY(id));
+            rect.setWidth(store.getWidth(id));
+            rect.setHeight(store.getHeight(id));
+        }
+        else {
+            Ellipse ellipse = (Ellipse)node;
+            ellipse.setCenterX(store.getX(id));
+            ellipse.setCenterY(store.getY(id));
+            ellipse.setRadiusX(store.getWidth(id));
+            ellipse.setRadiusY(store.getHeight(id));
+        }
+        node.setFill(store.getFillPaint(id));
+        int borderColor = store.getBorderColor(id);
+        node.setStroke((id == highlighted && borderColor == highlightedBorderColor)? 
+                HIGHLIGHT_COLOR : store.getBorderPaint(id));
+        node.setStrokeWidth(store.getBorderWidth(id));
+    }
+
+    @Override
+    public void shapeAdded(int id) {
+        if (shown) {
+            drawSpace.getChildren().add(getNode(id));
+        }
+    }
+
+    @Override
+    public void shapesAdded(int[] ids) {
+        if (shown) {
+            ArrayList<Shape> added = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                added.add(getNode(id));
+            }
+            drawSpace.getChildren().addAll(added);
+        }
+    }
+
+    @Override
+    public void shapeChanged(int id) {
+        if (id < nodes.length && nodes[id] != null) {
+            updateNode(nodes[id], id);
+        }
+    }
+
+    @Override
+    public void shapeRestacked(int id) {
+        if (shown) {
+            Shape node = getNode(id);
+            drawSpace.getChildren().remove(node);
+            int above = store.getAbove(id);
+            if (above == NO_SHAPE) {
+                drawSpace.getChildren().add(node);
+            }
+            else {
+                drawSpace.getChildren().add(drawSpace.getChildren().indexOf(getNode(above)), node);
+            }
+        }
+    }
+
+    @Override
+    public void shapeRemoved(int id) {
+        if (id < nodes.length && nodes[id] != null) {
+            drawSpace.getChildren().remove(nodes[id]);
+            nodes[id] = null;
+        }
+        if (id == highlighted) {
+            highlighted = NO_SHAPE;
+        }
+    }
+
+    @Override
+    public void shapesCleared() {
+        if (shown) {
+            drawSpace.getChildren().clear();
+        }
+        nodes = new Shape[0];
+        highlighted = NO_SHAPE;
+    }
+}
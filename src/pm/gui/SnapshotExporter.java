@@ -0,0 +1,176 @@
+package pm.gui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javafx.concurrent.Task;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.stream.ImageOutputStream;
+import saf.io.AppFiles;
+
+/**
+ * This class writes snapshots of the workspace out as PNG images in the
+ * background. Only copying the pixels out of the snapshot happens on the
+ * JavaFX thread, while turning them into an image, encoding it and writing
+ * the file is done by a single background thread, one snapshot after
+ * another. A few snapshots may wait their turn, but no more, so that a
+ * user clicking away can't pile up images in memory.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class SnapshotExporter {
+    // HOW MANY SNAPSHOTS MAY WAIT WHILE ANOTHER IS BEING WRITTEN
+    public static final int MAX_WAITING = 4;
+    
+    private static final String IMAGE_FORMAT = "png";
+    
+    // HOW MUCH OF THE PROGRESS BAR EACH STEP TAKES UP
+    private static final double CONVERTED_PROGRESS = 0.1;
+    private static final double ENCODED_PROGRESS = 0.95;
+    
+    private final ThreadPoolExecutor executor;
+    
+    /**
+     * Constructor for setting up the background thread, which is only
+     * started once there's something to write.
+     */
+    public SnapshotExporter() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_WAITING), r -> {
+            Thread snapshotThread = new Thread(r, "Snapshot");
+            snapshotThread.setDaemon(true);
+            return snapshotThread;
+        });
+    }
+    
+    /**
+     * Accessor method for checking whether another snapshot can be taken
+     * right now, or whether too many are already waiting to be written.
+     *
+     * @return true if there's room for another snapshot.
+     */
+    public boolean hasRoom() {
+        return executor.getQueue().remainingCapacity() > 0;
+    }
+    
+    /**
+     * This method copies the pixels out of a snapshot and starts writing
+     * them to a PNG file in the background. It must be called on the JavaFX
+     * thread, and only when there's room for another snapshot.
+     *
+     * @param snapshot The snapshot to write.
+     *
+     * @param imageFile Where to write it.
+     *
+     * @return The task writing the image, which reports its progress and
+     * may be cancelled.
+     */
+    public Task<Void> export(Image snapshot, File imageFile) {
+        int width = (int)snapshot.getWidth();
+        int height = (int)snapshot.getHeight();
+        int[] pixels = new int[width * height];
+        snapshot.getPixelReader().getPixels(0, 0, width, height,
+                PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        Task<Void> exportTask = new SnapshotTask(pixels, width, height, imageFile.toPath());
+        executor.execute(exportTask);
+        return exportTask;
+    }
+    
+    // THIS TASK WRITES A SINGLE SNAPSHOT. THE IMAGE IS WRITTEN BESIDE THE
+    // FILE AND THEN MOVED INTO PLACE, SO THAT A CANCELLED SNAPSHOT NEVER
+    // LEAVES HALF AN IMAGE BEHIND
+    private static class SnapshotTask extends Task<Void> {
+        private final int[] pixels;
+        private final int width;
+        private final int height;
+        private final Path imageFile;
+        
+        SnapshotTask(int[] initPixels, int initWidth, int initHeight, Path initImageFile) {
+            pixels = initPixels;
+            width = initWidth;
+            height = initHeight;
+            imageFile = initImageFile;
+        }
+        
+        @Override
+        protected Void call() throws Exception {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int[] imagePixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            System.arraycopy(pixels, 0, imagePixels, 0, pixels.length);
+            updateProgress(CONVERTED_PROGRESS, 1.0);
+            if (isCancelled()) {
+                return null;
+            }
+            
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(IMAGE_FORMAT);
+            if (!writers.hasNext()) {
+                throw new IOException("No " + IMAGE_FORMAT + " image writer available");
+            }
+            ImageWriter writer = writers.next();
+            writer.addIIOWriteProgressListener(new IIOWriteProgressListener() {
+                @Override
+                public void imageProgress(ImageWriter source, float percentageDone) {
+                    if (isCancelled()) {
+                        source.abort();
+                    }
+                    updateProgress(CONVERTED_PROGRESS
+                            + (ENCODED_PROGRESS - CONVERTED_PROGRESS) * percentageDone / 100.0, 1.0);
+                }
+                
+                @Override
+                public void imageStarted(ImageWriter source, int imageIndex) {}
+                
+                @Override
+                public void imageComplete(ImageWriter source) {}
+                
+                @Override
+                public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) {}
+                
+                @Override
+                public void thumbnailProgress(ImageWriter source, float percentageDone) {}
+                
+                @Override
+                public void thumbnailComplete(ImageWriter source) {}
+                
+                @Override
+                public void writeAborted(ImageWriter source) {}
+            });
+            
+            Path tempFile = AppFiles.getTempPath(imageFile);
+            try {
+                try (ImageOutputStream out = ImageIO.createImageOutputStream(tempFile.toFile())) {
+                    if (out == null) {
+                        throw new IOException("Can't write to " + tempFile);
+                    }
+                    writer.setOutput(out);
+                    writer.write(image);
+                } finally {
+                    writer.dispose();
+                }
+                if (isCancelled()) {
+                    Files.deleteIfExists(tempFile);
+                    return null;
+                }
+                AppFiles.moveIntoPlace(tempFile, imageFile);
+                updateProgress(1.0, 1.0);
+            } catch (IOException ioe) {
+                Files.deleteIfExists(tempFile);
+                throw ioe;
+            }
+            return null;
+        }
+    }
+}
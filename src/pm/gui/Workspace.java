@@ -3,21 +3,23 @@ package pm.gui;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Stack;
-import javafx.embed.swing.SwingFXUtils;
+import javafx.animation.AnimationTimer;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Cursor;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ColorPicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Slider;
 import javafx.scene.control.SplitPane;
 import javafx.scene.effect.Lighting;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.BorderPane;
@@ -27,15 +29,25 @@ import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
-import javafx.scene.shape.Shape;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Ellipse;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
-import javax.imageio.ImageIO;
-import javax.imageio.stream.ImageOutputStream;
+import pm.data.DataManager;
+import pm.data.EditHistory;
+import pm.data.ShapeRecord;
+import pm.data.ShapeRecord.ShapeType;
+import pm.data.ShapeStore;
+import static pm.data.ShapeStore.NO_SHAPE;
+import static pm.PropertyType.ELLIPSE_ICON;
+import static pm.PropertyType.MOVE_TO_BACK_ICON;
+import static pm.PropertyType.MOVE_TO_FRONT_ICON;
+import static pm.PropertyType.RECTANGLE_ICON;
+import static pm.PropertyType.REMOVE_ICON;
+import static pm.PropertyType.SELECTION_TOOL_ICON;
+import static pm.PropertyType.SNAPSHOT_ICON;
 import properties_manager.PropertiesManager;
 import saf.ui.AppGUI;
+import saf.ui.AppIconCache;
+import saf.ui.AppMessageDialogSingleton;
 import saf.AppTemplate;
 import saf.components.AppWorkspaceComponent;
 
@@ -68,6 +80,10 @@ public class Workspace extends AppWorkspaceComponent {
     VBox outlineColorMenu;
     VBox outlineThicknessMenu;
     VBox snapshotMenu;
+    VBox renderingMenu;
+    
+    // WRITES SNAPSHOTS IN THE BACKGROUND
+    SnapshotExporter snapshotExporter = new SnapshotExporter();
     
     boolean isDrawEnabled = false;
     boolean isShapeSelected = false;
@@ -78,10 +94,23 @@ public class Workspace extends AppWorkspaceComponent {
     private static final Color DEFAULT_OUTLINE_COLOR = Color.valueOf("#99cc99");
     private static Slider outlineThicknessSlider;
     private MouseState currentMouseState = MouseState.SELECTOR;
-    private Shape selectedShape;
+    private int selectedShape = NO_SHAPE;
+    private int pressedShape = NO_SHAPE;
+    
+    // THE LATEST DRAG POSITION THAT HASN'T BEEN APPLIED YET. HOWEVER MANY
+    // DRAG EVENTS COME IN, ONLY THE LAST ONE IS APPLIED EACH PULSE
+    private boolean dragPending;
+    private double pendingDragX;
+    private double pendingDragY;
+    private AnimationTimer dragApplier;
+    private ShapeStore shapeStore;
+    private EditHistory editHistory;
+    private ShapeEditor shapeEditor;
+    private ShapeIndex shapeIndex;
+    private ShapeNodes shapeNodes;
+    private CanvasDrawSpace canvasDrawSpace;
     
     public ArrayList<ColorPicker> activeColors;
-    public Stack<Shape> shapeStack;
     public ArrayList<Button> shapeManipulators;
     public double currentOutlineThickness = 5;
     
@@ -131,14 +160,36 @@ public class Workspace extends AppWorkspaceComponent {
 	// THIS WILL PROVIDE US WITH OUR CUSTOM UI SETTINGS AND TEXT
 	PropertiesManager propsSingleton = PropertiesManager.getPropertiesManager();
         
+        // START LOADING ALL OF OUR ICONS IN THE BACKGROUND RIGHT AWAY, THE
+        // BUTTONS WILL SHOW THEM ONCE THEY'RE READY
+        AppIconCache icons = AppIconCache.getSingleton();
+        icons.preloadIcons(
+                propsSingleton.getProperty(SELECTION_TOOL_ICON),
+                propsSingleton.getProperty(REMOVE_ICON),
+                propsSingleton.getProperty(RECTANGLE_ICON),
+                propsSingleton.getProperty(ELLIPSE_ICON),
+                propsSingleton.getProperty(MOVE_TO_BACK_ICON),
+                propsSingleton.getProperty(MOVE_TO_FRONT_ICON),
+                propsSingleton.getProperty(SNAPSHOT_ICON));
+        
         gui.getWindow().setResizable(false);
         
 	// WE'LL ORGANIZE OUR WORKSPACE COMPONENTS USING A BORDER PANE
 	workspace = new BorderPane();
         activeColors = new ArrayList();
-        shapeStack = new Stack<>();
         shapeManipulators = new ArrayList();
         appDrawSpace = new Pane();
+        
+        // THE SHAPES LIVE IN THE DATA MANAGER'S STORE, AND EVERYTHING THAT
+        // SHOWS OR FINDS THEM HERE FOLLOWS ALONG AS THE STORE CHANGES
+        // NOTE THAT THE USER'S EDITS ALL GO THROUGH THE EDIT HISTORY SO
+        // THEY CAN BE UNDONE
+        shapeStore = ((DataManager)app.getDataComponent()).getShapeStore();
+        editHistory = ((DataManager)app.getDataComponent()).getEditHistory();
+        shapeEditor = new ShapeEditor(shapeStore, editHistory, appDrawSpace);
+        shapeIndex = shapeEditor.getShapeIndex();
+        shapeNodes = shapeEditor.getShapeNodes();
+        canvasDrawSpace = shapeEditor.getCanvasDrawSpace();
         sideToolbar = new VBox();
         
         //Set up the controls for selecting/creating/destroying shapes
@@ -149,10 +200,10 @@ public class Workspace extends AppWorkspaceComponent {
         Button createEllipseButton = new Button();
         
         //Setting the images for all selector/creation/removal buttons
-        shapeSelector.setGraphic(new ImageView(new Image("file:images\\SelectionTool.png")));
-        removeButton.setGraphic(new ImageView(new Image("file:images\\Remove.png")));
-        createRectButton.setGraphic(new ImageView(new Image("file:images\\Rect.png")));
-        createEllipseButton.setGraphic(new ImageView(new Image("file:images\\Ellipse.png")));
+        shapeSelector.setGraphic(icons.makeIconView(propsSingleton.getProperty(SELECTION_TOOL_ICON)));
+        removeButton.setGraphic(icons.makeIconView(propsSingleton.getProperty(REMOVE_ICON)));
+        createRectButton.setGraphic(icons.makeIconView(propsSingleton.getProperty(RECTANGLE_ICON)));
+        createEllipseButton.setGraphic(icons.makeIconView(propsSingleton.getProperty(ELLIPSE_ICON)));
         
         //Add the buttons to the list of shape manipulators
         shapeManipulators.add(shapeSelector);
@@ -199,22 +250,18 @@ public class Workspace extends AppWorkspaceComponent {
         Button sendToFrontButton = new Button();
         
         //Setting up the images for the shape heirarchy buttons
-        sendToBackButton.setGraphic(new ImageView("file:images\\MoveToBack.png"));
-        sendToFrontButton.setGraphic(new ImageView("file:images\\MoveToFront.png"));
+        sendToBackButton.setGraphic(icons.makeIconView(propsSingleton.getProperty(MOVE_TO_BACK_ICON)));
+        sendToFrontButton.setGraphic(icons.makeIconView(propsSingleton.getProperty(MOVE_TO_FRONT_ICON)));
         
         sendToBackButton.setOnAction(e -> {
-            if(selectedShape != null){
-                selectedShape.toBack();
-                shapeStack.remove(selectedShape);
-                shapeStack.add(0, selectedShape);
+            if(selectedShape != NO_SHAPE && editHistory.sendToBack(selectedShape)){
+                gui.markAsEdited();
             }
         });
         
         sendToFrontButton.setOnAction(e -> {
-            if(selectedShape != null){
-                selectedShape.toFront();
-                shapeStack.remove(selectedShape);
-                shapeStack.push(selectedShape);
+            if(selectedShape != NO_SHAPE && editHistory.bringToFront(selectedShape)){
+                gui.markAsEdited();
             }
         });
         
@@ -262,23 +309,27 @@ public class Workspace extends AppWorkspaceComponent {
             appDrawSpace.setBackground(
                 new Background(
                     new BackgroundFill(
-                        Paint.valueOf(
-                            backgroundColorPicker.getValue().toString()
-                        ), 
+                        backgroundColorPicker.getValue(), 
                         CornerRadii.EMPTY,
                         Insets.EMPTY
                     )
                 )
             );
+            gui.markAsEdited();
         });
+        // NOTE THAT SELECTING A SHAPE SETS THE PICKERS TOO, WHICH ISN'T AN EDIT
         fillColorPicker.setOnAction(e -> {
-            if(selectedShape != null){
-                selectedShape.setFill(fillColorPicker.getValue());
+            if(selectedShape != NO_SHAPE
+                    && ShapeRecord.toArgb(fillColorPicker.getValue()) != shapeStore.getFillColor(selectedShape)){
+                shapeEditor.setFillColor(selectedShape, fillColorPicker.getValue());
+                gui.markAsEdited();
             }
         });
         outlineColorPicker.setOnAction(e -> {
-            if (selectedShape != null){
-                selectedShape.setStroke(outlineColorPicker.getValue());
+            if (selectedShape != NO_SHAPE
+                    && ShapeRecord.toArgb(outlineColorPicker.getValue()) != shapeStore.getBorderColor(selectedShape)){
+                shapeEditor.setOutlineColor(selectedShape, outlineColorPicker.getValue());
+                gui.markAsEdited();
             }
         });
         
@@ -294,8 +345,17 @@ public class Workspace extends AppWorkspaceComponent {
         outlineThicknessSlider = new Slider(0,20,currentOutlineThickness);
         outlineThicknessSlider.valueProperty().addListener(e ->{
             currentOutlineThickness = outlineThicknessSlider.getValue();
-            if(selectedShape != null){
-                selectedShape.setStrokeWidth(currentOutlineThickness);
+            // NOTE THAT SELECTING A SHAPE MOVES THE SLIDER TOO, WHICH ISN'T AN EDIT
+            if(selectedShape != NO_SHAPE 
+                    && currentOutlineThickness != shapeStore.getBorderWidth(selectedShape)){
+                editHistory.setBorderWidth(selectedShape, currentOutlineThickness);
+                gui.markAsEdited();
+            }
+        });
+        // A WHOLE DRAG OF THE SLIDER IS UNDONE AT ONCE
+        outlineThicknessSlider.valueChangingProperty().addListener((observable, wasChanging, changing) -> {
+            if(!changing){
+                editHistory.endGesture();
             }
         });
         
@@ -309,40 +369,60 @@ public class Workspace extends AppWorkspaceComponent {
         Label snapshotLabel = new Label("Take a snapshot!");
         snapshotLabel.getStyleClass().add("subheading_label");
         Button snapshotButton = new Button();
-        snapshotButton.setGraphic(new ImageView("file:images\\Snapshot.png"));
+        snapshotButton.setGraphic(icons.makeIconView(propsSingleton.getProperty(SNAPSHOT_ICON)));
         snapshotButton.setOnAction(e -> {
+             // TOO MANY SNAPSHOTS ARE ALREADY WAITING TO BE WRITTEN
+             if(!snapshotExporter.hasRoom()){
+                 AppMessageDialogSingleton.getSingleton().show("Snapshot",
+                         "Please wait for the earlier snapshots to be written.");
+                 return;
+             }
              WritableImage snapshot = appDrawSpaceContainer.snapshot(null, null);
-             try{
-                File imageDestination = new File("./temp/");
-                if(imageDestination.exists()){
-                    if(!imageDestination.isDirectory()){
-                        imageDestination.mkdir();
-                    }
-                }
-                else{
-                    imageDestination.mkdir();
-                }
-                FileChooser fileChooser = new FileChooser();
-                fileChooser.setInitialDirectory(imageDestination);
-                fileChooser.getExtensionFilters().add(new ExtensionFilter("PNG (*.png)", "*.png"));
-                imageDestination = fileChooser.showSaveDialog(null);
-                if(imageDestination != null){
-                    if(!imageDestination.getName().endsWith(".png"))
-                        imageDestination = new File(imageDestination.getPath() + ".png");
-                    try (ImageOutputStream out = ImageIO.createImageOutputStream(imageDestination)) {
-                        ImageIO.write(
-                            SwingFXUtils.fromFXImage(snapshot, null), "png",
-                            out
-                        );
-                    }
-                }
-             }catch(IOException ioe){}
+             File imageDestination = new File("./temp/");
+             if(imageDestination.exists()){
+                 if(!imageDestination.isDirectory()){
+                     imageDestination.mkdir();
+                 }
+             }
+             else{
+                 imageDestination.mkdir();
+             }
+             FileChooser fileChooser = new FileChooser();
+             fileChooser.setInitialDirectory(imageDestination);
+             fileChooser.getExtensionFilters().add(new ExtensionFilter("PNG (*.png)", "*.png"));
+             imageDestination = fileChooser.showSaveDialog(null);
+             if(imageDestination != null){
+                 if(!imageDestination.getName().endsWith(".png"))
+                     imageDestination = new File(imageDestination.getPath() + ".png");
+                 // ONLY THE PIXELS ARE COPIED HERE, THE IMAGE IS ENCODED
+                 // AND WRITTEN IN THE BACKGROUND
+                 Task<Void> snapshotTask = snapshotExporter.export(snapshot, imageDestination);
+                 snapshotTask.setOnFailed(ev -> {
+                     AppMessageDialogSingleton.getSingleton().show("Snapshot",
+                             "The snapshot could not be written.");
+                 });
+                 gui.trackProgress(snapshotTask, "Snapshot");
+             }
         });
         
         //Adding the snapshot menu controls to the menu
         snapshotMenu.getChildren().add(snapshotLabel);
         snapshotMenu.getChildren().add(snapshotButton);
         
+        //Setting up the rendering menu, drawing on a canvas looks the same
+        //but is much faster for documents with lots of shapes
+        renderingMenu = new VBox(10);
+        Label renderingLabel = new Label("Rendering");
+        renderingLabel.getStyleClass().add("subheading_label");
+        CheckBox canvasRenderingCheckBox = new CheckBox("Draw shapes on a canvas");
+        canvasRenderingCheckBox.setOnAction(e -> {
+            setCanvasRendering(canvasRenderingCheckBox.isSelected());
+        });
+        
+        //Adding the rendering menu controls to the menu
+        renderingMenu.getChildren().add(renderingLabel);
+        renderingMenu.getChildren().add(canvasRenderingCheckBox);
+        
         //Add the button layout containers to the GUI
         sideToolbar.getChildren().add(shapeSelectorControlSet);
         sideToolbar.getChildren().add(shapeHeirarchyControlSet);
@@ -351,6 +431,7 @@ public class Workspace extends AppWorkspaceComponent {
         sideToolbar.getChildren().add(outlineColorMenu);
         sideToolbar.getChildren().add(outlineThicknessMenu);
         sideToolbar.getChildren().add(snapshotMenu);
+        sideToolbar.getChildren().add(renderingMenu);
         
         ScrollPane sideScrollPane = new ScrollPane(sideToolbar); 
         sideScrollPane.getStyleClass().add("max_pane");
@@ -365,6 +446,27 @@ public class Workspace extends AppWorkspaceComponent {
 	workspaceActivated = false;
         initStyle();
         setUpDrawPaneEventHandlers();
+        
+        // CTRL+Z AND CTRL+Y (COMMAND ON A MAC) UNDO AND REDO
+        gui.getPrimaryScene().getAccelerators().put(
+                new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), () -> undoOrRedo(true));
+        gui.getPrimaryScene().getAccelerators().put(
+                new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), () -> undoOrRedo(false));
+    }
+    
+    // HELPER METHOD FOR UNDOING OR REDOING AN EDIT, WHICH MAY TAKE AWAY
+    // THE SHAPE THAT WAS SELECTED SO AFTERWARDS NOTHING IS
+    private void undoOrRedo(boolean undo){
+        if(!workspaceActivated){
+            return;
+        }
+        pressedShape = NO_SHAPE;
+        if(undo ? editHistory.undo() : editHistory.redo()){
+            selectedShape = NO_SHAPE;
+            shapeNodes.setHighlighted(NO_SHAPE);
+            gui.markAsEdited();
+        }
+        updateLiveShape();
     }
     
     /**
@@ -391,6 +493,8 @@ public class Workspace extends AppWorkspaceComponent {
         outlineThicknessMenu.getStyleClass().add("control_set");
         snapshotMenu.getStyleClass().add("max_pane");
         snapshotMenu.getStyleClass().add("control_set");
+        renderingMenu.getStyleClass().add("max_pane");
+        renderingMenu.getStyleClass().add("control_set");
     }
     
     /**
@@ -401,27 +505,62 @@ public class Workspace extends AppWorkspaceComponent {
         return currentMouseState;
     }
     
-    public Shape getSelectedShape(){
+    /**
+     * This function provides the shape that is currently selected.
+     * 
+     * @return The id of the selected shape, or NO_SHAPE if none is.
+     */
+    public int getSelectedShape(){
         return selectedShape;
     }
     
-    public String getSelectedOutlineFill(){
-        return activeColors.get(ColorPickerIndex.OUTLINECOLOR.ordinal()).getValue().toString();
-    }
-    
     public Pane getDrawPane(){
         return appDrawSpace;
     }
     
-    public Stack<Shape> getShapeStack(){
-        return shapeStack;
+    public ShapeStore getShapeStore(){
+        return shapeStore;
+    }
+    
+    public ShapeIndex getShapeIndex(){
+        return shapeIndex;
+    }
+    
+    public boolean isCanvasRendering(){
+        return canvasDrawSpace.isAttached();
+    }
+    
+    /**
+     * This function switches between showing every shape as a node in the
+     * draw space and drawing them onto canvases, with only the shape being
+     * edited shown as a node. Both look exactly the same.
+     * 
+     * @param canvasRendering Whether to draw the shapes on canvases.
+     */
+    public void setCanvasRendering(boolean canvasRendering){
+        if(canvasRendering == isCanvasRendering())
+            return;
+        if(canvasRendering){
+            shapeNodes.hide();
+            canvasDrawSpace.attach();
+        }
+        else{
+            canvasDrawSpace.detach();
+            shapeNodes.show();
+        }
+        updateLiveShape();
+    }
+    
+    // IN CANVAS RENDERING ONLY THE SHAPE BEING EDITED IS A NODE
+    private void updateLiveShape(){
+        canvasDrawSpace.setLiveShape((pressedShape != NO_SHAPE)? pressedShape : selectedShape);
     }
     
     public void setBackgroundColor(Paint color){
         activeColors
         .get(ColorPickerIndex.BACKGROUNDCOLOR.ordinal())
         .setValue(
-            Color.valueOf(color.toString())
+            (Color)color
         );
         appDrawSpace.setBackground(
             new Background(
@@ -445,7 +584,11 @@ public class Workspace extends AppWorkspaceComponent {
     
     public void resetWorkspace(){
         try{
-            selectedShape = null;
+            selectedShape = NO_SHAPE;
+            pressedShape = NO_SHAPE;
+            dragPending = false;
+            shapeNodes.setHighlighted(NO_SHAPE);
+            canvasDrawSpace.setLiveShape(NO_SHAPE);
             currentOutlineThickness = 5;
             activeColors.get(ColorPickerIndex.BACKGROUNDCOLOR.ordinal()).setValue(DEFAULT_BACKGROUND_COLOR);
             activeColors.get(ColorPickerIndex.FILLCOLOR.ordinal()).setValue(DEFAULT_FILL_COLOR);
@@ -481,131 +624,134 @@ public class Workspace extends AppWorkspaceComponent {
                  break;
         }});
         
+        // SHAPES DON'T TAKE MOUSE EVENTS THEMSELVES, THE DRAW SPACE FINDS
+        // THE SHAPE UNDER THE MOUSE USING THE SHAPE INDEX INSTEAD
+        appDrawSpace.setOnMouseMoved(e -> {
+        switch (currentMouseState) {
+            case SELECTOR:
+            case REMOVAL:
+                appDrawSpace.setCursor((shapeIndex.pick(e.getX(), e.getY()) != NO_SHAPE)?
+                        Cursor.HAND : Cursor.DEFAULT);
+                break;
+            default:
+                break;
+        }});
+        
         appDrawSpace.setOnMousePressed(e -> {
-        if(selectedShape != null)
-            selectedShape.setStroke(activeColors.get(ColorPickerIndex.OUTLINECOLOR.ordinal()).getValue());
+        pressedShape = NO_SHAPE;
+        shapeNodes.setHighlighted(NO_SHAPE);
         switch (currentMouseState){
             case CREATE_RECT:
-                selectedShape = new Rectangle(0,0);
-                Rectangle tempRect = (Rectangle)selectedShape;
-                tempRect.setFill(activeColors.get(ColorPickerIndex.FILLCOLOR.ordinal()).getValue());
-                tempRect.setStroke(activeColors.get(ColorPickerIndex.OUTLINECOLOR.ordinal()).getValue());
-                tempRect.setStrokeWidth(currentOutlineThickness);
-                tempRect.setX(e.getX());
-                tempRect.setY(e.getY());
-                appDrawSpace.getChildren().add(tempRect);
-                setShapeListeners(tempRect);
+                selectedShape = addNewShape(ShapeType.RECTANGLE, e.getX(), e.getY());
+                gui.markAsEdited();
                 break;
             case CREATE_ELLIPSE:
-                selectedShape = new Ellipse(0,0);
-                Ellipse tempEllipse = (Ellipse)selectedShape;
-                tempEllipse.setFill(activeColors.get(ColorPickerIndex.FILLCOLOR.ordinal()).getValue());
-                tempEllipse.setStroke(activeColors.get(ColorPickerIndex.OUTLINECOLOR.ordinal()).getValue());
-                tempEllipse.setStrokeWidth(currentOutlineThickness);
-                tempEllipse.setCenterX(e.getX());
-                tempEllipse.setCenterY(e.getY());
-                appDrawSpace.getChildren().add(tempEllipse);
-                setShapeListeners(tempEllipse);
+                selectedShape = addNewShape(ShapeType.ELLIPSE, e.getX(), e.getY());
+                gui.markAsEdited();
                 break;
             default:
-                if(selectedShape != null)
-                    selectedShape.setStroke(activeColors.get(ColorPickerIndex.OUTLINECOLOR.ordinal()).getValue());
-                selectedShape = null;
+                selectedShape = NO_SHAPE;
+                pressedShape = shapeIndex.pick(e.getX(), e.getY());
                 break;
         }
         updateControls();
+        updateLiveShape();
         });
         
+        // DRAGS ARE ONLY NOTED HERE, AND APPLIED AT THE START OF THE NEXT
+        // PULSE SO THE SHAPE STILL MOVES IN THE VERY NEXT FRAME
+        dragApplier = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                applyPendingDrag();
+                stop();
+            }
+        };
         appDrawSpace.setOnMouseDragged(e -> {
-        switch (currentMouseState){
-            case CREATE_RECT:
-                Rectangle tempRect = (Rectangle)selectedShape;
-                if(tempRect != null){
-                    tempRect.setWidth(e.getX() - tempRect.getX());
-                    tempRect.setHeight(e.getY() - tempRect.getY());
-                }
-                break;
-            case CREATE_ELLIPSE:
-                Ellipse tempEllipse = (Ellipse)selectedShape;
-                if(tempEllipse != null){
-                    tempEllipse.setRadiusX(e.getX() - tempEllipse.getCenterX());
-                    tempEllipse.setRadiusY(e.getY() - tempEllipse.getCenterY());
-                }
-                break;
-            default:
-                selectedShape = null;
-                break;
-        }});
+        pendingDragX = e.getX();
+        pendingDragY = e.getY();
+        if(!dragPending){
+            dragPending = true;
+            dragApplier.start();
+        }
+        });
         
         appDrawSpace.setOnMouseReleased(e -> {
-        switch (currentMouseState){
-            case CREATE_RECT:
-                Rectangle tempRect = (Rectangle)selectedShape;
-                if(selectedShape != null && !shapeStack.contains(selectedShape))
-                    shapeStack.push(selectedShape);
-                break;
-            case CREATE_ELLIPSE:
-                Ellipse tempEllipse = (Ellipse)selectedShape;
-                if(selectedShape != null && !shapeStack.contains(selectedShape))
-                    shapeStack.push(selectedShape);
-                break;
-            default:
-                break;
-        }
-        selectedShape = null;
+        // THE LAST DRAG GOES IN BEFORE THE GESTURE ENDS
+        applyPendingDrag();
+        selectedShape = NO_SHAPE;
+        editHistory.endGesture();
+        updateLiveShape();
         });
-    }
-    
-    public void setShapeListeners(Shape tempShape){
-        tempShape.setOnMouseClicked(x -> {
+        
+        appDrawSpace.setOnMouseClicked(e -> {
+        int clickedShape = pressedShape;
+        pressedShape = NO_SHAPE;
+        // AS WITH A CLICK ON A NODE, IT HAS TO END ON THE SHAPE IT BEGAN ON
+        if(clickedShape != NO_SHAPE && shapeIndex.pick(e.getX(), e.getY()) == clickedShape){
             switch (currentMouseState){
                 case SELECTOR:
-                    selectedShape = tempShape;
+                    selectedShape = clickedShape;
                     updateControls();
-                    tempShape.setStroke(Paint.valueOf("yellow"));
+                    shapeNodes.setHighlighted(clickedShape);
                     break;
                 case REMOVAL:
-                    if(shapeStack.contains(tempShape))
-                        shapeStack.remove(tempShape);
-                    appDrawSpace.getChildren().remove(tempShape);
+                    editHistory.remove(clickedShape);
+                    gui.markAsEdited();
                     break;
                 default:
                     break;
             }
+        }
+        updateLiveShape();
         });
-        if(tempShape instanceof Rectangle){
-            tempShape.setOnMouseDragged(x -> {
-                switch (currentMouseState){
-                    case SELECTOR:
-                        ((Rectangle)tempShape).setX(x.getX());
-                        ((Rectangle)tempShape).setY(x.getY());
-                        break;
-                    default:
-                        break;
-                }
-            });
+    }
+    
+    // HELPER METHOD FOR APPLYING THE LATEST DRAG, IF THERE IS ONE
+    private void applyPendingDrag(){
+        if(!dragPending){
+            return;
         }
-        else{
-            tempShape.setOnMouseDragged(x -> {
-                switch (currentMouseState){
-                    case SELECTOR:
-                        ((Ellipse)tempShape).setCenterX(x.getX());
-                        ((Ellipse)tempShape).setCenterY(x.getY());
-                        break;
-                    default:
-                        break;
+        dragPending = false;
+        dragApplier.stop();
+        switch (currentMouseState){
+            case CREATE_RECT:
+            case CREATE_ELLIPSE:
+                if(selectedShape != NO_SHAPE){
+                    shapeEditor.sizeShape(selectedShape, pendingDragX, pendingDragY);
+                    gui.markAsEdited();
                 }
-            });
+                break;
+            case SELECTOR:
+                if(pressedShape != NO_SHAPE){
+                    editHistory.setPosition(pressedShape, pendingDragX, pendingDragY);
+                    gui.markAsEdited();
+                }
+                selectedShape = NO_SHAPE;
+                break;
+            default:
+                selectedShape = NO_SHAPE;
+                break;
         }
+        updateLiveShape();
+    }
+    
+    // HELPER METHOD FOR STARTING A NEW SHAPE WITH THE CURRENT SETTINGS,
+    // WHICH GROWS FROM NOTHING AS THE MOUSE IS DRAGGED
+    private int addNewShape(ShapeType type, double x, double y){
+        return shapeEditor.startShape(type, x, y,
+                activeColors.get(ColorPickerIndex.FILLCOLOR.ordinal()).getValue(),
+                activeColors.get(ColorPickerIndex.OUTLINECOLOR.ordinal()).getValue(),
+                currentOutlineThickness);
     }
     
     private void updateControls(){
-        if(selectedShape != null){
+        if(selectedShape != NO_SHAPE){
             ColorPicker colorPicker = activeColors.get(ColorPickerIndex.FILLCOLOR.ordinal());
-            colorPicker.setValue(Color.valueOf(selectedShape.getFill().toString()));
+            colorPicker.setValue(shapeStore.getFillPaint(selectedShape));
             colorPicker = activeColors.get(ColorPickerIndex.OUTLINECOLOR.ordinal());
-            colorPicker.setValue(Color.valueOf(selectedShape.getStroke().toString()));
-            outlineThicknessSlider.adjustValue(selectedShape.getStrokeWidth());
+            colorPicker.setValue(shapeStore.getBorderPaint(selectedShape));
+            outlineThicknessSlider.adjustValue(shapeStore.getBorderWidth(selectedShape));
             currentOutlineThickness = outlineThicknessSlider.getValue();
         }
     }
@@ -3,19 +3,28 @@ package saf;
 import saf.ui.AppYesNoCancelDialogSingleton;
 import saf.ui.AppMessageDialogSingleton;
 import saf.ui.AppGUI;
+import saf.ui.AppIconCache;
 import saf.components.AppWorkspaceComponent;
 import saf.components.AppFileComponent;
 import saf.components.AppDataComponent;
 import saf.components.AppComponentsBuilder;
 import java.net.URL;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 import properties_manager.PropertiesManager;
+import saf.settings.AppProperties;
 import static saf.settings.AppPropertyType.APP_CSS;
+import static saf.settings.AppPropertyType.APP_LOGO;
 import static saf.settings.AppPropertyType.APP_PATH_CSS;
 import static saf.settings.AppPropertyType.APP_TITLE;
+import static saf.settings.AppPropertyType.EXIT_ICON;
+import static saf.settings.AppPropertyType.EXPORT_ICON;
+import static saf.settings.AppPropertyType.LOAD_ICON;
+import static saf.settings.AppPropertyType.NEW_ICON;
 import static saf.settings.AppPropertyType.PROPERTIES_LOAD_ERROR_MESSAGE;
 import static saf.settings.AppPropertyType.PROPERTIES_LOAD_ERROR_TITLE;
+import static saf.settings.AppPropertyType.SAVE_ICON;
 import static saf.settings.AppStartupConstants.PATH_DATA;
 import static saf.settings.AppStartupConstants.PROPERTIES_SCHEMA_FILE_NAME;
 import static saf.settings.AppStartupConstants.SIMPLE_APP_PROPERTIES_FILE_NAME;
@@ -68,41 +77,70 @@ public abstract class AppTemplate extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
+	// TIME EACH PHASE OF STARTING UP, THROUGH TO THE FIRST FRAME
+	StartupProfiler profiler = new StartupProfiler();
+	
 	// LET'S START BY INITIALIZING OUR DIALOGS
 	AppMessageDialogSingleton messageDialog = AppMessageDialogSingleton.getSingleton();
 	messageDialog.init(primaryStage);
 	AppYesNoCancelDialogSingleton yesNoDialog = AppYesNoCancelDialogSingleton.getSingleton();
 	yesNoDialog.init(primaryStage);
+	profiler.endPhase("dialogs");
 	
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
-
 	try {
 	    // LOAD APP PROPERTIES, BOTH THE BASIC UI STUFF FOR THE FRAMEWORK
-	    // AND THE CUSTOM UI STUFF FOR THE WORKSPACE
-	    boolean success = loadProperties(SIMPLE_APP_PROPERTIES_FILE_NAME)
-		    && loadProperties(WORKSPACE_PROPERTIES_FILE_NAME);
+	    // AND THE CUSTOM UI STUFF FOR THE WORKSPACE. THE STARTUP CACHE
+	    // SPARES US VALIDATING THEM ON EVERY LAUNCH, SO THEY'RE ONLY
+	    // LOADED FROM THE XML WHEN ONE OF THEM HAS CHANGED
+	    boolean success = AppProperties.loadCached(SIMPLE_APP_PROPERTIES_FILE_NAME, WORKSPACE_PROPERTIES_FILE_NAME);
+	    if (!success) {
+		success = loadProperties(SIMPLE_APP_PROPERTIES_FILE_NAME)
+			&& loadProperties(WORKSPACE_PROPERTIES_FILE_NAME);
+		if (success) {
+		    AppProperties.saveCache(SIMPLE_APP_PROPERTIES_FILE_NAME, WORKSPACE_PROPERTIES_FILE_NAME);
+		}
+	    }
+	    profiler.endPhase("properties");
 	    
 	    if (success) {
-		String appTitle = props.getProperty(APP_TITLE);
+		String appTitle = AppProperties.getProperty(APP_TITLE);
+		
+		// START LOADING THE FRAMEWORK'S ICONS, ALL AT ONCE AND IN THE
+		// BACKGROUND, WHILE THE REST OF THE APP IS BEING BUILT
+		AppIconCache.getSingleton().preloadIcons(
+			AppProperties.getProperty(APP_LOGO),
+			AppProperties.getProperty(NEW_ICON),
+			AppProperties.getProperty(LOAD_ICON),
+			AppProperties.getProperty(SAVE_ICON),
+			AppProperties.getProperty(EXPORT_ICON),
+			AppProperties.getProperty(EXIT_ICON));
 
 		// GET THE CUSTOM BUILDER, AND USE IT TO INIT THE COMPONENTS
 		AppComponentsBuilder builder = makeAppBuilderHook();
 		fileComponent = builder.buildFileComponent();
+		profiler.endPhase("buildFileComponent");
 		dataComponent = builder.buildDataComponent();
+		profiler.endPhase("buildDataComponent");
 
 		// AND NOW THAT THE COMPONENTS HAVE BEEN INSTANTIATED
 		// WE CAN INITIALIZE THE GUI
 		gui = new AppGUI(primaryStage, appTitle, this);
+		profiler.endPhase("gui");
 		workspaceComponent = builder.buildWorkspaceComponent();
+		profiler.endPhase("buildWorkspaceComponent");
 		
 		// NOW INIT ALL THE STYLE
 		initStylesheet();
 		gui.initStyle();
 		workspaceComponent.initStyle();
+		profiler.endPhase("stylesheet");
+		
+		// AND FINALLY WAIT FOR THE WINDOW TO BE DRAWN
+		profiler.endWithFirstFrame(Platform::exit);
 	    } 
 	}catch (Exception e/*IOException ioe*/) {
                 AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
-                dialog.show(props.getProperty(PROPERTIES_LOAD_ERROR_TITLE), props.getProperty(PROPERTIES_LOAD_ERROR_MESSAGE));
+                dialog.show(AppProperties.getProperty(PROPERTIES_LOAD_ERROR_TITLE), AppProperties.getProperty(PROPERTIES_LOAD_ERROR_MESSAGE));
 	}
     }
     
@@ -113,9 +151,8 @@ public abstract class AppTemplate extends Application {
      */
     public void initStylesheet() {
 	// SELECT THE STYLESHEET
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
-	String stylesheet = props.getProperty(APP_PATH_CSS);
-	stylesheet += props.getProperty(APP_CSS);
+	String stylesheet = AppProperties.getProperty(APP_PATH_CSS);
+	stylesheet += AppProperties.getProperty(APP_CSS);
 	URL stylesheetURL = getClass().getResource(stylesheet);
 	String stylesheetPath = stylesheetURL.toExternalForm();
 	getGUI().getPrimaryScene().getStylesheets().add(stylesheetPath);	
@@ -0,0 +1,240 @@
+package saf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+/**
+ * This class measures how long the app takes to start, from the command
+ * line. It launches the app again and again, each time in a new JVM with
+ * no screen, and has it quit as soon as its first frame is up. From the
+ * startup report each launch writes it then gives percentiles of the time
+ * to the first frame, measured from just before the JVM was started, along
+ * with those of each of the phases timed by the StartupProfiler.
+ *
+ * The app is run with this JVM's class path, and JavaFX is told to use
+ * its headless Monocle platform with software rendering, so Monocle must
+ * be on the class path. The first launch is a warm up that isn't counted,
+ * since it also fills the startup caches.
+ *
+ * Usage: StartupBenchmark [launches [mainClass [jvmOption ...]]]
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class StartupBenchmark {
+    
+    public static final int DEFAULT_LAUNCHES = 20;
+    public static final String DEFAULT_MAIN_CLASS = "pm.PoseMaker";
+    public static final int WARM_UP_LAUNCHES = 1;
+    
+    // HOW LONG A SINGLE LAUNCH MAY TAKE BEFORE IT'S CONSIDERED HUNG
+    private static final long LAUNCH_TIMEOUT_SECONDS = 120;
+    
+    // RUN JavaFX WITHOUT A SCREEN
+    private static final String[] HEADLESS_OPTIONS = {
+        "-Djava.awt.headless=true",
+        "-Dglass.platform=Monocle",
+        "-Dmonocle.platform=Headless",
+        "-Dprism.order=sw"
+    };
+    
+    // THE PERCENTILES REPORTED FOR EVERYTHING MEASURED
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+    
+    public static final String TIME_TO_FIRST_FRAME = "timeToFirstFrame";
+    public static final String JVM_TO_START = "jvmToStart";
+    
+    private final int launches;
+    private final String mainClass;
+    private final List<String> jvmOptions;
+    
+    // EVERYTHING MEASURED, IN MILLISECONDS, WITH ONE VALUE PER LAUNCH
+    private final Map<String, List<Double>> samples = new LinkedHashMap<>();
+    
+    /**
+     * Constructor for setting up a benchmark, which doesn't launch anything
+     * until it's run.
+     *
+     * @param initLaunches How many launches to measure.
+     *
+     * @param initMainClass The app's main class.
+     *
+     * @param initJvmOptions Any more options for the app's JVM.
+     */
+    public StartupBenchmark(int initLaunches, String initMainClass, List<String> initJvmOptions) {
+        launches = initLaunches;
+        mainClass = initMainClass;
+        jvmOptions = initJvmOptions;
+    }
+    
+    /**
+     * This method runs all the launches, one after another.
+     *
+     * @throws IOException Thrown should a launch fail, time out, or not
+     * write its report.
+     *
+     * @throws InterruptedException Thrown should the benchmark be
+     * interrupted while waiting on a launch.
+     */
+    public void run() throws IOException, InterruptedException {
+        Path workDirectory = Files.createTempDirectory("startup_benchmark");
+        Path reportFile = workDirectory.resolve("startup_report.json");
+        Path logFile = workDirectory.resolve("launch.log");
+        for (int i = 0; i < WARM_UP_LAUNCHES + launches; i++) {
+            Files.deleteIfExists(reportFile);
+            long launchEpochMillis = launch(reportFile, logFile);
+            if (i >= WARM_UP_LAUNCHES) {
+                record(reportFile, launchEpochMillis);
+            }
+        }
+        Files.deleteIfExists(reportFile);
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(workDirectory);
+    }
+    
+    // HELPER METHOD FOR A SINGLE LAUNCH, WHICH RETURNS WHEN IT WAS STARTED
+    private long launch(Path reportFile, Path logFile) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(HEADLESS_OPTIONS));
+        command.add("-D" + StartupProfiler.REPORT_PROPERTY + "=" + reportFile);
+        command.add("-D" + StartupProfiler.EXIT_PROPERTY + "=true");
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("--add-modules");
+            command.add("ALL-MODULE-PATH");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.addAll(jvmOptions);
+        command.add(mainClass);
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(logFile.toFile());
+        long launchEpochMillis = System.currentTimeMillis();
+        Process process = builder.start();
+        if (!process.waitFor(LAUNCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("Launch timed out, see " + logFile);
+        }
+        if (!Files.isRegularFile(reportFile)) {
+            throw new IOException("Launch exited with " + process.exitValue()
+                    + " and no startup report, see " + logFile);
+        }
+        return launchEpochMillis;
+    }
+    
+    // HELPER METHOD FOR PULLING THE TIMES OUT OF A LAUNCH'S REPORT
+    private void record(Path reportFile, long launchEpochMillis) throws IOException {
+        try (InputStream is = Files.newInputStream(reportFile);
+             JsonReader reader = Json.createReader(is)) {
+            JsonObject report = reader.readObject();
+            long firstFrame = report.getJsonNumber(StartupProfiler.FIRST_FRAME_KEY).longValue();
+            long start = report.getJsonNumber(StartupProfiler.START_KEY).longValue();
+            long jvmStart = report.getJsonNumber(StartupProfiler.JVM_START_KEY).longValue();
+            sample(TIME_TO_FIRST_FRAME, firstFrame - launchEpochMillis);
+            sample(JVM_TO_START, start - jvmStart);
+            for (JsonValue value : report.getJsonArray(StartupProfiler.PHASES_KEY)) {
+                JsonObject phase = (JsonObject)value;
+                sample(phase.getString(StartupProfiler.NAME_KEY),
+                        phase.getJsonNumber(StartupProfiler.MILLIS_KEY).doubleValue());
+            }
+        } catch (JsonException | ClassCastException | NullPointerException e) {
+            throw new IOException("Unreadable startup report " + reportFile, e);
+        }
+    }
+    
+    private void sample(String name, double millis) {
+        samples.computeIfAbsent(name, n -> new ArrayList<>()).add(millis);
+    }
+    
+    /**
+     * This function finds a percentile of some samples, by nearest rank.
+     *
+     * @param sorted The samples, in ascending order.
+     *
+     * @param percentile Which percentile, from 0 to 100.
+     *
+     * @return The sample at that percentile.
+     */
+    public static double percentile(double[] sorted, double percentile) {
+        int rank = (int)Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+    
+    /**
+     * This method prints the percentiles of everything measured, in
+     * milliseconds.
+     */
+    public void printReport() {
+        System.out.printf("%d launches of %s, times in ms%n", launches, mainClass);
+        System.out.printf("%-26s%9s", "", "min");
+        for (double p : PERCENTILES) {
+            System.out.printf("%9s", "p" + (int)p);
+        }
+        System.out.printf("%9s%n", "max");
+        for (Map.Entry<String, List<Double>> measured : samples.entrySet()) {
+            double[] sorted = measured.getValue().stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            System.out.printf("%-26s%9.1f", measured.getKey(), sorted[0]);
+            for (double p : PERCENTILES) {
+                System.out.printf("%9.1f", percentile(sorted, p));
+            }
+            System.out.printf("%9.1f%n", sorted[sorted.length - 1]);
+        }
+    }
+    
+    /**
+     * This is where the benchmark starts when run from the command line.
+     *
+     * @param args How many launches to measure, the app's main class, and
+     * any more options for its JVM, all optional.
+     */
+    public static void main(String[] args) {
+        int launches = DEFAULT_LAUNCHES;
+        String mainClass = DEFAULT_MAIN_CLASS;
+        try {
+            if (args.length > 0) {
+                launches = Integer.parseInt(args[0]);
+            }
+            if (launches < 1) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException nfe) {
+            System.err.println("Usage: StartupBenchmark [launches [mainClass [jvmOption ...]]]");
+            System.exit(1);
+        }
+        if (args.length > 1) {
+            mainClass = args[1];
+        }
+        List<String> jvmOptions = args.length > 2
+                ? Arrays.asList(args).subList(2, args.length)
+                : new ArrayList<>();
+        
+        StartupBenchmark benchmark = new StartupBenchmark(launches, mainClass, jvmOptions);
+        try {
+            benchmark.run();
+            benchmark.printReport();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Startup benchmark failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
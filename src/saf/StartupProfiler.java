@@ -0,0 +1,159 @@
+package saf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.animation.AnimationTimer;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import static saf.settings.AppStartupConstants.PATH_STARTUP_REPORT;
+
+/**
+ * This class times the phases of starting the app, one after another,
+ * through to the first frame being shown. When profiling is switched on,
+ * once that frame is up it writes a report of how long each phase took as
+ * JSON to wherever the saf.startup.report system property says. Setting
+ * the saf.startup.exit system property to true also switches profiling
+ * on, writing the report to startup_report.json unless told otherwise,
+ * and makes the app quit as soon as the report is written, which is how
+ * the StartupBenchmark launches it. Otherwise the phases are only timed
+ * and nothing is written.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class StartupProfiler {
+    
+    // THE SYSTEM PROPERTIES FOR CONTROLLING THE REPORT
+    public static final String REPORT_PROPERTY = "saf.startup.report";
+    public static final String EXIT_PROPERTY = "saf.startup.exit";
+    
+    // THE NAMES OF THE VALUES IN THE REPORT
+    public static final String JVM_START_KEY = "jvmStartEpochMillis";
+    public static final String START_KEY = "startEpochMillis";
+    public static final String FIRST_FRAME_KEY = "firstFrameEpochMillis";
+    public static final String PHASES_KEY = "phases";
+    public static final String NAME_KEY = "name";
+    public static final String MILLIS_KEY = "millis";
+    public static final String TOTAL_KEY = "totalMillis";
+    public static final String FIRST_FRAME_PHASE = "firstFrame";
+    
+    private final long startNanos;
+    private final long startEpochMillis;
+    private long phaseStartNanos;
+    
+    // THE PHASES IN THE ORDER THEY HAPPENED, WITH HOW LONG EACH TOOK
+    private final List<String> phaseNames = new ArrayList<>();
+    private final List<Long> phaseNanos = new ArrayList<>();
+    
+    /**
+     * Constructor for starting the clock, which should be done as the very
+     * first thing the app does.
+     */
+    public StartupProfiler() {
+        startEpochMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        phaseStartNanos = startNanos;
+    }
+    
+    /**
+     * This method marks the end of a phase, which began when the last one
+     * ended.
+     *
+     * @param name What happened during the phase.
+     */
+    public void endPhase(String name) {
+        long now = System.nanoTime();
+        phaseNames.add(name);
+        phaseNanos.add(now - phaseStartNanos);
+        phaseStartNanos = now;
+    }
+    
+    /**
+     * This method waits for the first frame to be shown, then ends the last
+     * phase with it and, when profiling, writes the report. It must be
+     * called on the JavaFX thread once the window has been shown.
+     *
+     * @param onExit What to do to quit the app, should the report be all
+     * that's wanted.
+     */
+    public void endWithFirstFrame(Runnable onExit) {
+        new AnimationTimer() {
+            boolean rendered = false;
+            
+            @Override
+            public void handle(long now) {
+                // THE FIRST PULSE HAS BEEN RENDERED ONCE THE NEXT ONE BEGINS
+                if (!rendered) {
+                    rendered = true;
+                    return;
+                }
+                stop();
+                endPhase(FIRST_FRAME_PHASE);
+                long firstFrameEpochMillis = startEpochMillis + (phaseStartNanos - startNanos) / 1_000_000L;
+                if (!isReporting()) {
+                    return;
+                }
+                try {
+                    writeReport(getReportPath(), firstFrameEpochMillis);
+                } catch (IOException | JsonException e) {
+                    // THE REPORT IS ONLY FOR US, SO THE APP CARRIES ON
+                }
+                if (Boolean.getBoolean(EXIT_PROPERTY)) {
+                    onExit.run();
+                }
+            }
+        }.start();
+    }
+    
+    /**
+     * Accessor method for whether profiling is switched on, in which case
+     * the report is written once the first frame is up.
+     *
+     * @return true if a report is wanted, false otherwise.
+     */
+    public static boolean isReporting() {
+        return System.getProperty(REPORT_PROPERTY) != null || Boolean.getBoolean(EXIT_PROPERTY);
+    }
+    
+    /**
+     * Accessor method for where the report is written.
+     *
+     * @return The path of the report.
+     */
+    public static Path getReportPath() {
+        return Paths.get(System.getProperty(REPORT_PROPERTY, PATH_STARTUP_REPORT));
+    }
+    
+    // HELPER METHOD FOR WRITING THE REPORT, WITH EVERY TIME IN MILLISECONDS
+    private void writeReport(Path reportPath, long firstFrameEpochMillis) throws IOException {
+        Map<String, Object> config = new HashMap<>();
+        config.put(JsonGenerator.PRETTY_PRINTING, true);
+        try (OutputStream os = Files.newOutputStream(reportPath);
+             JsonGenerator generator = Json.createGeneratorFactory(config).createGenerator(os)) {
+            generator.writeStartObject();
+            generator.write(JVM_START_KEY, ManagementFactory.getRuntimeMXBean().getStartTime());
+            generator.write(START_KEY, startEpochMillis);
+            generator.write(FIRST_FRAME_KEY, firstFrameEpochMillis);
+            generator.write(TOTAL_KEY, (phaseStartNanos - startNanos) / 1e6);
+            generator.writeStartArray(PHASES_KEY);
+            for (int i = 0; i < phaseNames.size(); i++) {
+                generator.writeStartObject();
+                generator.write(NAME_KEY, phaseNames.get(i));
+                generator.write(MILLIS_KEY, phaseNanos.get(i) / 1e6);
+                generator.writeEnd();
+            }
+            generator.writeEnd();
+            generator.writeEnd();
+        }
+    }
+}
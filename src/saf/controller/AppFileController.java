@@ -6,16 +6,41 @@ import saf.ui.AppGUI;
 import saf.components.AppDataComponent;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.control.ChoiceDialog;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
-import properties_manager.PropertiesManager;
 import saf.AppTemplate;
+import saf.settings.AppProperties;
+import static saf.settings.AppPropertyType.AUTOSAVE_INTERVAL;
+import static saf.settings.AppPropertyType.BINARY_WORK_FILE_EXT;
+import static saf.settings.AppPropertyType.BINARY_WORK_FILE_EXT_DESC;
+import static saf.settings.AppPropertyType.EXPORT_COMPLETED_MESSAGE;
+import static saf.settings.AppPropertyType.EXPORT_COMPLETED_TITLE;
+import static saf.settings.AppPropertyType.EXPORT_ERROR_MESSAGE;
+import static saf.settings.AppPropertyType.EXPORT_ERROR_TITLE;
+import static saf.settings.AppPropertyType.EXPORT_SCALE_MESSAGE;
+import static saf.settings.AppPropertyType.EXPORT_SCALE_TITLE;
+import static saf.settings.AppPropertyType.EXPORT_WORK_TITLE;
+import static saf.settings.AppPropertyType.EXPORTING_PROGRESS_TITLE;
+import static saf.settings.AppPropertyType.IMAGE_FILE_EXT;
+import static saf.settings.AppPropertyType.IMAGE_FILE_EXT_DESC;
+import static saf.settings.AppPropertyType.LOADING_PROGRESS_TITLE;
 import static saf.settings.AppPropertyType.WORK_FILE_EXT;
 import static saf.settings.AppPropertyType.WORK_FILE_EXT_DESC;
 import static saf.settings.AppPropertyType.NEW_COMPLETED_MESSAGE;
 import static saf.settings.AppPropertyType.NEW_COMPLETED_TITLE;
 import static saf.settings.AppPropertyType.NEW_ERROR_MESSAGE;
 import static saf.settings.AppPropertyType.NEW_ERROR_TITLE;
+import static saf.settings.AppPropertyType.RECOVER_WORK_MESSAGE;
+import static saf.settings.AppPropertyType.RECOVER_WORK_TITLE;
 import static saf.settings.AppPropertyType.SAVE_COMPLETED_MESSAGE;
 import static saf.settings.AppPropertyType.SAVE_COMPLETED_TITLE;
 import static saf.settings.AppPropertyType.SAVE_ERROR_MESSAGE;
@@ -23,8 +48,16 @@ import static saf.settings.AppPropertyType.SAVE_ERROR_TITLE;
 import static saf.settings.AppPropertyType.SAVE_UNSAVED_WORK_MESSAGE;
 import static saf.settings.AppPropertyType.SAVE_UNSAVED_WORK_TITLE;
 import static saf.settings.AppPropertyType.SAVE_WORK_TITLE;
+import static saf.settings.AppPropertyType.SVG_FILE_EXT;
+import static saf.settings.AppPropertyType.SVG_FILE_EXT_DESC;
+import static saf.settings.AppStartupConstants.PATH_EXPORT;
+import static saf.settings.AppStartupConstants.PATH_RECOVERY;
 import static saf.settings.AppStartupConstants.PATH_WORK;
 import pm.data.DataManager;
+import pm.data.DocumentSnapshot;
+import pm.data.ShapeRecord;
+import pm.file.DocumentLoadTask;
+import pm.file.EditJournal;
 import pm.file.FileManager;
 import pm.gui.Workspace;
 
@@ -45,6 +78,41 @@ public class AppFileController {
     
     // THIS IS THE FILE FOR THE WORK CURRENTLY BEING WORKED ON
     File currentWorkFile;
+    
+    // THIS COUNTS CHANGES TO THE WORK SO WE CAN TELL WHETHER A SAVE
+    // THAT JUST FINISHED STILL MATCHES WHAT'S BEING EDITED
+    long editCount;
+    
+    // THIS COUNTS THE DOCUMENTS OPENED SO FAR, SO THAT A SAVE FINISHING
+    // AFTER ANOTHER DOCUMENT WAS OPENED CAN'T MARK THAT ONE AS SAVED
+    long workGeneration;
+    
+    // SAVES ARE WRITTEN ON THIS THREAD SO THE UI NEVER WAITS ON THE DISK
+    ExecutorService saveExecutor;
+    
+    // EXPORTS GET A THREAD OF THEIR OWN, SINCE A BIG ONE CAN TAKE MINUTES
+    // AND SAVES SHOULDN'T HAVE TO WAIT FOR IT
+    ExecutorService exportExecutor;
+    
+    // THE SAVE BEING WRITTEN RIGHT NOW, IF ANY, AND THE NEWEST SAVE THAT
+    // WAS REQUESTED WHILE IT WAS BEING WRITTEN. NOTE THAT THESE ARE ONLY
+    // EVER TOUCHED FROM THE JavaFX THREAD
+    Future<IOException> saveInFlight;
+    PendingSave pendingSave;
+    
+    // THE DOCUMENT BEING LOADED RIGHT NOW, IF ANY
+    DocumentLoadTask loadInProgress;
+    
+    // THIS KEEPS A COPY OF UNSAVED WORK IN CASE WE CRASH
+    AutosaveScheduler autosave;
+    
+    // THIS RECORDS THE EDITS MADE TO THE WORK SO THAT SAVING IT AGAIN
+    // ONLY HAS TO WRITE WHAT CHANGED
+    EditJournal journal;
+    
+    // THE SCALES WORK MAY BE EXPORTED AT, WHERE 1 EXPORTS IT JUST AS IT
+    // LOOKS IN THE WORKSPACE
+    private static final Integer[] EXPORT_SCALES = {1, 2, 4, 8, 16, 32};
 
     /**
      * This constructor just keeps the app for later.
@@ -56,6 +124,27 @@ public class AppFileController {
         // NOTHING YET
         saved = true;
         app = initApp;
+        saveExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread saveThread = new Thread(r, "Save");
+            saveThread.setDaemon(true);
+            return saveThread;
+        });
+        exportExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread exportThread = new Thread(r, "Export");
+            exportThread.setDaemon(true);
+            return exportThread;
+        });
+        
+        // AUTOSAVES ARE WRITTEN ON THE SAME THREAD AS SAVES, SO THE TWO
+        // NEVER GET IN EACH OTHER'S WAY
+        int autosaveInterval = AutosaveScheduler.DEFAULT_INTERVAL_SECONDS;
+        try {
+            autosaveInterval = Integer.parseInt(AppProperties.getProperty(AUTOSAVE_INTERVAL).trim());
+        } catch (NullPointerException | NumberFormatException e) {
+            // WE'LL JUST USE THE DEFAULT
+        }
+        autosave = new AutosaveScheduler((FileManager)app.getFileComponent(), saveExecutor,
+                () -> ((DataManager)app.getDataComponent()).snapshot(), PATH_RECOVERY, autosaveInterval);
     }
     
     /**
@@ -68,6 +157,8 @@ public class AppFileController {
     public void markAsEdited(AppGUI gui) {
         // THE WORK IS NOW DIRTY
         saved = false;
+        editCount++;
+        autosave.editMade();
         
         // LET THE UI KNOW
         gui.updateToolbarControls(saved);
@@ -81,7 +172,6 @@ public class AppFileController {
      */
     public void handleNewRequest() {
 	AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
         try {
             // WE MAY HAVE TO SAVE CURRENT WORK
             boolean continueToMakeNew = true;
@@ -92,6 +182,14 @@ public class AppFileController {
 
             // IF THE USER REALLY WANTS TO MAKE A NEW COURSE
             if (continueToMakeNew) {
+                // LET THE LAST WORK FINISH SAVING, SO NO SAVE STILL WAITING
+                // FOR ITS TURN GETS MIXED UP WITH SAVES OF THE NEW WORK
+                finishSaves();
+                
+                // STOP LOADING ANY DOCUMENT THAT'S STILL ON ITS WAY IN
+                cancelLoad();
+                getJournal().stop();
+                
                 // RESET THE DATA, WHICH SHOULD TRIGGER A RESET OF THE UI
                 app.getDataComponent().reset();        
 
@@ -101,20 +199,24 @@ public class AppFileController {
 		// MAKE SURE THE WORKSPACE IS ACTIVATED
 		app.getWorkspaceComponent().activateWorkspace(app.getGUI().getAppPane());
 		
-		// WORK IS NOT SAVED
+		// WORK IS NOT SAVED, BUT THERE'S NOTHING TO AUTOSAVE YET
                 saved = false;
+                editCount++;
+                workGeneration++;
 		currentWorkFile = null;
+                autosave.discard();
+                autosave.setDocumentPath(null);
 
                 // REFRESH THE GUI, WHICH WILL ENABLE AND DISABLE
                 // THE APPROPRIATE CONTROLS
                 app.getGUI().updateToolbarControls(saved);
 
                 // TELL THE USER NEW WORK IS UNDERWAY
-		dialog.show(props.getProperty(NEW_COMPLETED_TITLE), props.getProperty(NEW_COMPLETED_MESSAGE));
+		dialog.show(AppProperties.getProperty(NEW_COMPLETED_TITLE), AppProperties.getProperty(NEW_COMPLETED_MESSAGE));
             }
         } catch (IOException ioe) {
             // SOMETHING WENT WRONG, PROVIDE FEEDBACK
-	    dialog.show(props.getProperty(NEW_ERROR_TITLE), props.getProperty(NEW_ERROR_MESSAGE));
+	    dialog.show(AppProperties.getProperty(NEW_ERROR_TITLE), AppProperties.getProperty(NEW_ERROR_MESSAGE));
         }
     }
 
@@ -128,7 +230,6 @@ public class AppFileController {
      */
     public void handleSaveRequest() {
 	// WE'LL NEED THIS TO GET CUSTOM STUFF
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
         try {
 	    // MAYBE WE ALREADY KNOW THE FILE
 	    if (currentWorkFile != null) {
@@ -139,9 +240,10 @@ public class AppFileController {
 		// PROMPT THE USER FOR A FILE NAME
 		FileChooser fc = new FileChooser();
 		fc.setInitialDirectory(new File(PATH_WORK));
-		fc.setTitle(props.getProperty(SAVE_WORK_TITLE));
+		fc.setTitle(AppProperties.getProperty(SAVE_WORK_TITLE));
 		fc.getExtensionFilters().addAll(
-		new ExtensionFilter(props.getProperty(WORK_FILE_EXT_DESC), props.getProperty(WORK_FILE_EXT)));
+		new ExtensionFilter(AppProperties.getProperty(WORK_FILE_EXT_DESC), AppProperties.getProperty(WORK_FILE_EXT)),
+		new ExtensionFilter(AppProperties.getProperty(BINARY_WORK_FILE_EXT_DESC), AppProperties.getProperty(BINARY_WORK_FILE_EXT)));
 
 		File selectedFile = fc.showSaveDialog(app.getGUI().getWindow());
 		if (selectedFile != null) {
@@ -150,35 +252,263 @@ public class AppFileController {
 	    }
         } catch (IOException ioe) {
 	    AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
-	    dialog.show(props.getProperty(SAVE_ERROR_TITLE), props.getProperty(SAVE_ERROR_MESSAGE));
+	    dialog.show(AppProperties.getProperty(SAVE_ERROR_TITLE), AppProperties.getProperty(SAVE_ERROR_MESSAGE));
         }
     }
     
-    // HELPER METHOD FOR SAVING WORK
+    // HELPER METHOD FOR SAVING WORK, NOTE THAT THE FILE EXTENSION
+    // DECIDES WHETHER IT'S SAVED AS JSON OR IN THE BINARY FORMAT. SAVING
+    // TO THE FILE THE JOURNAL BELONGS TO ONLY ADDS THE EDITS SINCE THE LAST
+    // SAVE TO THE JOURNAL, ANYTHING ELSE TAKES A SNAPSHOT OF THE WHOLE
+    // DOCUMENT. EITHER WAY THE WRITING IS DONE IN THE BACKGROUND, AND A
+    // SAVE REQUESTED WHILE ANOTHER IS STILL BEING WRITTEN IS ADDED ONTO
+    // ANY SAVE ALREADY WAITING FOR ITS TURN
     private void saveWork(File selectedFile) throws IOException {
 	// SAVE IT TO A FILE
         String saveFileName = selectedFile.getPath();
-        if(!saveFileName.endsWith(".pm"))
-            saveFileName = saveFileName + ".pm";
-	app.getFileComponent().saveData(app.getDataComponent(), saveFileName);
-	
-	// MARK IT AS SAVED
+        if(!FileManager.hasDocumentExtension(saveFileName))
+            saveFileName = saveFileName + FileManager.JSON_FILE_EXT;
+        DataManager dataManager = (DataManager)app.getDataComponent();
+        EditJournal editJournal = getJournal();
+        PendingSave save;
+        if (saveFileName.equals(editJournal.getDocumentPath()) && !editJournal.isSnapshotNeeded()) {
+            editJournal.recordBackground(dataManager.getBackgroundArgb());
+            save = new PendingSave(null, editJournal.takeBase(), editJournal.takeEdits(), saveFileName, editCount, workGeneration);
+        }
+        else {
+            DocumentSnapshot document = dataManager.snapshot();
+            editJournal.start(saveFileName, document.getBackgroundColor());
+            save = new PendingSave(document, editJournal.takeBase(), new byte[0], saveFileName, editCount, workGeneration);
+        }
 	currentWorkFile = selectedFile;
-	//saved = true;
-	
-	// TELL THE USER THE FILE HAS BEEN SAVED
+        autosave.setDocumentPath(saveFileName);
+        
+        if (saveInFlight != null) {
+            pendingSave = (pendingSave == null) ? save : pendingSave.followedBy(save);
+        }
+        else {
+            startSave(save);
+        }
+    }
+    
+    // HELPER METHOD FOR HANDING A SAVE OFF TO THE SAVE THREAD
+    private void startSave(PendingSave save) {
+        FileManager fileManager = (FileManager)app.getFileComponent();
+        saveInFlight = saveExecutor.submit(() -> {
+            IOException saveError = null;
+            try {
+                save.write(fileManager);
+            } catch (IOException ioe) {
+                saveError = ioe;
+            }
+            IOException result = saveError;
+            Platform.runLater(() -> saveCompleted(save, result));
+            return saveError;
+        });
+    }
+    
+    // HELPER METHOD CALLED ON THE JavaFX THREAD ONCE A SAVE IS WRITTEN
+    private void saveCompleted(PendingSave save, IOException saveError) {
+        saveInFlight = null;
 	AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
-        dialog.show(props.getProperty(SAVE_COMPLETED_TITLE),props.getProperty(SAVE_COMPLETED_MESSAGE));
-		    
+        boolean currentWork = (save.workGeneration == workGeneration);
+        if (saveError != null) {
+            // DROP ANYTHING WAITING, THE USER WILL HAVE TO TRY AGAIN, AND
+            // SINCE THE JOURNAL MAY NOW BE MISSING EDITS THE WHOLE
+            // DOCUMENT WILL HAVE TO BE WRITTEN
+            pendingSave = null;
+            if (currentWork) {
+                getJournal().invalidate();
+            }
+	    dialog.show(AppProperties.getProperty(SAVE_ERROR_TITLE), AppProperties.getProperty(SAVE_ERROR_MESSAGE));
+            return;
+        }
+        
+        // IF ANOTHER SAVE CAME IN WHILE WE WERE WRITING, WRITE IT NOW
+        if (pendingSave != null) {
+            PendingSave nextSave = pendingSave;
+            pendingSave = null;
+            startSave(nextSave);
+            return;
+        }
+        
+        // A SAVE OF WORK THAT'S SINCE BEEN CLOSED SAYS NOTHING ABOUT THE
+        // WORK OPEN NOW
+        if (!currentWork) {
+            return;
+        }
+        
+	// MARK IT AS SAVED, UNLESS IT WAS EDITED WHILE WE WERE WRITING, IN
+	// WHICH CASE THE AUTOSAVE IS STILL WORTH KEEPING
+	saved = (save.editCount == editCount);
+        if (saved) {
+            autosave.discard();
+        }
+	
 	// AND REFRESH THE GUI, WHICH WILL ENABLE AND DISABLE
 	// THE APPROPRIATE CONTROLS
-	//app.getGUI().updateToolbarControls(saved);	
+	app.getGUI().updateToolbarControls(saved);
+	
+	// TELL THE USER THE FILE HAS BEEN SAVED
+        dialog.show(AppProperties.getProperty(SAVE_COMPLETED_TITLE),AppProperties.getProperty(SAVE_COMPLETED_MESSAGE));
+    }
+    
+    // HELPER METHOD FOR WAITING UNTIL EVERY REQUESTED SAVE IS ON DISK,
+    // WHICH WE NEED BEFORE WE CAN SAFELY EXIT
+    private void finishSaves() throws IOException {
+        if (saveInFlight != null) {
+            try {
+                IOException saveError = saveInFlight.get();
+                if (saveError != null) {
+                    throw saveError;
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e);
+            }
+            saveInFlight = null;
+        }
+        if (pendingSave != null) {
+            PendingSave save = pendingSave;
+            pendingSave = null;
+            save.write((FileManager)app.getFileComponent());
+        }
+    }
+    
+    // HELPER METHOD FOR GETTING THE JOURNAL, WHICH CAN'T BE MADE UNTIL
+    // THE DATA COMPONENT EXISTS
+    private EditJournal getJournal() {
+        if (journal == null) {
+            journal = new EditJournal(((DataManager)app.getDataComponent()).getShapeStore());
+        }
+        return journal;
+    }
+    
+    // THIS IS A SAVE THAT HAS BEEN REQUESTED BUT NOT YET WRITTEN. IT MAY
+    // HAVE A SNAPSHOT OF THE WHOLE DOCUMENT, THE START OF A NEW JOURNAL,
+    // AND EDITS TO ADD TO THE JOURNAL, IN THAT ORDER
+    private static class PendingSave {
+        final DocumentSnapshot document;
+        final int[] baseIds;
+        final byte[] edits;
+        final String filePath;
+        final long editCount;
+        final long workGeneration;
+        
+        PendingSave(DocumentSnapshot initDocument, int[] initBaseIds, byte[] initEdits, 
+                String initFilePath, long initEditCount, long initWorkGeneration) {
+            document = initDocument;
+            baseIds = initBaseIds;
+            edits = initEdits;
+            filePath = initFilePath;
+            editCount = initEditCount;
+            workGeneration = initWorkGeneration;
+        }
+        
+        // A SAVE WITH A SNAPSHOT MAKES THIS ONE POINTLESS, ANYTHING ELSE
+        // JUST HAS MORE EDITS TO ADD AFTER THIS ONE'S
+        PendingSave followedBy(PendingSave laterSave) {
+            if (laterSave.document != null) {
+                return laterSave;
+            }
+            byte[] allEdits = Arrays.copyOf(edits, edits.length + laterSave.edits.length);
+            System.arraycopy(laterSave.edits, 0, allEdits, edits.length, laterSave.edits.length);
+            return new PendingSave(document, (baseIds != null) ? baseIds : laterSave.baseIds, 
+                    allEdits, filePath, laterSave.editCount, laterSave.workGeneration);
+        }
+        
+        // WRITES IT ALL OUT, FOLDING THE JOURNAL INTO THE DOCUMENT IF IT'S
+        // GOTTEN TOO BIG
+        void write(FileManager fileManager) throws IOException {
+            if (document != null) {
+                fileManager.saveDocument(document, filePath);
+            }
+            if (baseIds != null) {
+                EditJournal.writeBase(filePath, baseIds);
+            }
+            EditJournal.append(filePath, edits);
+            if (EditJournal.needsCompaction(filePath)) {
+                EditJournal.compact(fileManager, filePath);
+            }
+        }
+    }
+    
+    /**
+     * This method exports the current work as an image, prompting the user
+     * for where to put it. Only the snapshot of the work is taken here, the
+     * image is drawn and written in the background.
+     */
+    public void handleExportRequest() {
+        
+        // PROMPT THE USER FOR A FILE NAME
+        FileChooser fc = new FileChooser();
+        File exportDirectory = new File(PATH_EXPORT);
+        if(!exportDirectory.isDirectory()){
+            exportDirectory.mkdir();
+        }
+        fc.setInitialDirectory(exportDirectory);
+        fc.setTitle(AppProperties.getProperty(EXPORT_WORK_TITLE));
+        ExtensionFilter svgFilter = new ExtensionFilter(AppProperties.getProperty(SVG_FILE_EXT_DESC), AppProperties.getProperty(SVG_FILE_EXT));
+        fc.getExtensionFilters().addAll(
+        new ExtensionFilter(AppProperties.getProperty(IMAGE_FILE_EXT_DESC), AppProperties.getProperty(IMAGE_FILE_EXT)),
+        svgFilter);
+        
+        File selectedFile = fc.showSaveDialog(app.getGUI().getWindow());
+        if (selectedFile == null) {
+            return;
+        }
+        String exportFileName = selectedFile.getPath();
+        if (fc.getSelectedExtensionFilter() == svgFilter && !FileManager.isSvgFile(exportFileName)) {
+            exportFileName = exportFileName + FileManager.SVG_FILE_EXT;
+        }
+        
+        // SVGS DON'T HAVE A SIZE IN PIXELS, SO THERE'S NO SCALE TO ASK FOR
+        if (FileManager.isSvgFile(exportFileName)) {
+            exportWork(new File(exportFileName), EXPORT_SCALES[0]);
+            return;
+        }
+        
+        // AND THEN FOR HOW BIG TO MAKE IT
+        ChoiceDialog<Integer> scaleDialog = new ChoiceDialog<>(EXPORT_SCALES[0], EXPORT_SCALES);
+        scaleDialog.initOwner(app.getGUI().getWindow());
+        scaleDialog.setTitle(AppProperties.getProperty(EXPORT_SCALE_TITLE));
+        scaleDialog.setHeaderText(null);
+        scaleDialog.setContentText(AppProperties.getProperty(EXPORT_SCALE_MESSAGE));
+        Optional<Integer> scale = scaleDialog.showAndWait();
+        if (scale.isPresent()) {
+            exportWork(selectedFile, scale.get());
+        }
+    }
+    
+    // HELPER METHOD FOR EXPORTING WORK IN THE BACKGROUND
+    private void exportWork(File selectedFile, int scale) {
+	AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
+        String exportFileName = selectedFile.getPath();
+        if(!exportFileName.toLowerCase().endsWith(FileManager.IMAGE_FILE_EXT) && !FileManager.isSvgFile(exportFileName))
+            exportFileName = exportFileName + FileManager.IMAGE_FILE_EXT;
+        
+        FileManager fileManager = (FileManager)app.getFileComponent();
+        DocumentSnapshot document = ((DataManager)app.getDataComponent()).snapshot();
+        String exportFilePath = exportFileName;
+        Task<Void> exportTask = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                fileManager.exportScaledDocument(document, exportFilePath, scale,
+                        done -> updateProgress(done, 1.0));
+                return null;
+            }
+        };
+        exportTask.setOnSucceeded(e -> {
+            dialog.show(AppProperties.getProperty(EXPORT_COMPLETED_TITLE), AppProperties.getProperty(EXPORT_COMPLETED_MESSAGE));
+        });
+        exportTask.setOnFailed(e -> {
+            dialog.show(AppProperties.getProperty(EXPORT_ERROR_TITLE), AppProperties.getProperty(EXPORT_ERROR_MESSAGE));
+        });
+        app.getGUI().trackProgress(exportTask, AppProperties.getProperty(EXPORTING_PROGRESS_TITLE));
+        exportExecutor.execute(exportTask);
     }
     
     public void handleLoadRequest(){
         // WE'LL NEED THIS TO GET CUSTOM STUFF
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
         try{
             // WE MAY HAVE TO SAVE CURRENT WORK
             boolean continueToLoad = true;
@@ -188,6 +518,24 @@ public class AppFileController {
             }
 
             // IF THE USER REALLY WANTS TO LOAD A NEW PROJECT
+            if (continueToLoad && autosave.isRecoveryAvailable()) {
+                // BUT FIRST OFFER ANY WORK LEFT OVER FROM A CRASH
+                AppYesNoCancelDialogSingleton yesNoDialog = AppYesNoCancelDialogSingleton.getSingleton();
+                yesNoDialog.show(AppProperties.getProperty(RECOVER_WORK_TITLE), AppProperties.getProperty(RECOVER_WORK_MESSAGE));
+                String selection = yesNoDialog.getSelection();
+                if (selection.equals(AppYesNoCancelDialogSingleton.YES)) {
+                    String recoveredPath = autosave.getRecoveredDocumentPath();
+                    loadWork(new File(autosave.getRecoveryFilePath()), 
+                            (recoveredPath == null) ? null : new File(recoveredPath));
+                    return;
+                }
+                else if (selection.equals(AppYesNoCancelDialogSingleton.NO)) {
+                    autosave.dropRecovery();
+                }
+                else {
+                    return;
+                }
+            }
             if (continueToLoad) {
                 // PROMPT THE USER FOR A FILE NAME
                 FileChooser fc = new FileChooser();
@@ -203,33 +551,122 @@ public class AppFileController {
                 fc.setInitialDirectory(workDirectory);
                 File selectedFile = fc.showOpenDialog(app.getGUI().getWindow());
                 if (selectedFile != null) {
-                    loadWork(selectedFile);
+                    loadWork(selectedFile, selectedFile);
                 }
             }
         } catch (IOException e) {
 	    AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
-	    //dialog.show(props.getProperty(SAVE_ERROR_TITLE), props.getProperty(SAVE_ERROR_MESSAGE));
+	    //dialog.show(AppProperties.getProperty(SAVE_ERROR_TITLE), AppProperties.getProperty(SAVE_ERROR_MESSAGE));
             dialog.show("Error Loading File!", "File not correct format, or file not found!");
         }
     }
     
-    private void loadWork(File selectedFile) throws IOException{
+    // HELPER METHOD FOR LOADING WORK. THE FILE IS READ IN THE BACKGROUND
+    // AND ITS SHAPES SHOW UP IN THE WORKSPACE A BATCH AT A TIME, SO THE
+    // USER CAN SEE THE PROGRESS AND CANCEL IT. NOTE THAT WHEN RECOVERING
+    // WORK THE FILE BEING READ ISN'T THE WORK'S OWN FILE, AND THE LOADED
+    // WORK STILL NEEDS SAVING
+    private void loadWork(File selectedFile, File workFile) {
+        boolean recovering = (selectedFile != workFile);
         AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
+        
+        // THE FILE MAY STILL BE BEING SAVED, AND READING IT AND ITS JOURNAL
+        // HALFWAY THROUGH WOULD GIVE THE NEXT SAVE THE WRONG THING TO ADD TO
+        try {
+            finishSaves();
+        } catch (IOException ioe) {
+	    dialog.show(AppProperties.getProperty(SAVE_ERROR_TITLE), AppProperties.getProperty(SAVE_ERROR_MESSAGE));
+            return;
+        }
+        
+        // ONLY ONE DOCUMENT CAN BE LOADING AT A TIME
+        cancelLoad();
+        getJournal().stop();
 
         // RESET THE DATA, WHICH SHOULD TRIGGER A RESET OF THE UI
         app.getDataComponent().reset();        
 
         // MAKE SURE THE WORKSPACE IS ACTIVATED
         app.getWorkspaceComponent().activateWorkspace(app.getGUI().getAppPane());
-
-        // TELL THE USER NEW WORK IS UNDERWAY
-        dialog.show("Loaded", "Successfully loaded");
-            
-        ((FileManager)app.getFileComponent()).loadData(app.getDataComponent(), selectedFile.getPath());
         
-        currentWorkFile = selectedFile;
+        // NOTE THAT WE DON'T KNOW THE FILE UNTIL IT'S FULLY LOADED, THAT
+        // WAY A HALF LOADED DOCUMENT CAN NEVER BE SAVED OVER IT
+        currentWorkFile = null;
 	saved = true;
+        editCount++;
+        workGeneration++;
+        long loadEditCount = editCount;
+        app.getGUI().updateToolbarControls(saved);
+            
+        DocumentLoadTask loadTask = ((FileManager)app.getFileComponent()).makeLoadTask(app.getDataComponent(), selectedFile.getPath());
+        loadTask.setOnSucceeded(e -> {
+            if (loadInProgress == loadTask) {
+                loadInProgress = null;
+                currentWorkFile = workFile;
+                resumeJournal(loadTask, selectedFile.getPath(), loadEditCount);
+                autosave.discard();
+                autosave.setDocumentPath((workFile == null) ? null : workFile.getPath());
+                if (recovering) {
+                    // GET IT INTO A FRESH AUTOSAVE BEFORE LETTING GO OF
+                    // THE RECOVERY FILE
+                    markAsEdited(app.getGUI());
+                    autosave.autosaveNow();
+                    autosave.dropRecovery();
+                }
+                
+                // TELL THE USER THE WORK IS READY
+                dialog.show("Loaded", "Successfully loaded");
+            }
+        });
+        loadTask.setOnFailed(e -> {
+            if (loadInProgress == loadTask) {
+                loadInProgress = null;
+                app.getDataComponent().reset();
+                dialog.show("Error Loading File!", "File not correct format, or file not found!");
+            }
+        });
+        loadTask.setOnCancelled(e -> {
+            if (loadInProgress == loadTask) {
+                loadInProgress = null;
+                app.getDataComponent().reset();
+            }
+        });
+        app.getGUI().trackProgress(loadTask, AppProperties.getProperty(LOADING_PROGRESS_TITLE));
+        loadInProgress = loadTask;
+        loadTask.start();
+    }
+    
+    // HELPER METHOD FOR REPLAYING THE JOURNAL OF A DOCUMENT THAT JUST
+    // LOADED, OR STARTING A NEW ONE IF IT DOESN'T HAVE ONE. NOTE THAT IF
+    // THE DOCUMENT WAS EDITED WHILE IT WAS LOADING THE JOURNAL CAN'T BE
+    // TRUSTED, SO THE NEXT SAVE WILL HAVE TO WRITE THE WHOLE THING
+    private void resumeJournal(DocumentLoadTask loadTask, String filePath, long loadEditCount) {
+        DataManager dataManager = (DataManager)app.getDataComponent();
+        EditJournal editJournal = getJournal();
+        int backgroundColor = dataManager.getBackgroundArgb();
+        boolean untouched = (editCount == loadEditCount)
+                && (dataManager.getShapeStore().size() == loadTask.getValue());
+        if (untouched && editJournal.resume(filePath, backgroundColor, loadTask.getJournal())) {
+            if (editJournal.getBackgroundColor() != backgroundColor) {
+                dataManager.setBackgroundColor(ShapeRecord.toColor(editJournal.getBackgroundColor()));
+            }
+        }
+        else {
+            editJournal.start(filePath, backgroundColor);
+            if (!untouched) {
+                editJournal.invalidate();
+            }
+        }
+    }
+    
+    // HELPER METHOD FOR STOPPING ANY LOAD THAT'S UNDERWAY, NOTE THAT WHAT
+    // IT ALREADY LOADED IS LEFT FOR THE CALLER TO CLEAR OUT
+    private void cancelLoad() {
+        if (loadInProgress != null) {
+            DocumentLoadTask loadTask = loadInProgress;
+            loadInProgress = null;
+            loadTask.cancel();
+        }
     }
     
     /**
@@ -249,13 +686,17 @@ public class AppFileController {
 
             // IF THE USER REALLY WANTS TO EXIT THE APP
             if (continueToExit) {
+                // MAKE SURE NOTHING IS STILL BEING WRITTEN, AND THAT
+                // NOTHING IS LEFT BEHIND TO RECOVER
+                finishSaves();
+                autosave.discardAndWait();
+                
                 // EXIT THE APPLICATION
                 System.exit(0);
             }
         } catch (IOException ioe) {
                 AppMessageDialogSingleton dialog = AppMessageDialogSingleton.getSingleton();
-		PropertiesManager props = PropertiesManager.getPropertiesManager();
-                dialog.show(props.getProperty(SAVE_ERROR_TITLE), props.getProperty(SAVE_ERROR_MESSAGE));
+                dialog.show(AppProperties.getProperty(SAVE_ERROR_TITLE), AppProperties.getProperty(SAVE_ERROR_MESSAGE));
         }
     }
 
@@ -275,14 +716,13 @@ public class AppFileController {
      * option to not continue.
      */
     private boolean promptToSave() throws IOException {
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
 	
 	// CHECK TO SEE IF THE CURRENT WORK HAS
 	// BEEN SAVED AT LEAST ONCE
 	
         // PROMPT THE USER TO SAVE UNSAVED WORK
 	AppYesNoCancelDialogSingleton yesNoDialog = AppYesNoCancelDialogSingleton.getSingleton();
-        yesNoDialog.show(props.getProperty(SAVE_UNSAVED_WORK_TITLE), props.getProperty(SAVE_UNSAVED_WORK_MESSAGE));
+        yesNoDialog.show(AppProperties.getProperty(SAVE_UNSAVED_WORK_TITLE), AppProperties.getProperty(SAVE_UNSAVED_WORK_MESSAGE));
         
         // AND NOW GET THE USER'S SELECTION
         String selection = yesNoDialog.getSelection();
@@ -296,19 +736,18 @@ public class AppFileController {
 		// PROMPT THE USER FOR A FILE NAME
 		FileChooser fc = new FileChooser();
 		fc.setInitialDirectory(new File(PATH_WORK));
-		fc.setTitle(props.getProperty(SAVE_WORK_TITLE));
+		fc.setTitle(AppProperties.getProperty(SAVE_WORK_TITLE));
 		fc.getExtensionFilters().addAll(
-		new ExtensionFilter(props.getProperty(WORK_FILE_EXT_DESC), props.getProperty(WORK_FILE_EXT)));
+		new ExtensionFilter(AppProperties.getProperty(WORK_FILE_EXT_DESC), AppProperties.getProperty(WORK_FILE_EXT)),
+		new ExtensionFilter(AppProperties.getProperty(BINARY_WORK_FILE_EXT_DESC), AppProperties.getProperty(BINARY_WORK_FILE_EXT)));
 
 		File selectedFile = fc.showSaveDialog(app.getGUI().getWindow());
 		if (selectedFile != null) {
 		    saveWork(selectedFile);
-		    saved = true;
 		}
 	    }
 	    else {
 		saveWork(currentWorkFile);
-		saved = true;
 	    }
         } // IF THE USER SAID CANCEL, THEN WE'LL TELL WHOEVER
         // CALLED THIS THAT THE USER IS NOT INTERESTED ANYMORE
@@ -330,6 +769,8 @@ public class AppFileController {
      */
     public void markFileAsNotSaved() {
         saved = false;
+        editCount++;
+        autosave.editMade();
     }
 
     /**
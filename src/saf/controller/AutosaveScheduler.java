@@ -0,0 +1,302 @@
+package saf.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+import pm.data.DocumentSnapshot;
+import pm.file.FileManager;
+import saf.io.AppFiles;
+
+/**
+ * This class autosaves the work being edited to a recovery file, so that
+ * it can be recovered should the application crash. A burst of edits only
+ * leads to one autosave, which waits for the interval to pass since the
+ * first edit of the burst and then for the edits to stop for a moment.
+ * Only taking the snapshot happens on the JavaFX thread, while hashing and
+ * writing it is done in the background, and nothing is written if the
+ * work looks just like it did the last time it was autosaved.
+ *
+ * Whatever was autosaved before the application last quit without
+ * cleaning up after itself is set aside when the scheduler is made, so it
+ * can be offered to the user.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class AutosaveScheduler {
+    // THE RECOVERY FILE IS ALWAYS IN OUR BINARY FORMAT, WITH WHAT IT BELONGS
+    // TO KEPT ALONGSIDE IT
+    public static final String AUTOSAVE_FILE_NAME = "autosave" + FileManager.BINARY_FILE_EXT;
+    public static final String RECOVERED_FILE_NAME = "recovered" + FileManager.BINARY_FILE_EXT;
+    private static final String INFO_FILE_EXT = ".properties";
+    private static final String TEMP_FILE_NAME = "autosave.tmp" + FileManager.BINARY_FILE_EXT;
+    private static final String DOCUMENT_KEY = "document";
+    private static final String HASH_KEY = "hash";
+    
+    // USED WHEN NO INTERVAL IS PROVIDED
+    public static final int DEFAULT_INTERVAL_SECONDS = 30;
+    
+    // AN AUTOSAVE WAITS UNTIL THERE HAVE BEEN NO EDITS FOR THIS LONG, BUT
+    // NEVER FOR MORE THAN ONE EXTRA INTERVAL
+    private static final long QUIET_MILLIS = 2000;
+    
+    private final FileManager fileManager;
+    private final ExecutorService executor;
+    private final Supplier<DocumentSnapshot> snapshotSupplier;
+    private final Path recoveryDirectory;
+    private final long intervalMillis;
+    
+    // THIS GOES OFF WHEN AN AUTOSAVE MAY BE DUE
+    private final PauseTransition timer;
+    private boolean scheduled;
+    private long firstEditTime;
+    private long lastEditTime;
+    
+    // THE FILE OF THE WORK BEING EDITED, IF IT HAS ONE
+    private String documentPath;
+    
+    // THE HASH OF WHAT WAS LAST AUTOSAVED, ONLY EVER TOUCHED ON THE
+    // EXECUTOR'S THREAD
+    private String lastHash;
+    
+    // WHAT WAS LEFT BEHIND LAST TIME, IF ANYTHING
+    private boolean recoveryAvailable;
+    private String recoveredDocumentPath;
+    
+    /**
+     * Constructor for setting up autosaving, which doesn't do anything until
+     * the work is edited. Note that this must be made on the JavaFX thread.
+     *
+     * @param initFileManager The file component for writing the recovery file.
+     *
+     * @param initExecutor The executor to write the recovery file on, which
+     * must run one task at a time.
+     *
+     * @param initSnapshotSupplier Provides a snapshot of the work.
+     *
+     * @param initRecoveryDirectory Where to keep the recovery files.
+     *
+     * @param intervalSeconds How long to wait after an edit before
+     * autosaving, or 0 to never autosave.
+     */
+    public AutosaveScheduler(FileManager initFileManager, ExecutorService initExecutor,
+            Supplier<DocumentSnapshot> initSnapshotSupplier, String initRecoveryDirectory,
+            int intervalSeconds) {
+        fileManager = initFileManager;
+        executor = initExecutor;
+        snapshotSupplier = initSnapshotSupplier;
+        recoveryDirectory = Paths.get(initRecoveryDirectory);
+        intervalMillis = Math.max(0, intervalSeconds) * 1000L;
+        timer = new PauseTransition();
+        timer.setOnFinished(e -> autosaveIfDue());
+        setAsideLeftovers();
+    }
+    
+    /**
+     * Mutator method for the file of the work being edited, which is noted
+     * along with the recovery file.
+     *
+     * @param initDocumentPath The work's file, or null if it hasn't been
+     * saved yet.
+     */
+    public void setDocumentPath(String initDocumentPath) {
+        documentPath = initDocumentPath;
+    }
+    
+    /**
+     * This method lets the scheduler know the work was just edited, and
+     * should be called on the JavaFX thread for every edit.
+     */
+    public void editMade() {
+        lastEditTime = System.currentTimeMillis();
+        if (!scheduled && intervalMillis > 0) {
+            firstEditTime = lastEditTime;
+            schedule(intervalMillis);
+        }
+    }
+    
+    // HELPER METHOD FOR SETTING THE TIMER
+    private void schedule(long delayMillis) {
+        scheduled = true;
+        timer.setDuration(Duration.millis(delayMillis));
+        timer.playFromStart();
+    }
+    
+    // HELPER METHOD CALLED WHEN THE TIMER GOES OFF, WHICH PUTS THE AUTOSAVE
+    // OFF A LITTLE LONGER IF THE USER IS STILL IN THE MIDDLE OF SOMETHING
+    private void autosaveIfDue() {
+        long now = System.currentTimeMillis();
+        long quietFor = now - lastEditTime;
+        if (quietFor < QUIET_MILLIS && now - firstEditTime < 2 * intervalMillis) {
+            schedule(QUIET_MILLIS - quietFor);
+            return;
+        }
+        scheduled = false;
+        autosaveNow();
+    }
+    
+    /**
+     * This method autosaves the work right away, rather than waiting for
+     * the timer.
+     */
+    public void autosaveNow() {
+        DocumentSnapshot document = snapshotSupplier.get();
+        String path = documentPath;
+        executor.execute(() -> writeRecovery(document, path));
+    }
+    
+    // HELPER METHOD FOR WRITING THE RECOVERY FILE IN THE BACKGROUND
+    private void writeRecovery(DocumentSnapshot document, String path) {
+        String hash = document.computeContentHash();
+        if (hash.equals(lastHash)) {
+            return;
+        }
+        try {
+            Files.createDirectories(recoveryDirectory);
+            Path tempFile = recoveryDirectory.resolve(TEMP_FILE_NAME);
+            fileManager.saveDocument(document, tempFile.toString());
+            AppFiles.moveIntoPlace(tempFile, recoveryDirectory.resolve(AUTOSAVE_FILE_NAME));
+            
+            Properties info = new Properties();
+            if (path != null) {
+                info.setProperty(DOCUMENT_KEY, path);
+            }
+            info.setProperty(HASH_KEY, hash);
+            Path tempInfoFile = recoveryDirectory.resolve(TEMP_FILE_NAME + INFO_FILE_EXT);
+            try (OutputStream os = Files.newOutputStream(tempInfoFile)) {
+                info.store(os, null);
+            }
+            AppFiles.moveIntoPlace(tempInfoFile, recoveryDirectory.resolve(AUTOSAVE_FILE_NAME + INFO_FILE_EXT));
+            lastHash = hash;
+        } catch (IOException ioe) {
+            // WE'LL JUST TRY AGAIN WITH THE NEXT AUTOSAVE
+        }
+    }
+    
+    /**
+     * This method throws away what has been autosaved, which should be done
+     * whenever the work is saved or abandoned. Any autosave still waiting
+     * for its turn is written first and then thrown away along with it.
+     */
+    public void discard() {
+        timer.stop();
+        scheduled = false;
+        executor.execute(this::deleteAutosave);
+    }
+    
+    /**
+     * This method throws away what has been autosaved like discard does,
+     * but waits until it's gone, which we need before exiting.
+     *
+     * @throws IOException Thrown should we be interrupted while waiting.
+     */
+    public void discardAndWait() throws IOException {
+        timer.stop();
+        scheduled = false;
+        try {
+            executor.submit(this::deleteAutosave).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+        }
+    }
+    
+    // HELPER METHOD FOR DELETING THE AUTOSAVE, CALLED ON THE EXECUTOR
+    private void deleteAutosave() {
+        lastHash = null;
+        try {
+            Files.deleteIfExists(recoveryDirectory.resolve(AUTOSAVE_FILE_NAME + INFO_FILE_EXT));
+            Files.deleteIfExists(recoveryDirectory.resolve(AUTOSAVE_FILE_NAME));
+        } catch (IOException ioe) {
+            // IT WILL JUST BE OFFERED NEXT TIME
+        }
+    }
+    
+    // HELPER METHOD FOR SETTING ASIDE AN AUTOSAVE LEFT BEHIND BY THE LAST
+    // RUN, SO OUR OWN AUTOSAVES DON'T WRITE OVER IT
+    private void setAsideLeftovers() {
+        Path autosaveFile = recoveryDirectory.resolve(AUTOSAVE_FILE_NAME);
+        Path autosaveInfoFile = recoveryDirectory.resolve(AUTOSAVE_FILE_NAME + INFO_FILE_EXT);
+        Path recoveredFile = recoveryDirectory.resolve(RECOVERED_FILE_NAME);
+        Path recoveredInfoFile = recoveryDirectory.resolve(RECOVERED_FILE_NAME + INFO_FILE_EXT);
+        try {
+            if (Files.isRegularFile(autosaveFile)) {
+                AppFiles.moveIntoPlace(autosaveFile, recoveredFile);
+                if (Files.isRegularFile(autosaveInfoFile)) {
+                    AppFiles.moveIntoPlace(autosaveInfoFile, recoveredInfoFile);
+                }
+                else {
+                    Files.deleteIfExists(recoveredInfoFile);
+                }
+            }
+            if (Files.isRegularFile(recoveredFile)) {
+                Properties info = new Properties();
+                if (Files.isRegularFile(recoveredInfoFile)) {
+                    try (InputStream is = Files.newInputStream(recoveredInfoFile)) {
+                        info.load(is);
+                    }
+                }
+                recoveredDocumentPath = info.getProperty(DOCUMENT_KEY);
+                recoveryAvailable = true;
+            }
+        } catch (IOException ioe) {
+            recoveryAvailable = false;
+        }
+    }
+    
+    /**
+     * Accessor method for checking whether there's work left over from
+     * when the application last crashed.
+     *
+     * @return true if there's work to recover.
+     */
+    public boolean isRecoveryAvailable() {
+        return recoveryAvailable;
+    }
+    
+    /**
+     * Accessor method for the file holding the work left over from when the
+     * application last crashed.
+     *
+     * @return The recovery file, which is in our binary format.
+     */
+    public String getRecoveryFilePath() {
+        return recoveryDirectory.resolve(RECOVERED_FILE_NAME).toString();
+    }
+    
+    /**
+     * Accessor method for the file of the work that was left over, if it
+     * had one.
+     *
+     * @return The work's own file, or null if it was never saved.
+     */
+    public String getRecoveredDocumentPath() {
+        return recoveredDocumentPath;
+    }
+    
+    /**
+     * This method throws away the work left over from when the application
+     * last crashed, once whatever is waiting to be autosaved is written.
+     */
+    public void dropRecovery() {
+        recoveryAvailable = false;
+        recoveredDocumentPath = null;
+        executor.execute(() -> {
+            try {
+                Files.deleteIfExists(recoveryDirectory.resolve(RECOVERED_FILE_NAME + INFO_FILE_EXT));
+                Files.deleteIfExists(recoveryDirectory.resolve(RECOVERED_FILE_NAME));
+            } catch (IOException ioe) {
+                // IT WILL JUST BE OFFERED AGAIN NEXT TIME
+            }
+        });
+    }
+}
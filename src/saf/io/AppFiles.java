@@ -0,0 +1,56 @@
+package saf.io;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * This class has the file handling shared by everything in the framework
+ * and our applications that replaces a file. Each file is written beside
+ * the one it replaces under a temporary name and then moved into place,
+ * so nothing ever finds one half written.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class AppFiles {
+    // A FILE BEING WRITTEN HAS THIS ADDED TO ITS NAME UNTIL IT'S MOVED INTO PLACE
+    public static final String TEMP_FILE_EXT = ".tmp";
+    
+    // THERE'S NOTHING TO MAKE
+    private AppFiles() {}
+    
+    /**
+     * Accessor method for where a file is written before being moved into
+     * place, which is beside it under its own name plus TEMP_FILE_EXT.
+     *
+     * @param file The file being written.
+     *
+     * @return The temporary file to write it to.
+     */
+    public static Path getTempPath(Path file) {
+        return file.resolveSibling(file.getFileName() + TEMP_FILE_EXT);
+    }
+    
+    /**
+     * This method replaces a file with one that has just been written
+     * beside it. The move is atomic wherever the file system allows, so
+     * the file is always either the old one or the new one.
+     *
+     * @param from The file that was just written.
+     *
+     * @param to The file it replaces, which needn't exist yet.
+     *
+     * @throws IOException Thrown should the file not be moved.
+     */
+    public static void moveIntoPlace(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package saf.settings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import properties_manager.PropertiesManager;
+import saf.io.AppFiles;
+import static saf.settings.AppStartupConstants.PATH_DATA;
+import static saf.settings.AppStartupConstants.PROPERTIES_CACHE_FILE_NAME;
+import static saf.settings.AppStartupConstants.PROPERTIES_SCHEMA_FILE_NAME;
+
+/**
+ * This class keeps a startup cache of the app's properties. Loading the
+ * properties XML files means validating each of them against the schema,
+ * which is slow, so once they've been loaded the properties they provide
+ * are written to a small binary file along with a hash of the schema and
+ * the files. As long as none of those change, later launches give the
+ * properties straight to the PropertiesManager from that file, skipping
+ * both the parsing and the validation.
+ *
+ * The framework's own properties are also kept in an EnumMap, so that
+ * looking one up doesn't go through a string.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class AppProperties {
+    
+    // CHANGE THIS WHENEVER THE CACHE FILE LAYOUT CHANGES, SO THAT OLD
+    // CACHES ARE NEVER READ
+    private static final int MAGIC = 0x504D5043;
+    private static final int VERSION = 1;
+    
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    
+    // THE ELEMENTS OF THE PROPERTIES FILES WE NEED TO KNOW ABOUT
+    private static final String PROPERTY_ELEMENT = "property";
+    private static final String OPTION_ELEMENT = "option";
+    private static final String NAME_ATTRIBUTE = "name";
+    private static final String VALUE_ATTRIBUTE = "value";
+    
+    // THE FRAMEWORK'S PROPERTIES, ONLY FILLED IN AT STARTUP
+    private static final EnumMap<AppPropertyType, String> appProperties = new EnumMap<>(AppPropertyType.class);
+    
+    private AppProperties() {}
+    
+    /**
+     * Accessor method for one of the framework's properties.
+     *
+     * @param property The property to get.
+     *
+     * @return Its value, or null if it wasn't loaded.
+     */
+    public static String getProperty(AppPropertyType property) {
+        String value = appProperties.get(property);
+        if (value == null) {
+            // IT MAY HAVE BEEN ADDED DIRECTLY TO THE PROPERTIES MANAGER
+            value = PropertiesManager.getPropertiesManager().getProperty(property);
+        }
+        return value;
+    }
+    
+    /**
+     * This function gives the PropertiesManager the properties from the
+     * provided files out of the startup cache, if the cache was made from
+     * exactly these files.
+     *
+     * @param propertiesFileNames The XML files in the data directory, in
+     * the order they are loaded.
+     *
+     * @return true if the properties came from the cache, false if the
+     * files must be loaded the usual way.
+     */
+    public static boolean loadCached(String... propertiesFileNames) {
+        Path cacheFile = Paths.get(PATH_DATA, PROPERTIES_CACHE_FILE_NAME);
+        if (!Files.isRegularFile(cacheFile)) {
+            return false;
+        }
+        try {
+            byte[] key = hashSources(propertiesFileNames);
+            Map<String, String> properties = new LinkedHashMap<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return false;
+                }
+                byte[] cachedKey = new byte[key.length];
+                in.readFully(cachedKey);
+                if (!Arrays.equals(key, cachedKey)) {
+                    return false;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = in.readUTF();
+                    properties.put(name, in.readUTF());
+                }
+            }
+            
+            // ONLY ONCE ALL OF IT HAS BEEN READ DO WE USE ANY OF IT
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            props.addProperty(PropertiesManager.DATA_PATH_PROPERTY, PATH_DATA);
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                props.addProperty(property.getKey(), property.getValue());
+            }
+            fillAppProperties(properties);
+            return true;
+        } catch (IOException ioe) {
+            // A MISSING SOURCE OR A DAMAGED CACHE, EITHER WAY THE FILES
+            // WILL BE LOADED AND VALIDATED
+            return false;
+        }
+    }
+    
+    /**
+     * This method writes the startup cache for the provided files, which
+     * must already have been loaded and validated by the PropertiesManager.
+     * Since the cache only saves time, failing to write it is not an error
+     * and the next launch simply loads the files again.
+     *
+     * @param propertiesFileNames The XML files in the data directory, in
+     * the order they were loaded.
+     */
+    public static void saveCache(String... propertiesFileNames) {
+        Path cacheFile = Paths.get(PATH_DATA, PROPERTIES_CACHE_FILE_NAME);
+        Path tempFile = AppFiles.getTempPath(cacheFile);
+        try {
+            byte[] key = hashSources(propertiesFileNames);
+            Map<String, String> properties = new LinkedHashMap<>();
+            for (String fileName : propertiesFileNames) {
+                if (!readProperties(Paths.get(PATH_DATA, fileName), properties)) {
+                    // OPTION LISTS CAN'T BE GIVEN BACK TO THE PROPERTIES
+                    // MANAGER ONE BY ONE, SO SUCH FILES ARE NEVER CACHED
+                    Files.deleteIfExists(cacheFile);
+                    fillAppProperties(properties);
+                    return;
+                }
+            }
+            fillAppProperties(properties);
+            
+            try (OutputStream os = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(key);
+                out.writeInt(properties.size());
+                for (Map.Entry<String, String> property : properties.entrySet()) {
+                    out.writeUTF(property.getKey());
+                    out.writeUTF(property.getValue());
+                }
+            }
+            AppFiles.moveIntoPlace(tempFile, cacheFile);
+        } catch (IOException | XMLStreamException e) {
+            // WE'LL JUST LOAD THE FILES AGAIN NEXT TIME
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ioe) {
+                // NOTHING MORE TO BE DONE
+            }
+        }
+    }
+    
+    // HELPER METHOD FOR HASHING EVERYTHING THE CACHE DEPENDS ON, WHICH IS
+    // THE SCHEMA AND THE PROPERTIES FILES, ALONG WITH THEIR NAMES AND ORDER
+    private static byte[] hashSources(String... propertiesFileNames) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IOException(nsae);
+        }
+        hashFile(digest, PROPERTIES_SCHEMA_FILE_NAME);
+        for (String fileName : propertiesFileNames) {
+            hashFile(digest, fileName);
+        }
+        return digest.digest();
+    }
+    
+    private static void hashFile(MessageDigest digest, String fileName) throws IOException {
+        byte[] contents = Files.readAllBytes(Paths.get(PATH_DATA, fileName));
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        digest.update(intBytes(name.length));
+        digest.update(name);
+        digest.update(intBytes(contents.length));
+        digest.update(contents);
+    }
+    
+    private static byte[] intBytes(int value) {
+        return new byte[] {(byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value};
+    }
+    
+    // HELPER METHOD FOR PULLING THE PROPERTIES OUT OF AN ALREADY VALIDATED
+    // FILE, LATER FILES OVERRIDING EARLIER ONES JUST AS THEY DO WHEN LOADED.
+    // IT RETURNS false IF THE FILE HAS ANY OPTIONS
+    private static boolean readProperties(Path file, Map<String, String> properties)
+            throws IOException, XMLStreamException {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        String element = reader.getLocalName();
+                        if (PROPERTY_ELEMENT.equals(element)) {
+                            String name = reader.getAttributeValue(null, NAME_ATTRIBUTE);
+                            String value = reader.getAttributeValue(null, VALUE_ATTRIBUTE);
+                            if (name == null || value == null) {
+                                throw new XMLStreamException("Incomplete property in " + file);
+                            }
+                            properties.put(name, value);
+                        }
+                        else if (OPTION_ELEMENT.equals(element)) {
+                            return false;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return true;
+    }
+    
+    private static void fillAppProperties(Map<String, String> properties) {
+        for (AppPropertyType property : AppPropertyType.values()) {
+            String value = properties.get(property.name());
+            if (value != null) {
+                appProperties.put(property, value);
+            }
+        }
+    }
+}
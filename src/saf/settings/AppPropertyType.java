@@ -20,6 +20,7 @@ public enum AppPropertyType {
         SAVE_ICON,
 	SAVE_AS_ICON,
         LOAD_ICON,
+        EXPORT_ICON,
         EXIT_ICON, 
 	REMOVE_ICON,
         
@@ -35,11 +36,13 @@ public enum AppPropertyType {
 	// ERROR MESSAGES
 	NEW_ERROR_MESSAGE,
 	SAVE_ERROR_MESSAGE,
+	EXPORT_ERROR_MESSAGE,
 	PROPERTIES_LOAD_ERROR_MESSAGE,
 	
 	// ERROR TITLES
 	NEW_ERROR_TITLE,
 	SAVE_ERROR_TITLE,
+	EXPORT_ERROR_TITLE,
 	PROPERTIES_LOAD_ERROR_TITLE,
 	
 	// AND VERIFICATION MESSAGES AND TITLES
@@ -47,11 +50,30 @@ public enum AppPropertyType {
 	NEW_COMPLETED_TITLE,
         SAVE_COMPLETED_MESSAGE,
 	SAVE_COMPLETED_TITLE,	
+        EXPORT_COMPLETED_MESSAGE,
+	EXPORT_COMPLETED_TITLE,
 	SAVE_UNSAVED_WORK_TITLE,
         SAVE_UNSAVED_WORK_MESSAGE,
 	
 	SAVE_WORK_TITLE,
+	EXPORT_WORK_TITLE,
+	EXPORT_SCALE_TITLE,
+	EXPORT_SCALE_MESSAGE,
+	EXPORTING_PROGRESS_TITLE,
+	LOADING_PROGRESS_TITLE,
+	CANCEL_BUTTON_TEXT,
 	WORK_FILE_EXT,
 	WORK_FILE_EXT_DESC,
+	BINARY_WORK_FILE_EXT,
+	BINARY_WORK_FILE_EXT_DESC,
+	IMAGE_FILE_EXT,
+	IMAGE_FILE_EXT_DESC,
+	SVG_FILE_EXT,
+	SVG_FILE_EXT_DESC,
+	
+	// AUTOSAVING, WITH THE INTERVAL IN SECONDS
+	AUTOSAVE_INTERVAL,
+	RECOVER_WORK_TITLE,
+	RECOVER_WORK_MESSAGE,
 	PROPERTIES_
 }
@@ -14,11 +14,15 @@ public class AppStartupConstants
     public static final String SIMPLE_APP_PROPERTIES_FILE_NAME = "simple_app_properties.xml";
     public static final String WORKSPACE_PROPERTIES_FILE_NAME = "workspace_properties.xml";
     public static final String PROPERTIES_SCHEMA_FILE_NAME = "properties_schema.xsd";    
+    public static final String PROPERTIES_CACHE_FILE_NAME = "properties.cache";
     public static final String FILE_PROTOCOL = "file:";
     public static final String PATH_DATA = "./data/";
     public static final String PATH_WORK = "./work/";
     public static final String PATH_IMAGES = "./images/";
+    public static final String PATH_EXPORT = "./export/";
+    public static final String PATH_RECOVERY = "./recovery/";
     public static final String PATH_EMPTY = ".";
+    public static final String PATH_STARTUP_REPORT = "./startup_report.json";
   
     // ERRO MESSAGE ASSOCIATED WITH PROPERTIES FILE LOADING ERRORS
     public static String PROPERTIES_FILE_ERROR_MESSAGE = "Error Loading properties.xml";
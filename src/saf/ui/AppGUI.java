@@ -1,21 +1,24 @@
 package saf.ui;
 
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker.State;
+import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ToolBar;
 import javafx.scene.control.Tooltip;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 import properties_manager.PropertiesManager;
 import saf.controller.AppFileController;
 import saf.AppTemplate;
+import saf.settings.AppProperties;
 import static saf.settings.AppPropertyType.*;
-import static saf.settings.AppStartupConstants.FILE_PROTOCOL;
-import static saf.settings.AppStartupConstants.PATH_IMAGES;
 import saf.components.AppStyleArbiter;
 
 /**
@@ -46,6 +49,7 @@ public class AppGUI implements AppStyleArbiter {
     protected Button newButton;
     protected Button saveButton;
     protected Button loadButton;
+    protected Button exportButton;
     protected Button exitButton;
     
     // HERE ARE OUR DIALOGS
@@ -115,6 +119,7 @@ public class AppGUI implements AppStyleArbiter {
         // ALL THE OTHER BUTTONS ARE ALWAYS ENABLED
         // ONCE EDITING THAT FIRST COURSE BEGINS
 	newButton.setDisable(false);
+	exportButton.setDisable(false);
 	exitButton.setDisable(false);
 
         // NOTE THAT THE NEW, LOAD, AND EXIT BUTTONS
@@ -124,6 +129,35 @@ public class AppGUI implements AppStyleArbiter {
     public void markAsEdited(){
         fileController.markAsEdited(this);
     }
+    
+    /**
+     * This method shows the progress of a background task in the toolbar,
+     * along with a button for cancelling it. It is removed from the toolbar
+     * again as soon as the task is finished, however that happens.
+     * 
+     * @param task The task to track.
+     * 
+     * @param title What to call the task in the toolbar.
+     */
+    public void trackProgress(Task<?> task, String title) {
+        Label progressLabel = new Label(title);
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.progressProperty().bind(task.progressProperty());
+        Button cancelButton = new Button(AppProperties.getProperty(CANCEL_BUTTON_TEXT));
+        cancelButton.setOnAction(e -> {
+            task.cancel();
+        });
+        HBox progressPane = new HBox(5, progressLabel, progressBar, cancelButton);
+        progressPane.setAlignment(Pos.CENTER_LEFT);
+        fileToolbarPane.getItems().add(progressPane);
+        
+        task.stateProperty().addListener((observable, oldState, newState) -> {
+            if (newState == State.SUCCEEDED || newState == State.FAILED || newState == State.CANCELLED) {
+                progressBar.progressProperty().unbind();
+                fileToolbarPane.getItems().remove(progressPane);
+            }
+        });
+    }
 
     /****************************************************************************/
     /* BELOW ARE ALL THE PRIVATE HELPER METHODS WE USE FOR INITIALIZING OUR AppGUI */
@@ -142,6 +176,7 @@ public class AppGUI implements AppStyleArbiter {
         newButton = initChildButton(fileToolbarPane,	NEW_ICON.toString(),	    NEW_TOOLTIP.toString(),	false);
         loadButton = initChildButton(fileToolbarPane,   LOAD_ICON.toString(),       LOAD_TOOLTIP.toString(),    false);
         saveButton = initChildButton(fileToolbarPane,	SAVE_ICON.toString(),	    SAVE_TOOLTIP.toString(),	true);
+        exportButton = initChildButton(fileToolbarPane, EXPORT_ICON.toString(),     EXPORT_TOOLTIP.toString(),  true);
         exitButton = initChildButton(fileToolbarPane,	EXIT_ICON.toString(),	    EXIT_TOOLTIP.toString(),	false);
 	// AND NOW SETUP THEIR EVENT HANDLERS
         fileController = new AppFileController(app);
@@ -154,6 +189,9 @@ public class AppGUI implements AppStyleArbiter {
         saveButton.setOnAction(e -> {
             fileController.handleSaveRequest();
         });       
+        exportButton.setOnAction(e -> {
+            fileController.handleExportRequest();
+        });
         exitButton.setOnAction(e -> {
             fileController.handleExitRequest();
         });
@@ -184,9 +222,7 @@ public class AppGUI implements AppStyleArbiter {
         primaryScene = new Scene(appPane);
         
         // SET THE APP ICON
-	PropertiesManager props = PropertiesManager.getPropertiesManager();
-        String appIcon = FILE_PROTOCOL + PATH_IMAGES + props.getProperty(APP_LOGO);
-        primaryStage.getIcons().add(new Image(appIcon));
+        primaryStage.getIcons().add(AppIconCache.getSingleton().getIcon(AppProperties.getProperty(APP_LOGO)));
 
         // NOW TIE THE SCENE TO THE WINDOW AND OPEN THE WINDOW
         primaryStage.setScene(primaryScene);
@@ -211,14 +247,11 @@ public class AppGUI implements AppStyleArbiter {
     public Button initChildButton(ToolBar toolbar, String icon, String tooltip, boolean disabled) {
         PropertiesManager props = PropertiesManager.getPropertiesManager();
 	
-	// LOAD THE ICON FROM THE PROVIDED FILE
-        String imagePath = FILE_PROTOCOL + PATH_IMAGES + props.getProperty(icon);
-        Image buttonImage = new Image(imagePath);
-	
-	// NOW MAKE THE BUTTON
+	// NOW MAKE THE BUTTON. ITS ICON LOADS IN THE BACKGROUND AND SHOWS
+	// UP ONCE IT'S READY
         Button button = new Button();
         button.setDisable(disabled);
-        button.setGraphic(new ImageView(buttonImage));
+        button.setGraphic(AppIconCache.getSingleton().makeIconView(props.getProperty(icon)));
         Tooltip buttonTooltip = new Tooltip(props.getProperty(tooltip));
         button.setTooltip(buttonTooltip);
 	
@@ -238,6 +271,7 @@ public class AppGUI implements AppStyleArbiter {
 	fileToolbarPane.getStyleClass().add(CLASS_BORDERED_PANE);
 	newButton.getStyleClass().add(CLASS_FILE_BUTTON);
 	saveButton.getStyleClass().add(CLASS_FILE_BUTTON);
+	exportButton.getStyleClass().add(CLASS_FILE_BUTTON);
 	exitButton.getStyleClass().add(CLASS_FILE_BUTTON);
     }
 }
@@ -0,0 +1,92 @@
+package saf.ui;
+
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import static saf.settings.AppStartupConstants.FILE_PROTOCOL;
+import static saf.settings.AppStartupConstants.PATH_IMAGES;
+
+/**
+ * This class provides the images used for the app's icons. Every image is
+ * loaded in the background, so asking for one never waits on the disk, and
+ * an ImageView showing it simply stays empty until it's ready. Since all
+ * of them load at the same time, the icons the app asks for at startup
+ * come in parallel rather than one after another on the JavaFX thread.
+ * Each path is only ever loaded once, with everything showing it sharing
+ * the same image.
+ *
+ * @author Richard McKenna
+ * @author Kenneth Chiguichon
+ * @version 1.0
+ */
+public class AppIconCache {
+    // HERE'S THE SINGLETON OBJECT
+    static AppIconCache singleton = null;
+    
+    // EVERY IMAGE LOADED SO FAR, BY ITS URL
+    private final ConcurrentHashMap<String, Image> images = new ConcurrentHashMap<>();
+    
+    private AppIconCache() {}
+    
+    /**
+     * A static accessor method for getting the singleton object.
+     *
+     * @return The one icon cache.
+     */
+    public static AppIconCache getSingleton() {
+	if (singleton == null)
+	    singleton = new AppIconCache();
+	return singleton;
+    }
+    
+    /**
+     * This function provides the image at the provided URL, starting to
+     * load it in the background if this is the first time it's been asked
+     * for.
+     *
+     * @param url Where the image is.
+     *
+     * @return The image, which may still be loading.
+     */
+    public Image getImage(String url) {
+        return images.computeIfAbsent(url, u -> new Image(u, true));
+    }
+    
+    /**
+     * This function provides one of the images in the app's images
+     * directory.
+     *
+     * @param fileName The name of the image file.
+     *
+     * @return The image, which may still be loading.
+     */
+    public Image getIcon(String fileName) {
+        return getImage(FILE_PROTOCOL + PATH_IMAGES + fileName);
+    }
+    
+    /**
+     * This function makes a view of one of the app's icons, ready to be used
+     * as a graphic right away. It shows the icon as soon as it has loaded.
+     *
+     * @param fileName The name of the image file.
+     *
+     * @return A new view of the shared image.
+     */
+    public ImageView makeIconView(String fileName) {
+        return new ImageView(getIcon(fileName));
+    }
+    
+    /**
+     * This method starts loading the provided icons, all at once, so that
+     * they're likely ready by the time they're shown.
+     *
+     * @param fileNames The names of the image files.
+     */
+    public void preloadIcons(String... fileNames) {
+        for (String fileName : fileNames) {
+            if (fileName != null) {
+                getIcon(fileName);
+            }
+        }
+    }
+}